@@ -0,0 +1,52 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.benchmarks;
+
+import com.afermiano.ecmgui.ecm.EcmFormat;
+import com.afermiano.ecmgui.ecm.SyntheticImageGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Temporary disc images shaped like a PlayStation game: mostly mode 2 data and XA streams, some mode 1 and audio
+public class BenchmarkImages {
+    private static final long SEED = 0x45434D;
+    private static final int MAX_RUN_LENGTH = 64;
+
+    private BenchmarkImages() {
+    }
+
+    public static Path create(long sizeInBytes) throws IOException {
+        final Path image = Files.createTempFile("ecmgui-benchmark", ".bin");
+
+        SyntheticImageGenerator.builder()
+                .seed(SEED)
+                .sectorCount(sizeInBytes / EcmFormat.SECTOR_SIZE)
+                .mode1Weight(1)
+                .mode2Form1Weight(4)
+                .mode2Form2Weight(2)
+                .literalWeight(1)
+                .maxRunLength(MAX_RUN_LENGTH)
+                .build()
+                .write(image);
+
+        return image;
+    }
+}
@@ -0,0 +1,147 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.benchmarks;
+
+import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.control.Control;
+import com.afermiano.ecmgui.control.bridge.Bridge;
+import com.afermiano.ecmgui.control.bridge.JavaBridge;
+import com.afermiano.ecmgui.control.bridge.NativeBridge;
+import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.model.ModelSnapshot;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static com.afermiano.ecmgui.model.nativemapping.State.COMPLETED;
+import static com.afermiano.ecmgui.model.nativemapping.State.IN_PROGRESS;
+
+// Whole encode/decode jobs, driven step by step the way JobScheduler does; "bytes" is reported in image bytes per second
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class BridgeBenchmark {
+    @Param({"JAVA", "NATIVE"})
+    public String engine;
+
+    @Param({"64"})
+    public int imageSizeInMiB;
+
+    private Context context;
+    private Path image;
+    private Path encoded;
+    private Path decoded;
+    private long imageSizeInBytes;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class ProcessedBytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new Context();
+        context.setControl(new Control(context));
+
+        image = BenchmarkImages.create(imageSizeInMiB * 1024L * 1024L);
+        imageSizeInBytes = Files.size(image);
+        encoded = Files.createTempFile("ecmgui-benchmark", ".ecm");
+        decoded = Files.createTempFile("ecmgui-benchmark", ".unecm");
+
+        run(true, image, encoded);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.getControl().close();
+        Files.deleteIfExists(image);
+        Files.deleteIfExists(encoded);
+        Files.deleteIfExists(decoded);
+    }
+
+    @Benchmark
+    public long encode(ProcessedBytes processed) {
+        processed.bytes += imageSizeInBytes;
+        return run(true, image, encoded);
+    }
+
+    @Benchmark
+    public long decode(ProcessedBytes processed) {
+        processed.bytes += imageSizeInBytes;
+        return run(false, encoded, decoded);
+    }
+
+    private long run(boolean encoding, Path input, Path output) {
+        final Model model = new Model();
+        final Bridge bridge = createBridge(model);
+
+        final FailureReason failureReason = encoding
+                ? bridge.prepareEncoding(input.toString(), output.toString())
+                : bridge.prepareDecoding(input.toString(), output.toString());
+        if (failureReason != FailureReason.SUCCESS) {
+            throw new IllegalStateException("Prepare failed: " + failureReason);
+        }
+
+        model.update(builder -> builder.state(IN_PROGRESS));
+        ModelSnapshot snapshot;
+        while ((snapshot = model.getSnapshot()).getState() == IN_PROGRESS) {
+            if (encoding) {
+                bridge.encode();
+            } else {
+                bridge.decode();
+            }
+        }
+
+        if (snapshot.getState() != COMPLETED) {
+            throw new IllegalStateException("Job failed: " + snapshot.getFailureReason());
+        }
+
+        return snapshot.getBytesAfterProcessing();
+    }
+
+    private Bridge createBridge(Model model) {
+        return "NATIVE".equals(engine) ? new NativeBridge(context, model) : new JavaBridge(context, model);
+    }
+}
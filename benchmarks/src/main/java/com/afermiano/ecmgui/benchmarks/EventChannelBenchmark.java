@@ -0,0 +1,102 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.benchmarks;
+
+import com.afermiano.ecmgui.control.Job;
+import com.afermiano.ecmgui.control.JobEventChannel;
+import com.afermiano.ecmgui.control.JobEventHandler;
+import com.afermiano.ecmgui.control.JobType;
+import com.afermiano.ecmgui.model.Model;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Workers publishing progress for many jobs while a single consumer drains, as Control does on the EDT.
+// Only the non-blocking progress path is used, so producers never spin on a full buffer after the consumer stops.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EventChannelBenchmark {
+    @Param({"64"})
+    public int jobCount;
+
+    private JobEventChannel channel;
+    private Job[] jobs;
+
+    @State(Scope.Thread)
+    public static class Producer {
+        private int next;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Delivered {
+        public long events;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            events = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        channel = new JobEventChannel();
+        jobs = new Job[jobCount];
+        for (int i = 0; i < jobCount; i++) {
+            jobs[i] = new Job(i + 1, JobType.ENCODING, new Model(), null);
+            channel.register(jobs[i]);
+        }
+    }
+
+    @Benchmark
+    @Group("progress")
+    @GroupThreads(3)
+    public void publish(Producer producer) {
+        channel.publishProgress(jobs[producer.next]);
+        producer.next = (producer.next + 1) % jobs.length;
+    }
+
+    @Benchmark
+    @Group("progress")
+    @GroupThreads(1)
+    public void drain(Delivered delivered) {
+        delivered.events += channel.drain(IGNORE);
+    }
+
+    private static final JobEventHandler IGNORE = (job, event) -> {
+    };
+}
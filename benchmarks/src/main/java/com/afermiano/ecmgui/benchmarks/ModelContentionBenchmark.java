@@ -0,0 +1,74 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.benchmarks;
+
+import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.model.ModelSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Readers (EDT, CLI) taking snapshots while a worker keeps updating progress
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ModelContentionBenchmark {
+    private final Model model = new Model();
+    private int percentage;
+
+    @Benchmark
+    @Group("uncontended")
+    @GroupThreads(3)
+    public long readAlone() {
+        return read();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public long readWhileUpdating() {
+        return read();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public ModelSnapshot update() {
+        final int next = percentage = (percentage + 1) % 100;
+        return model.update(builder -> builder.analyzePercentage(next).encodingOrDecodingPercentage(next));
+    }
+
+    private long read() {
+        final ModelSnapshot snapshot = model.getSnapshot();
+        return snapshot.getAnalyzePercentage() + snapshot.getEncodingOrDecodingPercentage() + snapshot.getBytesAfterProcessing();
+    }
+}
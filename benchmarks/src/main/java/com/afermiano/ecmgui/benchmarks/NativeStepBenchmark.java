@@ -0,0 +1,119 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.benchmarks;
+
+import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.control.Control;
+import com.afermiano.ecmgui.control.bridge.AdaptiveStepSizer;
+import com.afermiano.ecmgui.control.bridge.NativeBridge;
+import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static com.afermiano.ecmgui.model.nativemapping.State.IN_PROGRESS;
+
+// Cost of one NativeBridge.encode() call running a single libecm step; needs libecmglue on java.library.path.
+// Comparing its bytes rate with BridgeBenchmark (many steps per call) shows what the JNI round trips cost.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class NativeStepBenchmark {
+    @Param({"64"})
+    public int imageSizeInMiB;
+
+    private Context context;
+    private Path image;
+    private Path encoded;
+    private Model model;
+    private NativeBridge bridge;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class ProcessedBytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new Context();
+        context.setControl(new Control(context));
+
+        image = BenchmarkImages.create(imageSizeInMiB * 1024L * 1024L);
+        encoded = Files.createTempFile("ecmgui-benchmark", ".ecm");
+
+        model = new Model();
+        // A zero target keeps the step at its minimum, i.e. one native step per call
+        bridge = new NativeBridge(context, model, new AdaptiveStepSizer(0));
+        prepare();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        bridge.release();
+        context.getControl().close();
+        Files.deleteIfExists(image);
+        Files.deleteIfExists(encoded);
+    }
+
+    @Benchmark
+    public void encodeStep(ProcessedBytes processed) {
+        // Starting over costs one prepare every imageSize / NATIVE_STEP_IN_BYTES calls
+        if (model.getSnapshot().getState() != IN_PROGRESS) {
+            prepare();
+        }
+
+        bridge.encode();
+        processed.bytes += NativeBridge.NATIVE_STEP_IN_BYTES;
+    }
+
+    private void prepare() {
+        final FailureReason failureReason = bridge.prepareEncoding(image.toString(), encoded.toString());
+        if (failureReason != FailureReason.SUCCESS) {
+            throw new IllegalStateException("Prepare failed: " + failureReason);
+        }
+
+        model.update(builder -> builder.state(IN_PROGRESS));
+    }
+}
@@ -17,116 +17,304 @@
 
 #include "com_afermiano_ecmgui_control_bridge_NativeBridge.h"
 
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+
 #include "ecm.h"
 
-#define MAX_STEP_IN_BYTES (5 * 1024 * 1024)
+// Files or buffers libecm took for a job and did not give back yet
+typedef struct {
+    void **items;
+    size_t count;
+    size_t capacity;
+} Resources;
+
+// Everything a single job needs; the handle given to Java points to one of these
+typedef struct {
+    Progress progress;
+    FailureReason prepare_result;
+    int last_analyse_percentage;
+    int last_encoding_or_decoding_percentage;
+    Resources files;
+    Resources buffers;
+} Job;
+
+// libecm opens its files and allocates its buffers when a job is prepared, and only gives them back once the job
+// completes or fails; it has no way to abort one. It is linked with fopen, fclose and the allocator wrapped (see
+// CMakeLists.txt), so whatever it takes while working on the job of the calling thread is recorded, and a job
+// cancelled midway can still be released
+static _Thread_local Job *t_current_job;
+
+FILE *__real_fopen(const char *path, const char *mode);
+FILE *__real_fopen64(const char *path, const char *mode);
+int __real_fclose(FILE *file);
+void *__real_malloc(size_t size);
+void *__real_calloc(size_t count, size_t size);
+void *__real_realloc(void *pointer, size_t size);
+void __real_free(void *pointer);
+
+static void add_resource(Resources *resources, void *item){
+    if(resources->count == resources->capacity){
+        const size_t capacity = resources->capacity ? 2 * resources->capacity : 8;
+        void **items = __real_realloc(resources->items, capacity * sizeof(void *));
+        if(!items){
+            // Left untracked; it would only leak if the job were cancelled
+            return;
+        }
+        resources->items = items;
+        resources->capacity = capacity;
+    }
+
+    resources->items[resources->count++] = item;
+}
+
+static int replace_resource(Resources *resources, void *item, void *replacement){
+    for(size_t i = resources->count; i > 0; i--){
+        if(resources->items[i - 1] == item){
+            if(replacement){
+                resources->items[i - 1] = replacement;
+            } else {
+                resources->items[i - 1] = resources->items[--resources->count];
+            }
+            return 1;
+        }
+    }
+
+    return 0;
+}
+
+static FILE *track_file(FILE *file){
+    if(file && t_current_job){
+        add_resource(&t_current_job->files, file);
+    }
+
+    return file;
+}
+
+static void *track_buffer(void *buffer){
+    if(buffer && t_current_job){
+        add_resource(&t_current_job->buffers, buffer);
+    }
+
+    return buffer;
+}
+
+FILE *__wrap_fopen(const char *path, const char *mode){
+    return track_file(__real_fopen(path, mode));
+}
+
+FILE *__wrap_fopen64(const char *path, const char *mode){
+    return track_file(__real_fopen64(path, mode));
+}
+
+int __wrap_fclose(FILE *file){
+    if(t_current_job){
+        replace_resource(&t_current_job->files, file, NULL);
+    }
+
+    return __real_fclose(file);
+}
+
+void *__wrap_malloc(size_t size){
+    return track_buffer(__real_malloc(size));
+}
 
-static Progress g_progress;
+void *__wrap_calloc(size_t count, size_t size){
+    return track_buffer(__real_calloc(count, size));
+}
+
+void *__wrap_realloc(void *pointer, size_t size){
+    void *result = __real_realloc(pointer, size);
+
+    if(t_current_job && pointer && (result || size == 0)){
+        replace_resource(&t_current_job->buffers, pointer, result);
+    } else if(!pointer){
+        track_buffer(result);
+    }
+
+    return result;
+}
+
+void __wrap_free(void *pointer){
+    if(pointer && t_current_job){
+        replace_resource(&t_current_job->buffers, pointer, NULL);
+    }
+
+    __real_free(pointer);
+}
+
+// Method IDs are valid for as long as the class is loaded, so they can be shared by all jobs
 static jmethodID g_set_failure_method;
 static jmethodID g_set_encoding_complete_method;
 static jmethodID g_set_decoding_complete_method;
 static jmethodID g_set_percentage_method;
 
-static int g_last_analyse_percentage;
-static int g_last_encoding_or_decoding_percentage;
+JNIEXPORT jint JNICALL JNI_OnLoad(JavaVM *vm, void *reserved){
+    JNIEnv *env;
+
+    if((*vm)->GetEnv(vm, (void **)&env, JNI_VERSION_1_6) != JNI_OK){
+        return JNI_ERR;
+    }
 
-static int cache_java_methods(JNIEnv *env, jobject obj){
-    const jclass java_class = (*env)->GetObjectClass(env, obj);
+    const jclass java_class = (*env)->FindClass(env, "com/afermiano/ecmgui/control/bridge/NativeBridge");
+    if(!java_class){
+        return JNI_ERR;
+    }
 
     g_set_failure_method = (*env)->GetMethodID(env, java_class, "setFailure", "(I)V");
     g_set_encoding_complete_method = (*env)->GetMethodID(env, java_class, "setEncodingComplete", "(JJJJJJ)V");
     g_set_decoding_complete_method = (*env)->GetMethodID(env, java_class, "setDecodingComplete", "(JJ)V");
     g_set_percentage_method = (*env)->GetMethodID(env, java_class, "setPercentage", "(II)V");
 
+    (*env)->DeleteLocalRef(env, java_class);
+
     if(!g_set_failure_method || !g_set_encoding_complete_method || !g_set_decoding_complete_method || !g_set_percentage_method){
-        return 1;
+        return JNI_ERR;
     }
 
-    return 0;
+    return JNI_VERSION_1_6;
 }
 
-JNIEXPORT void JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_encode
-(JNIEnv *env, jobject obj){
-    encode(&g_progress);
+static Job *to_job(jlong handle){
+    return (Job *)(intptr_t)handle;
+}
 
-    if(g_progress.state == FAILURE){
-        (*env)->CallVoidMethod(env, obj, g_set_failure_method, g_progress.failure_reason);
-        return;
+JNIEXPORT jint JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_nativeEncode
+(JNIEnv *env, jobject obj, jlong handle, jint step_count){
+    Job *job = to_job(handle);
+    Progress *progress = &job->progress;
+
+    // The step size is fixed at prepare time, so Java adapts how many steps are run per call
+    t_current_job = job;
+    for(jint i = 0; i < step_count; i++){
+        encode(progress);
+        if(progress->state != IN_PROGRESS){
+            break;
+        }
+    }
+    t_current_job = NULL;
+
+    if(progress->state == FAILURE){
+        (*env)->CallVoidMethod(env, obj, g_set_failure_method, progress->failure_reason);
+        return progress->state;
     }
 
-    if(g_progress.state == COMPLETED){
+    if(progress->state == COMPLETED){
         (*env)->CallVoidMethod(env, obj, g_set_encoding_complete_method,
-                               g_progress.literal_bytes,
-                               g_progress.mode_1_sectors,
-                               g_progress.mode_2_form_1_sectors,
-                               g_progress.mode_2_form_2_sectors,
-                               g_progress.bytes_before_processing,
-                               g_progress.bytes_after_processing);
-        return;
+                               progress->literal_bytes,
+                               progress->mode_1_sectors,
+                               progress->mode_2_form_1_sectors,
+                               progress->mode_2_form_2_sectors,
+                               progress->bytes_before_processing,
+                               progress->bytes_after_processing);
+        return progress->state;
     }
 
-    if(g_progress.analyze_percentage != g_last_analyse_percentage || g_progress.encoding_or_decoding_percentage != g_last_encoding_or_decoding_percentage){
-        (*env)->CallVoidMethod(env, obj, g_set_percentage_method, g_progress.analyze_percentage, g_progress.encoding_or_decoding_percentage);
+    if(progress->analyze_percentage != job->last_analyse_percentage || progress->encoding_or_decoding_percentage != job->last_encoding_or_decoding_percentage){
+        (*env)->CallVoidMethod(env, obj, g_set_percentage_method, progress->analyze_percentage, progress->encoding_or_decoding_percentage);
 
-        g_last_analyse_percentage = g_progress.analyze_percentage;
-        g_last_encoding_or_decoding_percentage = g_progress.encoding_or_decoding_percentage;
+        job->last_analyse_percentage = progress->analyze_percentage;
+        job->last_encoding_or_decoding_percentage = progress->encoding_or_decoding_percentage;
     }
+
+    return progress->state;
 }
 
-JNIEXPORT void JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_decode
-(JNIEnv *env, jobject obj){
-    decode(&g_progress);
+JNIEXPORT jint JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_nativeDecode
+(JNIEnv *env, jobject obj, jlong handle, jint step_count){
+    Job *job = to_job(handle);
+    Progress *progress = &job->progress;
 
-    if(g_progress.state == FAILURE){
-        (*env)->CallVoidMethod(env, obj, g_set_failure_method, g_progress.failure_reason);
-        return;
+    // The step size is fixed at prepare time, so Java adapts how many steps are run per call
+    t_current_job = job;
+    for(jint i = 0; i < step_count; i++){
+        decode(progress);
+        if(progress->state != IN_PROGRESS){
+            break;
+        }
     }
+    t_current_job = NULL;
 
-    if(g_progress.state == COMPLETED){
+    if(progress->state == FAILURE){
+        (*env)->CallVoidMethod(env, obj, g_set_failure_method, progress->failure_reason);
+        return progress->state;
+    }
+
+    if(progress->state == COMPLETED){
         (*env)->CallVoidMethod(env, obj, g_set_decoding_complete_method,
-                               g_progress.bytes_before_processing,
-                               g_progress.bytes_after_processing);
+                               progress->bytes_before_processing,
+                               progress->bytes_after_processing);
     }
 
-    if(g_progress.encoding_or_decoding_percentage != g_last_encoding_or_decoding_percentage){
-        (*env)->CallVoidMethod(env, obj, g_set_percentage_method, g_progress.analyze_percentage, g_progress.encoding_or_decoding_percentage);
+    if(progress->encoding_or_decoding_percentage != job->last_encoding_or_decoding_percentage){
+        (*env)->CallVoidMethod(env, obj, g_set_percentage_method, progress->analyze_percentage, progress->encoding_or_decoding_percentage);
 
-        g_last_encoding_or_decoding_percentage = g_progress.encoding_or_decoding_percentage;
+        job->last_encoding_or_decoding_percentage = progress->encoding_or_decoding_percentage;
     }
+
+    return progress->state;
 }
 
-static jint generic_prepare(JNIEnv *env, jobject obj, jstring input_file_name, jstring output_file_name, FailureReason (*prepare_function)(char *, char *, int, Progress *)){
-    if(cache_java_methods(env, obj)){
-        return OUT_OF_MEMORY;
+static jlong generic_prepare(JNIEnv *env, jstring input_file_name, jstring output_file_name, jint step_in_bytes, FailureReason (*prepare_function)(char *, char *, int, Progress *)){
+    Job *job = calloc(1, sizeof(Job));
+    if(!job){
+        return 0;
     }
 
-    g_last_analyse_percentage = -1;
-    g_last_encoding_or_decoding_percentage = -1;
+    job->last_analyse_percentage = -1;
+    job->last_encoding_or_decoding_percentage = -1;
 
     const char *input_file_chars = (*env)->GetStringUTFChars(env, input_file_name, NULL);
     const char *output_file_chars = (*env)->GetStringUTFChars(env, output_file_name, NULL);
 
     if(!input_file_chars || !output_file_chars){
-        return OUT_OF_MEMORY;
+        job->prepare_result = OUT_OF_MEMORY;
+    } else {
+        t_current_job = job;
+        job->prepare_result = (*prepare_function)((char *)input_file_chars, (char *)output_file_chars, step_in_bytes, &job->progress);
+        t_current_job = NULL;
     }
 
-    const FailureReason ret = (*prepare_function)((char *)input_file_chars, (char *)output_file_chars, MAX_STEP_IN_BYTES, &g_progress);
-
-    (*env)->ReleaseStringUTFChars(env, input_file_name, input_file_chars);
-    (*env)->ReleaseStringUTFChars(env, output_file_name, output_file_chars);
+    if(input_file_chars){
+        (*env)->ReleaseStringUTFChars(env, input_file_name, input_file_chars);
+    }
+    if(output_file_chars){
+        (*env)->ReleaseStringUTFChars(env, output_file_name, output_file_chars);
+    }
 
-    return ret;
+    return (jlong)(intptr_t)job;
 }
 
-JNIEXPORT jint JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_nativePrepareEncoding
-(JNIEnv *env, jobject obj, jstring input_file_name, jstring output_file_name){
+JNIEXPORT jlong JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_nativePrepareEncoding
+(JNIEnv *env, jobject obj, jstring input_file_name, jstring output_file_name, jint step_in_bytes){
+    return generic_prepare(env, input_file_name, output_file_name, step_in_bytes, prepare_encoding);
+}
 
-   return generic_prepare(env, obj, input_file_name, output_file_name, prepare_encoding);
+JNIEXPORT jlong JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_nativePrepareDecoding
+(JNIEnv *env, jobject obj, jstring input_file_name, jstring output_file_name, jint step_in_bytes){
+    return generic_prepare(env, input_file_name, output_file_name, step_in_bytes, prepare_decoding);
 }
 
-JNIEXPORT jint JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_nativePrepareDecoding
-(JNIEnv *env, jobject obj, jstring input_file_name, jstring output_file_name){
-    return generic_prepare(env, obj, input_file_name, output_file_name, prepare_decoding);
+JNIEXPORT jint JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_nativeGetPrepareResult
+(JNIEnv *env, jclass clazz, jlong handle){
+    return to_job(handle)->prepare_result;
 }
 
+// Files and buffers are only left over when the job did not run to its end, i.e. it was cancelled; closing the output
+// here lets Java delete it
+JNIEXPORT void JNICALL Java_com_afermiano_ecmgui_control_bridge_NativeBridge_nativeRelease
+(JNIEnv *env, jclass clazz, jlong handle){
+    Job *job = to_job(handle);
 
+    for(size_t i = 0; i < job->files.count; i++){
+        fclose(job->files.items[i]);
+    }
+    for(size_t i = 0; i < job->buffers.count; i++){
+        free(job->buffers.items[i]);
+    }
+
+    free(job->files.items);
+    free(job->buffers.items);
+    free(job);
+}
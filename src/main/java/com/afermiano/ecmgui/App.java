@@ -17,55 +17,105 @@
 
 package com.afermiano.ecmgui;
 
+import com.afermiano.ecmgui.cli.BatchCommand;
+import com.afermiano.ecmgui.cli.DecodeCommand;
+import com.afermiano.ecmgui.cli.EncodeCommand;
+import com.afermiano.ecmgui.cli.ImportDatsCommand;
+import com.afermiano.ecmgui.cli.VerifyCommand;
 import com.afermiano.ecmgui.control.Control;
-import com.afermiano.ecmgui.control.bridge.Bridge;
+import com.afermiano.ecmgui.control.bridge.BridgeFactory;
 import com.afermiano.ecmgui.control.bridge.FakeBridge;
+import com.afermiano.ecmgui.control.bridge.JavaBridge;
 import com.afermiano.ecmgui.control.bridge.NativeBridge;
-import com.afermiano.ecmgui.gui.MainWindow;
+import com.afermiano.ecmgui.gui.GuiLauncher;
+import com.afermiano.ecmgui.hashdb.HashDatabase;
 import com.afermiano.ecmgui.model.Model;
 
-import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 
 import static picocli.CommandLine.Command;
 import static picocli.CommandLine.Option;
+import static picocli.CommandLine.ScopeType;
 
-@Command(name = "ecmgui", mixinStandardHelpOptions = true, description = "GUI for libecm")
+@Command(name = "ecmgui", mixinStandardHelpOptions = true, description = "GUI for libecm",
+        subcommands = {EncodeCommand.class, DecodeCommand.class, VerifyCommand.class, BatchCommand.class, ImportDatsCommand.class})
 public class App implements Callable<Integer> {
 
-    @Option(names = {"-t", "--test-mode-success"}, description = "Internally mocks lib call to test GUI - always succeeds")
+    @Option(scope = ScopeType.INHERIT, names = {"-t", "--test-mode-success"}, description = "Internally mocks lib call to test GUI - always succeeds")
     private boolean testModeSuccess = false;
-    @Option(names = {"-f", "--test-mode-failure"}, description = "Internally mocks lib call to test GUI - always fail with OUT_OF_MEMORY error")
+    @Option(scope = ScopeType.INHERIT, names = {"-f", "--test-mode-failure"}, description = "Internally mocks lib call to test GUI - always fail with OUT_OF_MEMORY error")
     private boolean testModeFailure = false;
+    @Option(scope = ScopeType.INHERIT, names = {"-j", "--java-engine"}, description = "Uses the pure-Java ECM engine instead of the native library")
+    private boolean javaEngine = false;
+    @Option(scope = ScopeType.INHERIT, names = {"--threads"}, description = "Number of threads used by the Java engine (default: number of processors)")
+    private int threads = Runtime.getRuntime().availableProcessors();
+    @Option(scope = ScopeType.INHERIT, names = {"-w", "--workers"}, description = "Number of jobs processed concurrently (default: ${DEFAULT-VALUE})")
+    private int workers = Control.DEFAULT_WORKERS;
+    @Option(scope = ScopeType.INHERIT, names = {"--hash-database"}, description = "Hashes of known images, built by import-dats, that completed jobs are looked up in (default: ${DEFAULT-VALUE})")
+    private Path hashDatabasePath = HashDatabase.defaultPath();
 
-    private Bridge buildBridge(Context context) {
-        final Bridge bridge;
+    public Path getHashDatabasePath() {
+        return hashDatabasePath;
+    }
+
+    private BridgeFactory buildBridgeFactory(boolean streaming) {
+        final BridgeFactory bridgeFactory;
 
         if (testModeSuccess) {
-            bridge = new FakeBridge(context, true);
+            bridgeFactory = (context, model) -> new FakeBridge(context, model, true);
         } else if (testModeFailure) {
-            bridge = new FakeBridge(context, false);
+            bridgeFactory = (context, model) -> new FakeBridge(context, model, false);
+        } else if (javaEngine || streaming) {
+            // Only the Java engine can process streams; jobs running concurrently share the same pool
+            final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+            bridgeFactory = (context, model) -> new JavaBridge(context, model, pool);
         } else {
-            bridge = new NativeBridge(context);
+            bridgeFactory = NativeBridge::new;
         }
 
-        return bridge;
+        return bridgeFactory;
     }
 
-    @Override
-    public Integer call() {
+    public Context buildContext() {
+        return buildContext(false);
+    }
+
+    public Context buildContext(boolean streaming) {
         final Context context = new Context();
 
         final Model model = new Model();
         context.setModel(model);
 
-        final Control control = new Control(context);
+        final Control control = new Control(context, Math.max(1, workers));
         context.setControl(control);
 
-        final Bridge bridge = buildBridge(context);
-        context.setBridge(bridge);
+        context.setBridgeFactory(buildBridgeFactory(streaming));
+        context.setHashDatabase(openHashDatabase());
+
+        return context;
+    }
 
-        SwingUtilities.invokeLater(() -> new MainWindow(context));
+    private HashDatabase openHashDatabase() {
+        if (!Files.isRegularFile(hashDatabasePath)) {
+            return null;
+        }
+
+        try {
+            return HashDatabase.open(hashDatabasePath);
+        } catch (IOException e) {
+            // Identification is optional; the jobs still run without it
+            System.err.printf("Ignoring the hash database: %s%n", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public Integer call() {
+        GuiLauncher.launch(buildContext());
 
         return 0;
     }
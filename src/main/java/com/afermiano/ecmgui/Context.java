@@ -18,25 +18,27 @@
 package com.afermiano.ecmgui;
 
 import com.afermiano.ecmgui.control.Control;
-import com.afermiano.ecmgui.control.bridge.Bridge;
-import com.afermiano.ecmgui.control.bridge.BridgeEvent;
+import com.afermiano.ecmgui.control.JobEventChannel;
+import com.afermiano.ecmgui.control.bridge.BridgeFactory;
+import com.afermiano.ecmgui.hashdb.HashDatabase;
 import com.afermiano.ecmgui.model.Model;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-
 public class Context {
     @Getter
     @Setter
-    private Bridge bridge;
+    private BridgeFactory bridgeFactory;
     @Getter
     @Setter
     private Model model;
     @Getter
     @Setter
     private Control control;
+    // Null when no database was imported
+    @Getter
+    @Setter
+    private HashDatabase hashDatabase;
     @Getter
-    private Queue<BridgeEvent> eventQueue = new ConcurrentLinkedQueue<>();
+    private JobEventChannel eventChannel = new JobEventChannel();
 }
@@ -21,6 +21,11 @@ import picocli.CommandLine;
 
 public class Main {
     public static void main(String[] args) {
-        new CommandLine(new App()).execute(args);
+        final int exitCode = new CommandLine(new App()).execute(args);
+
+        // The GUI keeps running on its own threads, so only failures end the process here
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
     }
 }
@@ -0,0 +1,72 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.cli;
+
+import com.afermiano.ecmgui.App;
+import com.afermiano.ecmgui.control.JobType;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static picocli.CommandLine.Command;
+import static picocli.CommandLine.Option;
+import static picocli.CommandLine.Parameters;
+import static picocli.CommandLine.ParentCommand;
+
+@Command(name = "batch", mixinStandardHelpOptions = true, description = "Encodes or decodes several files, --workers at a time, without starting the GUI")
+public class BatchCommand implements Callable<Integer> {
+    public static final String ECM_EXTENSION = ".ecm";
+    public static final String UNECM_EXTENSION = ".unecm";
+
+    @ParentCommand
+    private App app;
+    @Option(names = {"-d", "--decode"}, description = "Decodes the files instead of encoding them")
+    private boolean decode = false;
+    @Option(names = {"-o", "--output-directory"}, description = "Directory for the output files (default: next to each input file)")
+    private File outputDirectory;
+    @Parameters(arity = "1..*", description = "Files to process; outputs are named like the ecm/unecm tools do")
+    private List<String> inputFileNames;
+
+    @Override
+    public Integer call() {
+        final JobType type = decode ? JobType.DECODING : JobType.ENCODING;
+
+        return HeadlessRunner.run(app.buildContext(), runner -> inputFileNames.forEach(inputFileName ->
+                runner.submit(type, inputFileName, buildOutputFileName(type, inputFileName, outputDirectory))));
+    }
+
+    static String buildOutputFileName(JobType type, String inputFileName, File outputDirectory) {
+        final String outputName;
+
+        if (type == JobType.ENCODING) {
+            outputName = inputFileName + ECM_EXTENSION;
+        } else if (inputFileName.toLowerCase().endsWith(ECM_EXTENSION)) {
+            outputName = inputFileName.substring(0, inputFileName.length() - ECM_EXTENSION.length());
+        } else {
+            outputName = inputFileName + UNECM_EXTENSION;
+        }
+
+        if (outputDirectory == null) {
+            return outputName;
+        }
+
+        return new File(outputDirectory, new File(outputName).getName()).getPath();
+    }
+}
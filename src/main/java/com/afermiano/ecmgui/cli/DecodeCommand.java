@@ -0,0 +1,48 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.cli;
+
+import com.afermiano.ecmgui.App;
+import com.afermiano.ecmgui.control.JobType;
+
+import java.util.concurrent.Callable;
+
+import static com.afermiano.ecmgui.cli.StreamedJobs.STANDARD_STREAM;
+import static com.afermiano.ecmgui.cli.StreamedJobs.isStandardStream;
+import static picocli.CommandLine.Command;
+import static picocli.CommandLine.Parameters;
+import static picocli.CommandLine.ParentCommand;
+
+@Command(name = "decode", mixinStandardHelpOptions = true, description = "Decodes an ECM file back into a CD image without starting the GUI")
+public class DecodeCommand implements Callable<Integer> {
+    @ParentCommand
+    private App app;
+    @Parameters(index = "0", description = "ECM file to decode, or " + STANDARD_STREAM + " for standard input")
+    private String inputFileName;
+    @Parameters(index = "1", description = "CD image to create, or " + STANDARD_STREAM + " for standard output")
+    private String outputFileName;
+
+    @Override
+    public Integer call() {
+        if (isStandardStream(inputFileName) || isStandardStream(outputFileName)) {
+            return StreamedJobs.run(app, JobType.DECODING, inputFileName, outputFileName);
+        }
+
+        return HeadlessRunner.run(app.buildContext(), runner -> runner.submit(JobType.DECODING, inputFileName, outputFileName));
+    }
+}
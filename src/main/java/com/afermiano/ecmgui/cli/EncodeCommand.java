@@ -0,0 +1,51 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.cli;
+
+import com.afermiano.ecmgui.App;
+import com.afermiano.ecmgui.control.JobType;
+
+import java.util.concurrent.Callable;
+
+import static com.afermiano.ecmgui.cli.StreamedJobs.STANDARD_STREAM;
+import static com.afermiano.ecmgui.cli.StreamedJobs.isStandardStream;
+import static picocli.CommandLine.Command;
+import static picocli.CommandLine.Option;
+import static picocli.CommandLine.Parameters;
+import static picocli.CommandLine.ParentCommand;
+
+@Command(name = "encode", mixinStandardHelpOptions = true, description = "Encodes a CD image into an ECM file without starting the GUI")
+public class EncodeCommand implements Callable<Integer> {
+    @ParentCommand
+    private App app;
+    @Option(names = {"-s", "--single-pass"}, description = "Classifies and writes records in one pass over the input (Java engine); implied by " + STANDARD_STREAM)
+    private boolean singlePass = false;
+    @Parameters(index = "0", description = "CD image to encode, or " + STANDARD_STREAM + " for standard input")
+    private String inputFileName;
+    @Parameters(index = "1", description = "ECM file to create, or " + STANDARD_STREAM + " for standard output")
+    private String outputFileName;
+
+    @Override
+    public Integer call() {
+        if (singlePass || isStandardStream(inputFileName) || isStandardStream(outputFileName)) {
+            return StreamedJobs.run(app, JobType.ENCODING, inputFileName, outputFileName);
+        }
+
+        return HeadlessRunner.run(app.buildContext(), runner -> runner.submit(JobType.ENCODING, inputFileName, outputFileName));
+    }
+}
@@ -0,0 +1,204 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.cli;
+
+import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.common.Observer;
+import com.afermiano.ecmgui.control.Control;
+import com.afermiano.ecmgui.control.Job;
+import com.afermiano.ecmgui.control.JobType;
+import com.afermiano.ecmgui.model.ModelSnapshot;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.util.Formats;
+import lombok.SneakyThrows;
+
+import java.io.PrintStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+public class HeadlessRunner implements Observer {
+    public static final double MILLI_TO_SECONDS_FACTOR = 1000.0;
+    private static final int PERCENTAGE_RANGE = 101;
+
+    private final Control control;
+    private final PrintStream out;
+    // Events are delivered on the thread waiting in awaitCompletion()
+    private final BlockingQueue<Runnable> dispatchQueue = new LinkedBlockingQueue<>();
+    // Progress arrives up to 60 times per second per job: a line is only printed when one of its percentages changes
+    private final Map<Job, Integer> printedPercentages = new HashMap<>();
+    private int pendingJobs;
+    private int exitCode = FailureReason.SUCCESS.getNativeCode();
+
+    public HeadlessRunner(Control control, PrintStream out) {
+        this.control = control;
+        this.out = out;
+    }
+
+    // Runs the jobs added by "submitter" to completion and returns the exit code of the process
+    public static int run(Context context, Consumer<HeadlessRunner> submitter) {
+        try (Control control = context.getControl()) {
+            final HeadlessRunner runner = new HeadlessRunner(control, System.err);
+            control.registerObserver(runner);
+            control.deliverEventsTo(runner.dispatchQueue::add);
+
+            submitter.accept(runner);
+
+            return runner.awaitCompletion();
+        }
+    }
+
+    public void submit(JobType type, String inputFileName, String outputFileName) {
+        if (type == JobType.ENCODING) {
+            control.submitEncoding(inputFileName, outputFileName);
+        } else if (type == JobType.VERIFICATION) {
+            control.submitVerification(inputFileName);
+        } else {
+            control.submitDecoding(inputFileName, outputFileName);
+        }
+        pendingJobs++;
+    }
+
+    public void submitStream(JobType type, String inputName, ReadableByteChannel input, String outputName, WritableByteChannel output) {
+        if (type == JobType.ENCODING) {
+            control.submitStreamEncoding(inputName, input, outputName, output);
+        } else {
+            control.submitStreamDecoding(inputName, input, outputName, output);
+        }
+        pendingJobs++;
+    }
+
+    @SneakyThrows
+    public int awaitCompletion() {
+        while (pendingJobs > 0) {
+            dispatchQueue.take().run();
+        }
+
+        return exitCode;
+    }
+
+    @Override
+    public void onProgressUpdate(Job job) {
+        final ModelSnapshot model = job.getModel().getSnapshot();
+        final int percentages = model.getAnalyzePercentage() * PERCENTAGE_RANGE + model.getEncodingOrDecodingPercentage();
+        if (Objects.equals(printedPercentages.put(job, percentages), percentages)) {
+            return;
+        }
+
+        out.printf("%s: analysis %d%%, %s %d%%, %s, ETA %s%n", model.getInputFileName(), model.getAnalyzePercentage(),
+                describe(job.getType()), model.getEncodingOrDecodingPercentage(),
+                Formats.throughput(model.getThroughputInBytesPerSecond()), Formats.eta(model.getEtaInMs()));
+    }
+
+    private static String describe(JobType type) {
+        switch (type) {
+            case ENCODING:
+                return "encoding";
+            case VERIFICATION:
+                return "verifying";
+            default:
+                return "decoding";
+        }
+    }
+
+    @Override
+    public void onEncodingSuccess(Job job) {
+        onSuccess(job, "Encoded");
+    }
+
+    @Override
+    public void onDecodingSuccess(Job job) {
+        if (job.getType() == JobType.VERIFICATION) {
+            onVerified(job);
+            return;
+        }
+
+        onSuccess(job, "Decoded");
+    }
+
+    @Override
+    public void onEncodingFailure(Job job) {
+        onFailure(job);
+    }
+
+    @Override
+    public void onDecodingFailure(Job job) {
+        onFailure(job);
+    }
+
+    @Override
+    public void onCancelled(Job job) {
+        out.printf("%s: Cancelled%n", job.getModel().getSnapshot().getInputFileName());
+        onFinished(job);
+    }
+
+    private void onSuccess(Job job, String verb) {
+        final ModelSnapshot model = job.getModel().getSnapshot();
+        final double processingTimeInSeconds = (model.getEndTimeInMs() - model.getStartTimeInMs()) / MILLI_TO_SECONDS_FACTOR;
+
+        out.printf("%s: %s %d bytes -> %d bytes into %s in %s seconds (analysis %s, processing %s, %s on average)%n", model.getInputFileName(), verb,
+                model.getBytesBeforeProcessing(), model.getBytesAfterProcessing(), model.getOutputFileName(), processingTimeInSeconds,
+                Formats.seconds(model.getAnalysisTimeInMs()), Formats.seconds(model.getProcessingTimeInMs()), Formats.averageThroughput(model));
+        printHashes(model);
+        onFinished(job);
+    }
+
+    private void onVerified(Job job) {
+        final ModelSnapshot model = job.getModel().getSnapshot();
+
+        out.printf("%s: OK, %d bytes image verified in %s seconds (%s on average)%n", model.getInputFileName(), model.getBytesAfterProcessing(),
+                Formats.seconds(model.getEndTimeInMs() - model.getStartTimeInMs()), Formats.averageThroughput(model));
+        printHashes(model);
+        onFinished(job);
+    }
+
+    private void printHashes(ModelSnapshot model) {
+        if (model.getImageHashes() == null) {
+            return;
+        }
+
+        out.printf("%s: %s%n", model.getInputFileName(), Formats.hashes(model.getImageHashes()));
+        if (model.getImageMatch() != null) {
+            out.printf("%s: Identified as %s%n", model.getInputFileName(), Formats.match(model.getImageMatch()));
+        } else if (control.hasHashDatabase()) {
+            out.printf("%s: Not found in the hash database%n", model.getInputFileName());
+        }
+    }
+
+    private void onFailure(Job job) {
+        final ModelSnapshot model = job.getModel().getSnapshot();
+        final FailureReason failureReason = model.getFailureReason();
+
+        out.printf("%s: Error: %s%n", model.getInputFileName(), failureReason);
+        if (exitCode == FailureReason.SUCCESS.getNativeCode()) {
+            exitCode = failureReason.getNativeCode();
+        }
+        onFinished(job);
+    }
+
+    private void onFinished(Job job) {
+        printedPercentages.remove(job);
+        pendingJobs--;
+    }
+}
@@ -0,0 +1,68 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.cli;
+
+import com.afermiano.ecmgui.App;
+import com.afermiano.ecmgui.hashdb.DatEntry;
+import com.afermiano.ecmgui.hashdb.DatParser;
+import com.afermiano.ecmgui.hashdb.HashDatabase;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static picocli.CommandLine.Command;
+import static picocli.CommandLine.Parameters;
+import static picocli.CommandLine.ParentCommand;
+
+@Command(name = "import-dats", mixinStandardHelpOptions = true, description = "Builds the --hash-database from Redump/No-Intro XML DAT files, replacing the previous one")
+public class ImportDatsCommand implements Callable<Integer> {
+    @ParentCommand
+    private App app;
+    @Parameters(arity = "1..*", description = "DAT files to import")
+    private List<Path> datFiles;
+
+    @Override
+    public Integer call() {
+        final List<DatEntry> entries = new ArrayList<>();
+        for (Path datFile : datFiles) {
+            try {
+                DatParser.parse(datFile, entries::add);
+            } catch (IOException e) {
+                System.err.printf("%s: Error: %s%n", datFile, e.getMessage());
+                return FailureReason.ERROR_READING_INPUT_FILE.getNativeCode();
+            }
+        }
+
+        final Path hashDatabasePath = app.getHashDatabasePath().toAbsolutePath();
+        try {
+            Files.createDirectories(hashDatabasePath.getParent());
+            final int count = HashDatabase.write(entries, hashDatabasePath);
+            System.err.printf("%s: %d hashes imported from %d DAT files%n", hashDatabasePath, count, datFiles.size());
+        } catch (IOException e) {
+            System.err.printf("%s: Error: %s%n", hashDatabasePath, e.getMessage());
+            return FailureReason.ERROR_WRITING_OUTPUT_FILE.getNativeCode();
+        }
+
+        return FailureReason.SUCCESS.getNativeCode();
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.cli;
+
+import com.afermiano.ecmgui.App;
+import com.afermiano.ecmgui.control.JobType;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static com.afermiano.ecmgui.util.Closeables.closeQuietly;
+
+// Single pass jobs over channels; "-" stands for standard input or output
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class StreamedJobs {
+    public static final String STANDARD_STREAM = "-";
+
+    public static boolean isStandardStream(String fileName) {
+        return STANDARD_STREAM.equals(fileName);
+    }
+
+    public static int run(App app, JobType type, String inputFileName, String outputFileName) {
+        final ReadableByteChannel input;
+        try {
+            input = isStandardStream(inputFileName) ? new FileInputStream(FileDescriptor.in).getChannel() : FileChannel.open(Paths.get(inputFileName));
+        } catch (IOException | InvalidPathException e) {
+            return reportFailure(inputFileName, FailureReason.ERROR_OPENING_INPUT_FILE);
+        }
+
+        final WritableByteChannel output;
+        try {
+            output = isStandardStream(outputFileName)
+                    ? new FileOutputStream(FileDescriptor.out).getChannel()
+                    : FileChannel.open(Paths.get(outputFileName), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException | InvalidPathException e) {
+            closeQuietly(input);
+            return reportFailure(inputFileName, FailureReason.ERROR_OPENING_OUTPUT_FILE);
+        }
+
+        // Progress goes to standard error, so standard output only carries the result
+        return HeadlessRunner.run(app.buildContext(true), runner -> runner.submitStream(type, inputFileName, input, outputFileName, output));
+    }
+
+    private static int reportFailure(String inputFileName, FailureReason failureReason) {
+        System.err.printf("%s: Error: %s%n", inputFileName, failureReason);
+
+        return failureReason.getNativeCode();
+    }
+}
@@ -0,0 +1,42 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.cli;
+
+import com.afermiano.ecmgui.App;
+import com.afermiano.ecmgui.control.JobType;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static picocli.CommandLine.Command;
+import static picocli.CommandLine.Parameters;
+import static picocli.CommandLine.ParentCommand;
+
+@Command(name = "verify", mixinStandardHelpOptions = true, description = "Decodes ECM files, --workers at a time, checking their checksums without writing the images")
+public class VerifyCommand implements Callable<Integer> {
+    @ParentCommand
+    private App app;
+    @Parameters(arity = "1..*", description = "ECM files to verify")
+    private List<String> inputFileNames;
+
+    @Override
+    public Integer call() {
+        return HeadlessRunner.run(app.buildContext(), runner -> inputFileNames.forEach(inputFileName ->
+                runner.submit(JobType.VERIFICATION, inputFileName, null)));
+    }
+}
@@ -17,6 +17,8 @@
 
 package com.afermiano.ecmgui.common;
 
+import com.afermiano.ecmgui.control.Job;
+
 import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -28,32 +30,40 @@ public abstract class Observable {
         return observers.add(observer);
     }
 
-    public void notifyEncodingStart() {
-        broadcast(Observer::onEncodingStart);
+    protected int getObserverCount() {
+        return observers.size();
+    }
+
+    public void notifyEncodingStart(Job job) {
+        broadcast(observer -> observer.onEncodingStart(job));
+    }
+
+    public void notifyDecodingStart(Job job) {
+        broadcast(observer -> observer.onDecodingStart(job));
     }
 
-    public void notifyDecodingStart() {
-        broadcast(Observer::onDecodingStart);
+    public void notifyEncodingSuccess(Job job) {
+        broadcast(observer -> observer.onEncodingSuccess(job));
     }
 
-    public void notifyEncodingSuccess() {
-        broadcast(Observer::onEncodingSuccess);
+    public void notifyDecodingSuccess(Job job) {
+        broadcast(observer -> observer.onDecodingSuccess(job));
     }
 
-    public void notifyDecodingSuccess() {
-        broadcast(Observer::onDecodingSuccess);
+    public void notifyEncodingFailure(Job job) {
+        broadcast(observer -> observer.onEncodingFailure(job));
     }
 
-    public void notifyEncodingFailure() {
-        broadcast(Observer::onEncodingFailure);
+    public void notifyDecodingFailure(Job job) {
+        broadcast(observer -> observer.onDecodingFailure(job));
     }
 
-    public void notifyDecodingFailure() {
-        broadcast(Observer::onDecodingFailure);
+    public void notifyCancelled(Job job) {
+        broadcast(observer -> observer.onCancelled(job));
     }
 
-    public void notifyProgressUpdate() {
-        broadcast(Observer::onProgressUpdate);
+    public void notifyProgressUpdate(Job job) {
+        broadcast(observer -> observer.onProgressUpdate(job));
     }
 
     private void broadcast(Consumer<Observer> consumer) {
@@ -17,25 +17,30 @@
 
 package com.afermiano.ecmgui.common;
 
+import com.afermiano.ecmgui.control.Job;
+
 public interface Observer {
-    default void onEncodingStart() {
+    default void onEncodingStart(Job job) {
+    }
+
+    default void onDecodingStart(Job job) {
     }
 
-    default void onDecodingStart() {
+    default void onEncodingSuccess(Job job) {
     }
 
-    default void onEncodingSuccess() {
+    default void onDecodingSuccess(Job job) {
     }
 
-    default void onDecodingSuccess() {
+    default void onEncodingFailure(Job job) {
     }
 
-    default void onEncodingFailure() {
+    default void onDecodingFailure(Job job) {
     }
 
-    default void onDecodingFailure() {
+    default void onCancelled(Job job) {
     }
 
-    default void onProgressUpdate() {
+    default void onProgressUpdate(Job job) {
     }
 }
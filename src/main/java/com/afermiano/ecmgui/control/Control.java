@@ -15,217 +15,343 @@
 // You should have received a copy of the GNU General Public License
 // along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
 
+
 package com.afermiano.ecmgui.control;
 
 import com.afermiano.ecmgui.Context;
 import com.afermiano.ecmgui.common.Observable;
-import com.afermiano.ecmgui.control.bridge.Bridge;
 import com.afermiano.ecmgui.control.bridge.BridgeEvent;
+import com.afermiano.ecmgui.ecm.CheckpointFile;
+import com.afermiano.ecmgui.hashdb.HashDatabase;
+import com.afermiano.ecmgui.jfr.BroadcastEvent;
+import com.afermiano.ecmgui.jfr.DrainEvent;
+import com.afermiano.ecmgui.model.ImageHashes;
+import com.afermiano.ecmgui.model.ImageMatch;
 import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.model.ModelSnapshot;
 import com.afermiano.ecmgui.model.nativemapping.FailureReason;
 import com.afermiano.ecmgui.model.nativemapping.State;
-import lombok.SneakyThrows;
 
 import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Queue;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class Control extends Observable implements AutoCloseable {
-    public static final int EXECUTOR_TERMINATION_WAIT_IN_SECONDS = 2;
+    public static final int DEFAULT_WORKERS = 1;
+    public static final long FRAME_TIME_IN_NS = TimeUnit.SECONDS.toNanos(1) / 60;
+    // Weight of the newest sample in the throughput average
+    public static final double THROUGHPUT_SMOOTHING = 0.2;
+    public static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int DRAIN_IDLE = 0;
+    private static final int DRAIN_DELAYED = 1;
+    private static final int DRAIN_IMMEDIATE = 2;
 
     private final Context context;
-    private ExecutorService bridgeExecutor;
+    private final JobScheduler scheduler;
+    private final JobEventHandler eventHandler = this::handleEvent;
+    private volatile Executor dispatcher;
+    private final AtomicInteger drainState = new AtomicInteger(DRAIN_IDLE);
+    private final Runnable drainTask = this::drain;
+    private final Runnable dispatchDrainTask = () -> dispatcher.execute(drainTask);
+    private volatile long lastDrainInNs = System.nanoTime() - FRAME_TIME_IN_NS;
+    private ScheduledExecutorService frameScheduler;
 
     public Control(Context context) {
+        this(context, DEFAULT_WORKERS);
+    }
+
+    public Control(Context context, int workers) {
+        this(context, new JobScheduler(context, workers));
+    }
+
+    Control(Context context, JobScheduler scheduler) {
         this.context = context;
-        bridgeExecutor = Executors.newSingleThreadExecutor();
+        this.scheduler = scheduler;
     }
 
     @Override
-    @SneakyThrows
     public void close() {
-        bridgeExecutor.shutdown();
-        if (!bridgeExecutor.awaitTermination(EXECUTOR_TERMINATION_WAIT_IN_SECONDS, TimeUnit.SECONDS)) {
-            bridgeExecutor.shutdownNow();
+        scheduler.close();
+        if (frameScheduler != null) {
+            frameScheduler.shutdownNow();
         }
     }
 
-    public void startEncoding() {
-        final Model model = context.getModel();
-        final Bridge bridge = context.getBridge();
+    // Pushes events to "dispatcher" as they are published, instead of waiting for pollEvents() calls.
+    // Start and completion are dispatched right away; progress at most once per frame.
+    public void deliverEventsTo(Executor dispatcher) {
+        this.dispatcher = dispatcher;
+        frameScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "ecmgui-frame-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
 
-        model.clearStatus();
-        final long now = System.currentTimeMillis();
-        model.setStartTimeInMs(now);
+        context.getEventChannel().setListener(this::onEventPublished);
+    }
 
-        final FailureReason failureReason = bridge.prepareEncoding(model.getInputFileName(), model.getOutputFileName());
-        if (failureReason != FailureReason.SUCCESS) {
-            model.setState(State.FAILURE);
-            model.setFailureReason(failureReason);
-            notifyEncodingFailure();
+    private void onEventPublished(BridgeEvent event) {
+        if (event == BridgeEvent.PROGRESS_UPDATE) {
+            if (drainState.compareAndSet(DRAIN_IDLE, DRAIN_DELAYED)) {
+                final long delayInNs = lastDrainInNs + FRAME_TIME_IN_NS - System.nanoTime();
+                if (delayInNs <= 0) {
+                    dispatcher.execute(drainTask);
+                } else {
+                    frameScheduler.schedule(dispatchDrainTask, delayInNs, TimeUnit.NANOSECONDS);
+                }
+            }
             return;
         }
-        model.setState(State.IN_PROGRESS);
 
-        notifyEncodingStart();
+        // A delayed drain may still run afterwards; it just finds nothing to do
+        if (drainState.getAndSet(DRAIN_IMMEDIATE) != DRAIN_IMMEDIATE) {
+            dispatcher.execute(drainTask);
+        }
+    }
 
-        bridgeExecutor.submit(() -> {
-            final Queue<BridgeEvent> eventQueue = context.getEventQueue();
+    private void drain() {
+        // Reset before reading, so events published meanwhile schedule another drain
+        drainState.set(DRAIN_IDLE);
+        lastDrainInNs = System.nanoTime();
+        pollEvents();
+    }
 
-            while (true) {
-                bridge.encode();
+    // Jobs started from the GUI share the context model
+    public Job startEncoding() {
+        return scheduler.submit(JobType.ENCODING, context.getModel());
+    }
 
-                if (model.getState() == State.FAILURE) {
-                    eventQueue.add(BridgeEvent.ENCODING_FAILURE);
-                    break;
-                }
+    public Job startDecoding() {
+        return scheduler.submit(JobType.DECODING, context.getModel());
+    }
 
-                if (model.getState() == State.COMPLETED) {
-                    eventQueue.add(BridgeEvent.ENCODING_SUCCESS);
-                    break;
-                }
+    public Job startVerification() {
+        return scheduler.submit(JobType.VERIFICATION, context.getModel());
+    }
 
-                eventQueue.add(BridgeEvent.PROGRESS_UPDATE);
-            }
-        });
+    // Cancelling or pausing takes effect between two steps of the job
+    public void cancel(Job job) {
+        job.cancel();
     }
 
-    public void startDecoding() {
-        final Model model = context.getModel();
-        final Bridge bridge = context.getBridge();
+    public void pause(Job job) {
+        job.pause();
+    }
 
-        model.clearStatus();
-        final long now = System.currentTimeMillis();
-        model.setStartTimeInMs(now);
+    public void resume(Job job) {
+        job.resume();
+    }
 
-        final FailureReason failureReason = bridge.prepareDecoding(model.getInputFileName(), model.getOutputFileName());
-        if (failureReason != FailureReason.SUCCESS) {
-            model.setState(State.FAILURE);
-            model.setFailureReason(failureReason);
-            notifyDecodingFailure();
-            return;
-        }
-        model.setState(State.IN_PROGRESS);
+    public Job submitEncoding(String inputFileName, String outputFileName) {
+        return scheduler.submit(JobType.ENCODING, buildJobModel(inputFileName, outputFileName));
+    }
 
-        notifyDecodingStart();
+    public Job submitDecoding(String inputFileName, String outputFileName) {
+        return scheduler.submit(JobType.DECODING, buildJobModel(inputFileName, outputFileName));
+    }
 
-        bridgeExecutor.submit(() -> {
-            final Queue<BridgeEvent> queue = context.getEventQueue();
+    public Job submitVerification(String inputFileName) {
+        return scheduler.submit(JobType.VERIFICATION, buildJobModel(inputFileName, null));
+    }
 
-            while (true) {
-                bridge.decode();
+    // The names are only shown to the user; the job reads and writes the channels in a single pass
+    public Job submitStreamEncoding(String inputName, ReadableByteChannel input, String outputName, WritableByteChannel output) {
+        return scheduler.submit(JobType.ENCODING, buildJobModel(inputName, outputName), new JobStreams(input, output));
+    }
 
-                if (model.getState() == State.FAILURE) {
-                    queue.add(BridgeEvent.DECODING_FAILURE);
-                    break;
-                }
+    public Job submitStreamDecoding(String inputName, ReadableByteChannel input, String outputName, WritableByteChannel output) {
+        return scheduler.submit(JobType.DECODING, buildJobModel(inputName, outputName), new JobStreams(input, output));
+    }
 
-                if (model.getState() == State.COMPLETED) {
-                    queue.add(BridgeEvent.DECODING_SUCCESS);
-                    break;
-                }
+    private static Model buildJobModel(String inputFileName, String outputFileName) {
+        final Model model = new Model();
 
-                queue.add(BridgeEvent.PROGRESS_UPDATE);
-            }
-        });
+        model.update(builder -> builder.inputFileName(inputFileName).outputFileName(outputFileName));
+
+        return model;
     }
 
-    @SneakyThrows
     public void pollEvents() {
-        final Model model = context.getModel();
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
-
-        BridgeEvent event;
-
-        while ((event = eventQueue.poll()) != null) {
-            switch (event) {
-                case PROGRESS_UPDATE:
-                    while (eventQueue.peek() == BridgeEvent.PROGRESS_UPDATE) {
-                        // Handles only most recent PROGRESS_UPDATE
-                        eventQueue.poll();
-                    }
-                    notifyProgressUpdate();
-                    break;
-                case ENCODING_FAILURE:
-                    notifyEncodingFailure();
-                    model.clearStatus();
-                    deleteOutputFile();
-                    break;
-                case ENCODING_SUCCESS:
-                    notifyEncodingSuccess();
-                    model.clearStatus();
-                    break;
-                case DECODING_FAILURE:
-                    notifyDecodingFailure();
-                    model.clearStatus();
-                    deleteOutputFile();
-                    break;
-                case DECODING_SUCCESS:
-                    notifyDecodingSuccess();
-                    model.clearStatus();
-                    break;
-            }
+        final DrainEvent drainEvent = new DrainEvent();
+        drainEvent.begin();
+        final int events = context.getEventChannel().drain(eventHandler);
+        if (events > 0 && drainEvent.shouldCommit()) {
+            // Empty drains (e.g. a delayed drain that found nothing) would only add noise
+            drainEvent.events = events;
+            drainEvent.commit();
+        }
+    }
+
+    private void handleEvent(Job job, BridgeEvent event) {
+        final Model model = job.getModel();
+
+        switch (event) {
+            case PROGRESS_UPDATE:
+                broadcast("ProgressUpdate", job, this::notifyProgressUpdate);
+                break;
+            case ENCODING_START:
+                broadcast("EncodingStart", job, this::notifyEncodingStart);
+                break;
+            case DECODING_START:
+                broadcast("DecodingStart", job, this::notifyDecodingStart);
+                break;
+            case ENCODING_FAILURE:
+                broadcast("EncodingFailure", job, this::notifyEncodingFailure);
+                model.clearStatus();
+                deleteOutputFile(job);
+                break;
+            case ENCODING_SUCCESS:
+                broadcast("EncodingSuccess", job, this::notifyEncodingSuccess);
+                model.clearStatus();
+                break;
+            case DECODING_FAILURE:
+                broadcast("DecodingFailure", job, this::notifyDecodingFailure);
+                model.clearStatus();
+                deleteOutputFile(job);
+                break;
+            case DECODING_SUCCESS:
+                broadcast("DecodingSuccess", job, this::notifyDecodingSuccess);
+                model.clearStatus();
+                break;
+            case CANCELLED:
+                broadcast("Cancelled", job, this::notifyCancelled);
+                model.clearStatus();
+                deleteOutputFile(job);
+                break;
+        }
+    }
+
+    // Timed around the observers only, to show how long they hold the thread polling the events
+    private void broadcast(String notification, Job job, Consumer<Job> notify) {
+        final BroadcastEvent event = new BroadcastEvent();
+        event.begin();
+
+        notify.accept(job);
+
+        if (event.shouldCommit()) {
+            event.notification = notification;
+            event.jobId = job.getId();
+            event.observers = getObserverCount();
+            event.commit();
         }
     }
 
-    private void deleteOutputFile() {
-        final Model model = context.getModel();
+    private void deleteOutputFile(Job job) {
+        if (!job.isPrepared() || job.getStreams() != null || job.getType() == JobType.VERIFICATION) {
+            // Nothing was written yet, and the file may belong to somebody else; streamed output is not ours to delete
+            return;
+        }
+
+        final ModelSnapshot snapshot = job.getModel().getSnapshot();
+        if (snapshot.getState() == State.FAILURE && isTransient(snapshot.getFailureReason()) && job.getBridge().isResumable()) {
+            // Kept with its checkpoint: running the same job again continues where this one stopped
+            return;
+        }
 
         try {
-            Files.deleteIfExists(Paths.get(model.getOutputFileName()));
+            final Path outputPath = Paths.get(snapshot.getOutputFileName());
+            Files.deleteIfExists(outputPath);
+            CheckpointFile.delete(outputPath);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    public void setPercentage(int analyzePercentage, int encodingOrDecodingPercentage) {
-        final Model model = context.getModel();
+    // Failures that running the job again may get past
+    private static boolean isTransient(FailureReason failureReason) {
+        return failureReason == FailureReason.ERROR_READING_INPUT_FILE
+                || failureReason == FailureReason.ERROR_WRITING_OUTPUT_FILE
+                || failureReason == FailureReason.OUT_OF_MEMORY;
+    }
 
-        model.setAnalyzePercentage(analyzePercentage);
-        model.setEncodingOrDecodingPercentage(encodingOrDecodingPercentage);
+    public void setPercentage(Model model, int analyzePercentage, int encodingOrDecodingPercentage) {
+        model.update(builder -> builder
+                .analyzePercentage(analyzePercentage)
+                .encodingOrDecodingPercentage(encodingOrDecodingPercentage));
     }
 
-    public void setFailure(FailureReason failureReason) {
-        final Model model = context.getModel();
+    public void setProgress(Model model, int analyzePercentage, int encodingOrDecodingPercentage, long bytesToRead, long bytesRead, long bytesWritten) {
+        final long nowInNs = System.nanoTime();
+        final long nowInMs = System.currentTimeMillis();
 
-        model.setState(State.FAILURE);
-        model.setFailureReason(failureReason);
-    }
+        model.update((current, builder) -> {
+            builder.analyzePercentage(analyzePercentage)
+                    .encodingOrDecodingPercentage(encodingOrDecodingPercentage)
+                    .bytesToRead(bytesToRead)
+                    .bytesRead(bytesRead)
+                    .bytesWritten(bytesWritten)
+                    .sampleTimeInNs(nowInNs);
 
-    public void setEncodingComplete(long literalBytes, long mode1Sectors, long mode2Form1Sectors, long mode2Form2Sectors, long bytesBeforeProcessing, long bytesAfterProcessing) {
-        final long now = System.currentTimeMillis();
+            if (analyzePercentage == 100 && current.getAnalysisEndTimeInMs() == 0) {
+                builder.analysisEndTimeInMs(nowInMs);
+            }
+
+            final long elapsedInNs = nowInNs - current.getSampleTimeInNs();
+            if (current.getSampleTimeInNs() != 0 && elapsedInNs > 0 && bytesRead >= current.getBytesRead()) {
+                final double sample = (bytesRead - current.getBytesRead()) * NANOS_PER_SECOND / elapsedInNs;
+                final double previous = current.getThroughputInBytesPerSecond();
+
+                builder.throughputInBytesPerSecond(previous == 0 ? sample : THROUGHPUT_SMOOTHING * sample + (1 - THROUGHPUT_SMOOTHING) * previous);
+            }
 
-        final Model model = context.getModel();
+            return builder;
+        });
+    }
+
+    public void setFailure(Model model, FailureReason failureReason) {
+        model.update(builder -> builder.state(State.FAILURE).failureReason(failureReason));
+    }
 
-        model.setState(State.COMPLETED);
-        model.setEndTimeInMs(now);
+    public boolean hasHashDatabase() {
+        return context.getHashDatabase() != null;
+    }
 
-        model.setLiteralBytes(literalBytes);
-        model.setMode1Sectors(mode1Sectors);
-        model.setMode2Form1Sectors(mode2Form1Sectors);
-        model.setMode2Form2Sectors(mode2Form2Sectors);
-        model.setBytesBeforeProcessing(bytesBeforeProcessing);
-        model.setBytesAfterProcessing(bytesAfterProcessing);
+    public void setImageHashes(Model model, ImageHashes imageHashes) {
+        final HashDatabase hashDatabase = context.getHashDatabase();
+        // A binary search over the mapped database, cheap enough for the thread completing the job
+        final ImageMatch imageMatch = hashDatabase == null || imageHashes == null ? null : hashDatabase.lookup(imageHashes);
 
-        model.setEncodingOrDecodingPercentage(100);
-        model.setAnalyzePercentage(100);
+        model.update(builder -> builder.imageHashes(imageHashes).imageMatch(imageMatch));
     }
 
-    public void setDecodingComplete(long bytesBeforeProcessing, long bytesAfterProcessing) {
+    public void setEncodingComplete(Model model, long literalBytes, long mode1Sectors, long mode2Form1Sectors, long mode2Form2Sectors, long bytesBeforeProcessing, long bytesAfterProcessing) {
         final long now = System.currentTimeMillis();
 
-        final Model model = context.getModel();
-
-        model.setState(State.COMPLETED);
-        model.setEndTimeInMs(now);
+        model.update((current, builder) -> builder
+                .state(State.COMPLETED)
+                .endTimeInMs(now)
+                .bytesRead(current.getBytesToRead())
+                .bytesWritten(bytesAfterProcessing)
+                .literalBytes(literalBytes)
+                .mode1Sectors(mode1Sectors)
+                .mode2Form1Sectors(mode2Form1Sectors)
+                .mode2Form2Sectors(mode2Form2Sectors)
+                .bytesBeforeProcessing(bytesBeforeProcessing)
+                .bytesAfterProcessing(bytesAfterProcessing)
+                .encodingOrDecodingPercentage(100)
+                .analyzePercentage(100));
+    }
 
-        model.setBytesBeforeProcessing(bytesBeforeProcessing);
-        model.setBytesAfterProcessing(bytesAfterProcessing);
+    public void setDecodingComplete(Model model, long bytesBeforeProcessing, long bytesAfterProcessing) {
+        final long now = System.currentTimeMillis();
 
-        model.setEncodingOrDecodingPercentage(100);
+        model.update((current, builder) -> builder
+                .state(State.COMPLETED)
+                .endTimeInMs(now)
+                .bytesRead(current.getBytesToRead())
+                .bytesWritten(bytesAfterProcessing)
+                .bytesBeforeProcessing(bytesBeforeProcessing)
+                .bytesAfterProcessing(bytesAfterProcessing)
+                .encodingOrDecodingPercentage(100));
     }
 }
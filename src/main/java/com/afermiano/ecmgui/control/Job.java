@@ -0,0 +1,95 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.control;
+
+import com.afermiano.ecmgui.control.bridge.Bridge;
+import com.afermiano.ecmgui.model.Model;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RequiredArgsConstructor
+@Getter
+public class Job {
+    private final int id;
+    private final JobType type;
+    private final Model model;
+    private final Bridge bridge;
+    private volatile boolean prepared;
+    // Set for jobs reading and writing channels instead of the files named in the model
+    private JobStreams streams;
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean progressPending = new AtomicBoolean();
+
+    void setStreams(JobStreams streams) {
+        this.streams = streams;
+    }
+
+    void setPrepared() {
+        prepared = true;
+    }
+
+    private volatile boolean paused;
+    private volatile boolean cancelRequested;
+
+    synchronized void pause() {
+        paused = true;
+    }
+
+    synchronized void resume() {
+        paused = false;
+        notifyAll();
+    }
+
+    synchronized void cancel() {
+        cancelRequested = true;
+        notifyAll();
+    }
+
+    // Called by the worker between steps; blocks while paused and returns false once the job is cancelled
+    boolean awaitTurn() {
+        if (!paused && !cancelRequested) {
+            return true;
+        }
+
+        synchronized (this) {
+            try {
+                while (paused && !cancelRequested) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelRequested = true;
+            }
+
+            return !cancelRequested;
+        }
+    }
+
+    // Returns false if a progress update of this job is already waiting to be delivered
+    boolean markProgressPending() {
+        return progressPending.compareAndSet(false, true);
+    }
+
+    void clearProgressPending() {
+        progressPending.set(false);
+    }
+}
@@ -0,0 +1,191 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.control;
+
+import com.afermiano.ecmgui.control.bridge.BridgeEvent;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+// Carries job events from the workers to the thread calling drain(); nothing is allocated per event
+public class JobEventChannel {
+    public static final int DEFAULT_CAPACITY_IN_BYTES = 64 * 1024;
+    public static final int PUBLISH_MAX_SPINS = 100;
+    public static final int PUBLISH_MAX_YIELDS = 10;
+    public static final long PUBLISH_MIN_PARK_IN_NS = 1000;
+    public static final long PUBLISH_MAX_PARK_IN_NS = 1000 * 1000;
+
+    private static final BridgeEvent[] EVENTS = BridgeEvent.values();
+
+    private final ManyToOneRingBuffer ringBuffer;
+    private final Int2ObjectHashMap<Job> jobs = new Int2ObjectHashMap<>();
+    private final MessageHandler messageHandler = this::onMessage;
+    // Read from the buffer but not dispatched yet; only touched while holding the monitor
+    private final ArrayDeque<Job> pendingJobs = new ArrayDeque<>();
+    private final ArrayDeque<BridgeEvent> pendingEvents = new ArrayDeque<>();
+    private boolean dispatching;
+    private volatile Listener listener;
+
+    @FunctionalInterface
+    public interface Listener {
+        // Called on the publishing thread, after the event can be drained
+        void onPublished(BridgeEvent event);
+    }
+
+    public JobEventChannel() {
+        this(DEFAULT_CAPACITY_IN_BYTES);
+    }
+
+    public JobEventChannel(int capacityInBytes) {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(capacityInBytes + RingBufferDescriptor.TRAILER_LENGTH);
+        ringBuffer = new ManyToOneRingBuffer(new UnsafeBuffer(buffer));
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized void register(Job job) {
+        jobs.put(job.getId(), job);
+    }
+
+    // Progress is coalesced here: a job has at most one PROGRESS_UPDATE waiting to be drained
+    public void publishProgress(Job job) {
+        if (job.markProgressPending() && !write(job, BridgeEvent.PROGRESS_UPDATE)) {
+            // Dropped; a later step will try again
+            job.clearProgressPending();
+        }
+    }
+
+    // Start and completion events must not be lost, so wait for room if the buffer is full: spinning briefly, then
+    // parking for longer and longer, so a stalled drain does not keep every worker busy
+    public void publish(Job job, BridgeEvent event) {
+        if (write(job, event)) {
+            return;
+        }
+
+        final IdleStrategy idleStrategy = new BackoffIdleStrategy(PUBLISH_MAX_SPINS, PUBLISH_MAX_YIELDS, PUBLISH_MIN_PARK_IN_NS, PUBLISH_MAX_PARK_IN_NS);
+        while (!write(job, event)) {
+            idleStrategy.idle();
+        }
+    }
+
+    private boolean write(Job job, BridgeEvent event) {
+        final int index = ringBuffer.tryClaim(event.ordinal() + 1, Integer.BYTES);
+        if (index <= 0) {
+            return false;
+        }
+
+        ringBuffer.buffer().putInt(index, job.getId());
+        ringBuffer.commit(index);
+
+        final Listener currentListener = listener;
+        if (currentListener != null) {
+            currentListener.onPublished(event);
+        }
+
+        return true;
+    }
+
+    // Handlers run without holding the monitor, so a handler that blocks (e.g. a modal dialog) neither stalls the workers
+    // nor keeps the buffer full: the events read meanwhile wait here, and are dispatched in order once it returns
+    public int drain(JobEventHandler handler) {
+        synchronized (this) {
+            readAll();
+            if (dispatching) {
+                // Called again from a handler, or from another thread; the drain already dispatching delivers them
+                return 0;
+            }
+            dispatching = true;
+        }
+
+        int total = 0;
+        boolean done = false;
+        try {
+            while (true) {
+                final Job job;
+                final BridgeEvent event;
+                synchronized (this) {
+                    if (pendingJobs.isEmpty()) {
+                        // Records published while a handler ran
+                        readAll();
+                    }
+                    if (pendingJobs.isEmpty()) {
+                        // Given up under the same lock, so events read by a concurrent drain are never left behind
+                        dispatching = false;
+                        done = true;
+                        return total;
+                    }
+                    job = pendingJobs.poll();
+                    event = pendingEvents.poll();
+                }
+
+                handler.onEvent(job, event);
+                total++;
+            }
+        } finally {
+            if (!done) {
+                synchronized (this) {
+                    dispatching = false;
+                }
+            }
+        }
+    }
+
+    private void readAll() {
+        // Keeps reading, as records past the end of the buffer are not read in the same pass
+        int count;
+        do {
+            count = ringBuffer.read(messageHandler);
+        } while (count > 0);
+    }
+
+    public synchronized boolean isEmpty() {
+        return ringBuffer.size() == 0 && pendingJobs.isEmpty();
+    }
+
+    private void onMessage(int msgTypeId, MutableDirectBuffer buffer, int index, int length) {
+        final BridgeEvent event = EVENTS[msgTypeId - 1];
+        final Job job = jobs.get(buffer.getInt(index));
+
+        if (event == BridgeEvent.PROGRESS_UPDATE) {
+            // Cleared before the model is read, so newer progress is published again
+            job.clearProgressPending();
+        }
+
+        pendingJobs.add(job);
+        pendingEvents.add(event);
+
+        if (isTerminal(event)) {
+            jobs.remove(job.getId());
+        }
+    }
+
+    private static boolean isTerminal(BridgeEvent event) {
+        return event != BridgeEvent.PROGRESS_UPDATE && event != BridgeEvent.ENCODING_START && event != BridgeEvent.DECODING_START;
+    }
+}
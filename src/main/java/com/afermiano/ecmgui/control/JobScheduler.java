@@ -0,0 +1,207 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.control;
+
+import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.control.bridge.Bridge;
+import com.afermiano.ecmgui.control.bridge.BridgeEvent;
+import com.afermiano.ecmgui.jfr.PrepareEvent;
+import com.afermiano.ecmgui.jfr.StepEvent;
+import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.model.ModelSnapshot;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import lombok.SneakyThrows;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JobScheduler implements AutoCloseable {
+    public static final int EXECUTOR_TERMINATION_WAIT_IN_SECONDS = 2;
+
+    private final Context context;
+    private final ExecutorService workers;
+    private final AtomicInteger lastJobId = new AtomicInteger();
+
+    public JobScheduler(Context context, int workerCount) {
+        this(context, Executors.newFixedThreadPool(workerCount));
+    }
+
+    JobScheduler(Context context, ExecutorService workers) {
+        this.context = context;
+        this.workers = workers;
+    }
+
+    @Override
+    @SneakyThrows
+    public void close() {
+        workers.shutdown();
+        if (!workers.awaitTermination(EXECUTOR_TERMINATION_WAIT_IN_SECONDS, TimeUnit.SECONDS)) {
+            workers.shutdownNow();
+        }
+    }
+
+    public Job submit(JobType type, Model model) {
+        return submit(type, model, null);
+    }
+
+    public Job submit(JobType type, Model model, JobStreams streams) {
+        final Bridge bridge = context.getBridgeFactory().create(context, model);
+        final Job job = new Job(lastJobId.incrementAndGet(), type, model, bridge);
+
+        job.setStreams(streams);
+
+        model.clearStatus();
+        context.getEventChannel().register(job);
+        workers.submit(() -> run(job));
+
+        return job;
+    }
+
+    private void run(Job job) {
+        try {
+            runSteps(job);
+        } catch (Throwable e) {
+            // Anything a bridge throws would otherwise be swallowed by the executor, leaving the job in progress forever
+            e.printStackTrace();
+            fail(job, e);
+        }
+    }
+
+    private void runSteps(Job job) {
+        final Model model = job.getModel();
+        final Bridge bridge = job.getBridge();
+        final boolean encoding = job.getType() == JobType.ENCODING;
+        final JobEventChannel eventChannel = context.getEventChannel();
+
+        if (!job.awaitTurn()) {
+            // Cancelled while still queued
+            cancel(job);
+            return;
+        }
+
+        final ModelSnapshot snapshot = model.update(builder -> builder.startTimeInMs(System.currentTimeMillis()));
+
+        final PrepareEvent prepareEvent = new PrepareEvent();
+        prepareEvent.begin();
+        final FailureReason failureReason = prepare(job, snapshot);
+        if (prepareEvent.shouldCommit()) {
+            prepareEvent.setJob(job);
+            prepareEvent.inputFileName = snapshot.getInputFileName();
+            prepareEvent.outputFileName = snapshot.getOutputFileName();
+            prepareEvent.failureReason = failureReason.name();
+            prepareEvent.commit();
+        }
+        if (failureReason != FailureReason.SUCCESS) {
+            model.update(builder -> builder.state(State.FAILURE).failureReason(failureReason));
+            eventChannel.publish(job, encoding ? BridgeEvent.ENCODING_FAILURE : BridgeEvent.DECODING_FAILURE);
+            return;
+        }
+        model.update(builder -> builder.state(State.IN_PROGRESS));
+        job.setPrepared();
+
+        eventChannel.publish(job, encoding ? BridgeEvent.ENCODING_START : BridgeEvent.DECODING_START);
+
+        while (true) {
+            if (!job.awaitTurn()) {
+                bridge.release();
+                cancel(job);
+                return;
+            }
+
+            final ModelSnapshot before = model.getSnapshot();
+            final StepEvent stepEvent = new StepEvent();
+            stepEvent.begin();
+            if (encoding) {
+                bridge.encode();
+            } else {
+                bridge.decode();
+            }
+            stepEvent.end();
+
+            final ModelSnapshot after = model.getSnapshot();
+            final State state = after.getState();
+            if (stepEvent.shouldCommit()) {
+                stepEvent.setJob(job);
+                stepEvent.bytesRead = after.getBytesRead() - before.getBytesRead();
+                stepEvent.bytesWritten = after.getBytesWritten() - before.getBytesWritten();
+                stepEvent.state = state.name();
+                stepEvent.commit();
+            }
+
+            if (state == State.FAILURE) {
+                eventChannel.publish(job, encoding ? BridgeEvent.ENCODING_FAILURE : BridgeEvent.DECODING_FAILURE);
+                break;
+            }
+
+            if (state == State.COMPLETED) {
+                eventChannel.publish(job, encoding ? BridgeEvent.ENCODING_SUCCESS : BridgeEvent.DECODING_SUCCESS);
+                break;
+            }
+
+            eventChannel.publishProgress(job);
+        }
+    }
+
+    private static FailureReason prepare(Job job, ModelSnapshot snapshot) {
+        final Bridge bridge = job.getBridge();
+        final JobStreams streams = job.getStreams();
+
+        final boolean encoding = job.getType() == JobType.ENCODING;
+
+        if (streams != null) {
+            return encoding
+                    ? bridge.prepareEncoding(streams.getInput(), streams.getOutput())
+                    : bridge.prepareDecoding(streams.getInput(), streams.getOutput());
+        }
+
+        if (job.getType() == JobType.VERIFICATION) {
+            return bridge.prepareVerification(snapshot.getInputFileName());
+        }
+
+        return encoding
+                ? bridge.prepareEncoding(snapshot.getInputFileName(), snapshot.getOutputFileName())
+                : bridge.prepareDecoding(snapshot.getInputFileName(), snapshot.getOutputFileName());
+    }
+
+    private void fail(Job job, Throwable cause) {
+        try {
+            job.getBridge().release();
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+
+        final FailureReason failureReason;
+        if (cause instanceof OutOfMemoryError) {
+            failureReason = FailureReason.OUT_OF_MEMORY;
+        } else {
+            failureReason = job.isPrepared() ? FailureReason.ERROR_READING_INPUT_FILE : FailureReason.ERROR_OPENING_INPUT_FILE;
+        }
+
+        job.getModel().update(builder -> builder.state(State.FAILURE).failureReason(failureReason));
+        context.getEventChannel().publish(job, job.getType() == JobType.ENCODING ? BridgeEvent.ENCODING_FAILURE : BridgeEvent.DECODING_FAILURE);
+    }
+
+    private void cancel(Job job) {
+        job.getModel().update(builder -> builder.state(State.CANCELLED));
+        context.getEventChannel().publish(job, BridgeEvent.CANCELLED);
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.control.bridge;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+// Scales the amount of work done per bridge step so that each step takes about the target time
+public class AdaptiveStepSizer {
+    public static final long DEFAULT_TARGET_STEP_TIME_IN_NS = TimeUnit.MILLISECONDS.toNanos(100);
+    public static final int INITIAL_STEP_IN_BYTES = 5 * 1024 * 1024;
+    public static final int MIN_STEP_IN_BYTES = 256 * 1024;
+    public static final int MAX_STEP_IN_BYTES = 64 * 1024 * 1024;
+    public static final double MAX_GROWTH_FACTOR = 2.0;
+    public static final double MAX_SHRINK_FACTOR = 0.5;
+
+    private final long targetStepTimeInNs;
+    @Getter
+    private int stepInBytes = INITIAL_STEP_IN_BYTES;
+
+    public AdaptiveStepSizer() {
+        this(DEFAULT_TARGET_STEP_TIME_IN_NS);
+    }
+
+    public AdaptiveStepSizer(long targetStepTimeInNs) {
+        this.targetStepTimeInNs = targetStepTimeInNs;
+    }
+
+    public void reset() {
+        stepInBytes = INITIAL_STEP_IN_BYTES;
+    }
+
+    public void record(long stepTimeInNs) {
+        // Limited per step, so a single hiccup (or a short last step) does not swing the size too far
+        final double factor = stepTimeInNs <= 0
+                ? MAX_GROWTH_FACTOR
+                : Math.max(MAX_SHRINK_FACTOR, Math.min(MAX_GROWTH_FACTOR, (double) targetStepTimeInNs / stepTimeInNs));
+
+        stepInBytes = (int) Math.max(MIN_STEP_IN_BYTES, Math.min(MAX_STEP_IN_BYTES, (long) (stepInBytes * factor)));
+    }
+}
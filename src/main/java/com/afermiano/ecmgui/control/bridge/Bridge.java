@@ -19,13 +19,25 @@ package com.afermiano.ecmgui.control.bridge;
 
 import com.afermiano.ecmgui.Context;
 import com.afermiano.ecmgui.control.Control;
+import com.afermiano.ecmgui.model.ImageHashes;
+import com.afermiano.ecmgui.model.Model;
 import com.afermiano.ecmgui.model.nativemapping.FailureReason;
 
+import java.io.File;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static com.afermiano.ecmgui.util.Closeables.closeQuietly;
+
 public abstract class Bridge {
+    public static final String NULL_DEVICE = File.separatorChar == '\\' ? "NUL" : "/dev/null";
+
     private final Context context;
+    private final Model model;
 
-    protected Bridge(Context context) {
+    protected Bridge(Context context, Model model) {
         this.context = context;
+        this.model = model;
     }
 
     public abstract FailureReason prepareEncoding(String inputFileName, String outputFileName);
@@ -36,27 +48,70 @@ public abstract class Bridge {
 
     public abstract void decode();
 
+    // Decodes without keeping the image; engines that can only decode into a file write it to the null device
+    public FailureReason prepareVerification(String inputFileName) {
+        return prepareDecoding(inputFileName, NULL_DEVICE);
+    }
+
+    // Encodes or decodes in a single pass between channels that need not be seekable (e.g. standard input and output);
+    // the channels belong to the bridge from here on
+    public FailureReason prepareEncoding(ReadableByteChannel input, WritableByteChannel output) {
+        return rejectStreams(input, output);
+    }
+
+    public FailureReason prepareDecoding(ReadableByteChannel input, WritableByteChannel output) {
+        return rejectStreams(input, output);
+    }
+
+    private static FailureReason rejectStreams(ReadableByteChannel input, WritableByteChannel output) {
+        closeQuietly(input);
+        closeQuietly(output);
+
+        return FailureReason.ERROR_OPENING_INPUT_FILE;
+    }
+
+    // Whether a failed job left a checkpoint next to its output, so running it again continues from there
+    public boolean isResumable() {
+        return false;
+    }
+
+    // Frees whatever a job still holds when it is cancelled between steps
+    public void release() {
+    }
+
     protected void setPercentage(int analyzePercentage, int encodingOrDecodingPercentage) {
         final Control control = context.getControl();
 
-        control.setPercentage(analyzePercentage, encodingOrDecodingPercentage);
+        control.setPercentage(model, analyzePercentage, encodingOrDecodingPercentage);
+    }
+
+    protected void setProgress(int analyzePercentage, int encodingOrDecodingPercentage, long bytesToRead, long bytesRead, long bytesWritten) {
+        final Control control = context.getControl();
+
+        control.setProgress(model, analyzePercentage, encodingOrDecodingPercentage, bytesToRead, bytesRead, bytesWritten);
     }
 
     protected void setFailure(FailureReason failureReason) {
         final Control control = context.getControl();
 
-        control.setFailure(failureReason);
+        control.setFailure(model, failureReason);
+    }
+
+    protected void setImageHashes(ImageHashes imageHashes) {
+        final Control control = context.getControl();
+
+        control.setImageHashes(model, imageHashes);
     }
 
     protected void setEncodingComplete(long literalBytes, long mode1Sectors, long mode2Form1Sectors, long mode2Form2Sectors, long bytesBeforeProcessing, long bytesAfterProcessing) {
         final Control control = context.getControl();
 
-        control.setEncodingComplete(literalBytes, mode1Sectors, mode2Form1Sectors, mode2Form2Sectors, bytesBeforeProcessing, bytesAfterProcessing);
+        control.setEncodingComplete(model, literalBytes, mode1Sectors, mode2Form1Sectors, mode2Form2Sectors, bytesBeforeProcessing, bytesAfterProcessing);
     }
 
     protected void setDecodingComplete(long bytesBeforeProcessing, long bytesAfterProcessing) {
         final Control control = context.getControl();
 
-        control.setDecodingComplete(bytesBeforeProcessing, bytesAfterProcessing);
+        control.setDecodingComplete(model, bytesBeforeProcessing, bytesAfterProcessing);
     }
 }
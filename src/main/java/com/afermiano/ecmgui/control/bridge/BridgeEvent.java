@@ -18,9 +18,12 @@
 package com.afermiano.ecmgui.control.bridge;
 
 public enum BridgeEvent {
+    ENCODING_START,
+    DECODING_START,
     ENCODING_FAILURE,
     ENCODING_SUCCESS,
     DECODING_FAILURE,
     DECODING_SUCCESS,
+    CANCELLED,
     PROGRESS_UPDATE
 }
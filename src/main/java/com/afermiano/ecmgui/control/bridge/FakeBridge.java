@@ -18,6 +18,7 @@
 package com.afermiano.ecmgui.control.bridge;
 
 import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.model.Model;
 import com.afermiano.ecmgui.model.nativemapping.FailureReason;
 import lombok.SneakyThrows;
 
@@ -30,8 +31,8 @@ public class FakeBridge extends Bridge {
     private static int PROCESSING_PAUSE_IN_MS = 200;
     private long startTimeInMs;
 
-    public FakeBridge(Context context, boolean shouldSucceed) {
-        super(context);
+    public FakeBridge(Context context, Model model, boolean shouldSucceed) {
+        super(context, model);
         this.shouldSucceed = shouldSucceed;
     }
 
@@ -0,0 +1,206 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.control.bridge;
+
+import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.ecm.CheckpointFile;
+import com.afermiano.ecmgui.ecm.EcmDecoder;
+import com.afermiano.ecmgui.ecm.EcmEncoder;
+import com.afermiano.ecmgui.ecm.EcmStreamDecoder;
+import com.afermiano.ecmgui.ecm.EcmStreamEncoder;
+import com.afermiano.ecmgui.ecm.Progress;
+import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+
+public class JavaBridge extends Bridge {
+    private final AdaptiveStepSizer stepSizer = new AdaptiveStepSizer();
+    private final Progress progress = new Progress();
+    private final ForkJoinPool pool;
+    private EcmEncoder encoder;
+    private EcmDecoder decoder;
+    private EcmStreamEncoder streamEncoder;
+    private EcmStreamDecoder streamDecoder;
+
+    public JavaBridge(Context context, Model model, ForkJoinPool pool) {
+        super(context, model);
+        this.pool = pool;
+    }
+
+    public JavaBridge(Context context, Model model) {
+        this(context, model, ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public FailureReason prepareEncoding(String inputFileName, String outputFileName) {
+        stepSizer.reset();
+
+        encoder = new EcmEncoder(inputFileName, outputFileName, stepSizer.getStepInBytes(), progress, pool);
+        encoder.setCheckpointIntervalInBytes(CheckpointFile.DEFAULT_INTERVAL_IN_BYTES);
+
+        return encoder.prepare();
+    }
+
+    @Override
+    public FailureReason prepareEncoding(ReadableByteChannel input, WritableByteChannel output) {
+        stepSizer.reset();
+
+        streamEncoder = new EcmStreamEncoder(input, output, stepSizer.getStepInBytes(), progress);
+
+        return reportStreamPrepared(streamEncoder.prepare());
+    }
+
+    @Override
+    public void encode() {
+        if (encoder == null && streamEncoder == null) {
+            // Never thrown at the worker: a job that reaches a step without an engine just fails
+            setFailure(FailureReason.ERROR_OPENING_INPUT_FILE);
+            return;
+        }
+
+        final long startTimeInNs = System.nanoTime();
+        if (streamEncoder != null) {
+            streamEncoder.setMaxStepInBytes(stepSizer.getStepInBytes());
+            streamEncoder.encode();
+        } else {
+            encoder.setMaxStepInBytes(stepSizer.getStepInBytes());
+            encoder.encode();
+        }
+        stepSizer.record(System.nanoTime() - startTimeInNs);
+
+        if (progress.getState() == State.FAILURE) {
+            setFailure(progress.getFailureReason());
+            return;
+        }
+
+        if (progress.getState() == State.COMPLETED) {
+            reportProgress();
+            setImageHashes(progress.getImageHashes());
+            setEncodingComplete(progress.getLiteralBytes(),
+                    progress.getMode1Sectors(),
+                    progress.getMode2Form1Sectors(),
+                    progress.getMode2Form2Sectors(),
+                    progress.getBytesBeforeProcessing(),
+                    progress.getBytesAfterProcessing());
+            return;
+        }
+
+        reportProgress();
+    }
+
+    @Override
+    public FailureReason prepareDecoding(String inputFileName, String outputFileName) {
+        stepSizer.reset();
+
+        decoder = new EcmDecoder(inputFileName, outputFileName, stepSizer.getStepInBytes(), progress, pool);
+        decoder.setCheckpointIntervalInBytes(CheckpointFile.DEFAULT_INTERVAL_IN_BYTES);
+
+        return decoder.prepare();
+    }
+
+    @Override
+    public FailureReason prepareVerification(String inputFileName) {
+        return prepareDecoding(inputFileName, null);
+    }
+
+    @Override
+    public FailureReason prepareDecoding(ReadableByteChannel input, WritableByteChannel output) {
+        stepSizer.reset();
+
+        streamDecoder = new EcmStreamDecoder(input, output, stepSizer.getStepInBytes(), progress);
+
+        return reportStreamPrepared(streamDecoder.prepare());
+    }
+
+    private FailureReason reportStreamPrepared(FailureReason failureReason) {
+        if (failureReason == FailureReason.SUCCESS) {
+            // There is no analysis pass, so it ends right away
+            reportProgress();
+        }
+
+        return failureReason;
+    }
+
+    @Override
+    public void decode() {
+        if (decoder == null && streamDecoder == null) {
+            setFailure(FailureReason.ERROR_OPENING_INPUT_FILE);
+            return;
+        }
+
+        final long startTimeInNs = System.nanoTime();
+        if (streamDecoder != null) {
+            streamDecoder.setMaxStepInBytes(stepSizer.getStepInBytes());
+            streamDecoder.decode();
+        } else {
+            decoder.setMaxStepInBytes(stepSizer.getStepInBytes());
+            decoder.decode();
+        }
+        stepSizer.record(System.nanoTime() - startTimeInNs);
+
+        if (progress.getState() == State.FAILURE) {
+            setFailure(progress.getFailureReason());
+            return;
+        }
+
+        if (progress.getState() == State.COMPLETED) {
+            // Streamed input only knows its length at the end
+            reportProgress();
+            setImageHashes(progress.getImageHashes());
+            setDecodingComplete(progress.getBytesBeforeProcessing(), progress.getBytesAfterProcessing());
+            return;
+        }
+
+        reportProgress();
+    }
+
+    @Override
+    public boolean isResumable() {
+        return (encoder != null && encoder.isResumable()) || (decoder != null && decoder.isResumable());
+    }
+
+    @Override
+    public void release() {
+        if (encoder != null) {
+            encoder.close();
+        }
+        if (decoder != null) {
+            decoder.close();
+        }
+        if (streamEncoder != null) {
+            streamEncoder.close();
+        }
+        if (streamDecoder != null) {
+            streamDecoder.close();
+        }
+    }
+
+    // Sent on every step, even if the percentages did not move, so the throughput keeps being sampled
+    private void reportProgress() {
+        setProgress(progress.getAnalyzePercentage(),
+                progress.getEncodingOrDecodingPercentage(),
+                progress.getBytesToRead(),
+                progress.getBytesRead(),
+                progress.getBytesWritten());
+    }
+}
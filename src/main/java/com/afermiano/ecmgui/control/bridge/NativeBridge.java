@@ -18,37 +18,135 @@
 package com.afermiano.ecmgui.control.bridge;
 
 import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.model.Model;
 import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
 import com.afermiano.ecmgui.util.FailureReasonMapper;
 
+import java.io.File;
+
 public class NativeBridge extends Bridge {
+    // libecm fixes the step size at prepare time, so the adaptive size is reached by running several native steps per call
+    public static final int NATIVE_STEP_IN_BYTES = AdaptiveStepSizer.MIN_STEP_IN_BYTES;
+    private static final long NO_HANDLE = 0;
+
+    // Opaque pointer to the native job state; each bridge owns at most one
+    private long handle = NO_HANDLE;
+    private final AdaptiveStepSizer stepSizer;
+    private boolean encoding;
+    private long inputLength;
+    private File outputFile;
 
-    public NativeBridge(Context context) {
-        super(context);
+    public NativeBridge(Context context, Model model, AdaptiveStepSizer stepSizer) {
+        super(context, model);
+        this.stepSizer = stepSizer;
         System.loadLibrary("ecmglue");
     }
 
+    public NativeBridge(Context context, Model model) {
+        this(context, model, new AdaptiveStepSizer());
+    }
+
     @Override
     public FailureReason prepareEncoding(String inputFileName, String outputFileName) {
-        final int ret = nativePrepareEncoding(inputFileName, outputFileName);
-        return FailureReasonMapper.get(ret);
+        checkNoJob();
+        stepSizer.reset();
+        setFiles(true, inputFileName, outputFileName);
+        return checkPrepared(nativePrepareEncoding(inputFileName, outputFileName, NATIVE_STEP_IN_BYTES));
     }
 
     @Override
     public FailureReason prepareDecoding(String inputFileName, String outputFileName) {
-        final int ret = nativePrepareDecoding(inputFileName, outputFileName);
-        return FailureReasonMapper.get(ret);
+        checkNoJob();
+        stepSizer.reset();
+        setFiles(false, inputFileName, outputFileName);
+        return checkPrepared(nativePrepareDecoding(inputFileName, outputFileName, NATIVE_STEP_IN_BYTES));
+    }
+
+    // A bridge runs a single job: preparing another one would silently drop what libecm holds for the current one
+    private void checkNoJob() {
+        if (handle != NO_HANDLE) {
+            throw new IllegalStateException("The native job of this bridge was not released");
+        }
+    }
+
+    private void setFiles(boolean encoding, String inputFileName, String outputFileName) {
+        this.encoding = encoding;
+        inputLength = new File(inputFileName).length();
+        outputFile = new File(outputFileName);
+    }
+
+    private FailureReason checkPrepared(long newHandle) {
+        if (newHandle == NO_HANDLE) {
+            return FailureReason.OUT_OF_MEMORY;
+        }
+
+        handle = newHandle;
+
+        final FailureReason failureReason = FailureReasonMapper.get(nativeGetPrepareResult(handle));
+        if (failureReason != FailureReason.SUCCESS) {
+            release();
+        }
+
+        return failureReason;
+    }
+
+    @Override
+    public void encode() {
+        final long startTimeInNs = System.nanoTime();
+        final int nativeState = nativeEncode(handle, getStepCount());
+        stepSizer.record(System.nanoTime() - startTimeInNs);
+        releaseIfDone(nativeState);
     }
 
     @Override
-    public native void encode();
+    public void decode() {
+        final long startTimeInNs = System.nanoTime();
+        final int nativeState = nativeDecode(handle, getStepCount());
+        stepSizer.record(System.nanoTime() - startTimeInNs);
+        releaseIfDone(nativeState);
+    }
+
+    private int getStepCount() {
+        return Math.max(1, stepSizer.getStepInBytes() / NATIVE_STEP_IN_BYTES);
+    }
+
+    private void releaseIfDone(int nativeState) {
+        if (nativeState != State.IN_PROGRESS.getNativeCode()) {
+            release();
+        }
+    }
 
     @Override
-    public native void decode();
+    public void release() {
+        if (handle != NO_HANDLE) {
+            nativeRelease(handle);
+            handle = NO_HANDLE;
+        }
+    }
+
+    private native long nativePrepareEncoding(String inputFileName, String outputFileName, int stepInBytes);
 
-    private native int nativePrepareEncoding(String inputFileName, String outputFileName);
+    private native long nativePrepareDecoding(String inputFileName, String outputFileName, int stepInBytes);
 
-    private native int nativePrepareDecoding(String inputFileName, String outputFileName);
+    private native int nativeEncode(long handle, int stepCount);
+
+    private native int nativeDecode(long handle, int stepCount);
+
+    private static native int nativeGetPrepareResult(long handle);
+
+    private static native void nativeRelease(long handle);
+
+    // libecm only reports percentages, so the bytes read are estimated from them; written bytes come from the file size
+    @Override
+    protected void setPercentage(int analyzePercentage, int encodingOrDecodingPercentage) {
+        final long bytesToRead = encoding ? 2 * inputLength : inputLength;
+        final long bytesRead = encoding
+                ? inputLength * (analyzePercentage + encodingOrDecodingPercentage) / 100
+                : inputLength * encodingOrDecodingPercentage / 100;
+
+        setProgress(analyzePercentage, encodingOrDecodingPercentage, bytesToRead, bytesRead, outputFile.length());
+    }
 
     @SuppressWarnings("unused")
     private void setFailure(int nativeCode) {
@@ -0,0 +1,36 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.Value;
+
+// Last committed step of a job: everything before these positions is durably in the output file
+@Value
+public class Checkpoint {
+    boolean encoding;
+    long inputLength;
+    long inputModifiedTimeInMs;
+    int recordIndex;
+    int elementIndex;
+    long inputPosition;
+    long outputPosition;
+    // CRC32 of the output before "outputPosition", so a file rewritten since then is not resumed
+    int outputCrc32;
+    // Analysis records of an encoding, so the analysis pass is not run again; null for a decoding
+    RecordList records;
+}
@@ -0,0 +1,125 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.util.AtomicFiles;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Sidecar next to the output of a job, holding its last Checkpoint so a restarted job continues from there.
+// Like RecordIndexFile, it is only trusted while the input keeps its length and modification time.
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class CheckpointFile {
+    public static final String EXTENSION = ".ckpt";
+    public static final byte[] MAGIC = {'E', 'C', 'M', 'C'};
+    public static final int VERSION = 1;
+    public static final long DEFAULT_INTERVAL_IN_BYTES = 64L * 1024 * 1024;
+
+    public static Path sidecarOf(Path outputPath) {
+        return outputPath.resolveSibling(outputPath.getFileName() + EXTENSION);
+    }
+
+    // The output must already be forced to disk up to the checkpoint; the sidecar itself is forced before it replaces the previous one
+    public static void save(Checkpoint checkpoint, Path outputPath) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.write(MAGIC);
+            output.writeInt(VERSION);
+            output.writeBoolean(checkpoint.isEncoding());
+            output.writeLong(checkpoint.getInputLength());
+            output.writeLong(checkpoint.getInputModifiedTimeInMs());
+            output.writeInt(checkpoint.getRecordIndex());
+            output.writeInt(checkpoint.getElementIndex());
+            output.writeLong(checkpoint.getInputPosition());
+            output.writeLong(checkpoint.getOutputPosition());
+            output.writeInt(checkpoint.getOutputCrc32());
+
+            final RecordList records = checkpoint.getRecords();
+            output.writeInt(records == null ? 0 : records.size());
+            for (int i = 0; records != null && i < records.size(); i++) {
+                output.writeByte(records.getType(i).getCode());
+                output.writeInt(records.getCount(i));
+            }
+        }
+
+        AtomicFiles.write(sidecarOf(outputPath), temporary -> {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+        });
+    }
+
+    // Returns null if there is no sidecar, or it was written for another kind of job or another input
+    public static Checkpoint load(Path outputPath, Path inputPath, boolean encoding) throws IOException {
+        final Path sidecar = sidecarOf(outputPath);
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(sidecar))) {
+            final byte[] magic = new byte[MAGIC.length];
+            input.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || input.readInt() != VERSION || input.readBoolean() != encoding) {
+                return null;
+            }
+
+            final long inputLength = input.readLong();
+            final long inputModifiedTimeInMs = input.readLong();
+            if (inputLength != Files.size(inputPath) || inputModifiedTimeInMs != Files.getLastModifiedTime(inputPath).toMillis()) {
+                return null;
+            }
+
+            final int recordIndex = input.readInt();
+            final int elementIndex = input.readInt();
+            final long inputPosition = input.readLong();
+            final long outputPosition = input.readLong();
+            final int outputCrc32 = input.readInt();
+
+            final int size = input.readInt();
+            final RecordList records = encoding ? new RecordList() : null;
+            for (int i = 0; i < size; i++) {
+                final int code = input.readUnsignedByte();
+                if (code >= SectorType.values().length || records == null) {
+                    return null;
+                }
+                records.add(SectorType.fromCode(code), input.readInt());
+            }
+
+            return new Checkpoint(encoding, inputLength, inputModifiedTimeInMs, recordIndex, elementIndex, inputPosition, outputPosition, outputCrc32, records);
+        }
+    }
+
+    public static void delete(Path outputPath) throws IOException {
+        Files.deleteIfExists(sidecarOf(outputPath));
+    }
+}
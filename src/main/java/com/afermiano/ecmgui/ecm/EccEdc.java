@@ -0,0 +1,246 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class EccEdc {
+    public static final int ADDRESS_OFFSET = 0x0C;
+    public static final int MODE_OFFSET = 0x0F;
+    public static final int P_PARITY_OFFSET = 0x81C;
+    public static final int Q_PARITY_OFFSET = 0x8C8;
+    public static final int P_MAJOR_COUNT = 86;
+    public static final int P_MINOR_COUNT = 24;
+    public static final int P_MAJOR_MULT = 2;
+    public static final int P_MINOR_INC = 86;
+    public static final int Q_MAJOR_COUNT = 52;
+    public static final int Q_MINOR_COUNT = 43;
+    public static final int Q_MAJOR_MULT = 86;
+    public static final int Q_MINOR_INC = 88;
+    public static final int EDC_POLYNOMIAL = 0xD8018001;
+
+    private static final int[] ECC_F_LUT = new int[256];
+    private static final int[] ECC_B_LUT = new int[256];
+    private static final int[] EDC_LUT = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            final int j = (i << 1) ^ ((i & 0x80) != 0 ? 0x11D : 0);
+            ECC_F_LUT[i] = j;
+            ECC_B_LUT[i ^ j] = i;
+
+            int edc = i;
+            for (int k = 0; k < 8; k++) {
+                edc = (edc >>> 1) ^ ((edc & 1) != 0 ? EDC_POLYNOMIAL : 0);
+            }
+            EDC_LUT[i] = edc;
+        }
+    }
+
+    public static int computeEdc(int edc, byte[] source, int offset, int length) {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            edc = (edc >>> 8) ^ EDC_LUT[(edc ^ source[i]) & 0xFF];
+        }
+
+        return edc;
+    }
+
+    // EDC of "first" followed by "second", from the EDC of each part; same approach as zlib's crc32_combine
+    public static int combineEdc(int firstEdc, int secondEdc, long secondLength) {
+        if (secondLength <= 0) {
+            return firstEdc ^ secondEdc;
+        }
+
+        final int[] even = new int[32];
+        final int[] odd = new int[32];
+
+        odd[0] = EDC_POLYNOMIAL;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+
+        squareGf2Matrix(even, odd);
+        squareGf2Matrix(odd, even);
+
+        int edc = firstEdc;
+        long length = secondLength;
+        do {
+            squareGf2Matrix(even, odd);
+            if ((length & 1) != 0) {
+                edc = multiplyGf2Matrix(even, edc);
+            }
+            length >>>= 1;
+            if (length == 0) {
+                break;
+            }
+
+            squareGf2Matrix(odd, even);
+            if ((length & 1) != 0) {
+                edc = multiplyGf2Matrix(odd, edc);
+            }
+            length >>>= 1;
+        } while (length != 0);
+
+        return edc ^ secondEdc;
+    }
+
+    private static int multiplyGf2Matrix(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+
+        return sum;
+    }
+
+    private static void squareGf2Matrix(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = multiplyGf2Matrix(matrix, matrix[n]);
+        }
+    }
+
+    public static void writeEdc(int edc, byte[] destination, int offset) {
+        destination[offset] = (byte) edc;
+        destination[offset + 1] = (byte) (edc >>> 8);
+        destination[offset + 2] = (byte) (edc >>> 16);
+        destination[offset + 3] = (byte) (edc >>> 24);
+    }
+
+    public static boolean matchesEdc(int edc, byte[] source, int offset) {
+        return source[offset] == (byte) edc
+                && source[offset + 1] == (byte) (edc >>> 8)
+                && source[offset + 2] == (byte) (edc >>> 16)
+                && source[offset + 3] == (byte) (edc >>> 24);
+    }
+
+    // Regenerates EDC and ECC of a full 2352 bytes sector starting at "offset"
+    public static void generate(byte[] sector, int offset, SectorType type) {
+        switch (type) {
+            case MODE_1:
+                writeEdc(computeEdc(0, sector, offset, 0x810), sector, offset + 0x810);
+                for (int i = 0x814; i < 0x81C; i++) {
+                    sector[offset + i] = 0;
+                }
+                generateEcc(sector, offset, false);
+                break;
+            case MODE_2_FORM_1:
+                writeEdc(computeEdc(0, sector, offset + 0x10, 0x808), sector, offset + 0x818);
+                generateEcc(sector, offset, true);
+                break;
+            case MODE_2_FORM_2:
+                writeEdc(computeEdc(0, sector, offset + 0x10, 0x91C), sector, offset + 0x92C);
+                break;
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    private static void generateEcc(byte[] sector, int offset, boolean zeroAddress) {
+        final int addressOffset = offset + ADDRESS_OFFSET;
+        byte address0 = 0, address1 = 0, address2 = 0, address3 = 0;
+
+        if (zeroAddress) {
+            address0 = sector[addressOffset];
+            address1 = sector[addressOffset + 1];
+            address2 = sector[addressOffset + 2];
+            address3 = sector[addressOffset + 3];
+            sector[addressOffset] = sector[addressOffset + 1] = sector[addressOffset + 2] = sector[addressOffset + 3] = 0;
+        }
+
+        computeEccBlock(sector, addressOffset, P_MAJOR_COUNT, P_MINOR_COUNT, P_MAJOR_MULT, P_MINOR_INC, offset + P_PARITY_OFFSET);
+        computeEccBlock(sector, addressOffset, Q_MAJOR_COUNT, Q_MINOR_COUNT, Q_MAJOR_MULT, Q_MINOR_INC, offset + Q_PARITY_OFFSET);
+
+        if (zeroAddress) {
+            sector[addressOffset] = address0;
+            sector[addressOffset + 1] = address1;
+            sector[addressOffset + 2] = address2;
+            sector[addressOffset + 3] = address3;
+        }
+    }
+
+    private static void computeEccBlock(byte[] sector, int source, int majorCount, int minorCount, int majorMult, int minorInc, int destination) {
+        final int size = majorCount * minorCount;
+
+        for (int major = 0; major < majorCount; major++) {
+            int index = (major >> 1) * majorMult + (major & 1);
+            int eccA = 0;
+            int eccB = 0;
+
+            for (int minor = 0; minor < minorCount; minor++) {
+                final int value = sector[source + index] & 0xFF;
+                index += minorInc;
+                if (index >= size) {
+                    index -= size;
+                }
+                eccA ^= value;
+                eccB ^= value;
+                eccA = ECC_F_LUT[eccA];
+            }
+
+            eccA = ECC_B_LUT[ECC_F_LUT[eccA] ^ eccB];
+            sector[destination + major] = (byte) eccA;
+            sector[destination + major + majorCount] = (byte) (eccA ^ eccB);
+        }
+    }
+
+    // "data" points to the byte right after the 4 address bytes; a zero address is assumed if "addressOffset" is negative
+    public static boolean checkEcc(byte[] buffer, int addressOffset, int dataOffset, int eccOffset) {
+        return checkEccBlock(buffer, addressOffset, dataOffset, P_MAJOR_COUNT, P_MINOR_COUNT, P_MAJOR_MULT, P_MINOR_INC, eccOffset)
+                && checkEccBlock(buffer, addressOffset, dataOffset, Q_MAJOR_COUNT, Q_MINOR_COUNT, Q_MAJOR_MULT, Q_MINOR_INC, eccOffset + 2 * P_MAJOR_COUNT);
+    }
+
+    private static boolean checkEccBlock(byte[] buffer, int addressOffset, int dataOffset, int majorCount, int minorCount, int majorMult, int minorInc, int eccOffset) {
+        final int size = majorCount * minorCount;
+
+        for (int major = 0; major < majorCount; major++) {
+            int index = (major >> 1) * majorMult + (major & 1);
+            int eccA = 0;
+            int eccB = 0;
+
+            for (int minor = 0; minor < minorCount; minor++) {
+                final int value;
+                if (index < 4) {
+                    value = addressOffset < 0 ? 0 : buffer[addressOffset + index] & 0xFF;
+                } else {
+                    value = buffer[dataOffset + index - 4] & 0xFF;
+                }
+                index += minorInc;
+                if (index >= size) {
+                    index -= size;
+                }
+                eccA ^= value;
+                eccB ^= value;
+                eccA = ECC_F_LUT[eccA];
+            }
+
+            eccA = ECC_B_LUT[ECC_F_LUT[eccA] ^ eccB];
+            if (buffer[eccOffset + major] != (byte) eccA || buffer[eccOffset + major + majorCount] != (byte) (eccA ^ eccB)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
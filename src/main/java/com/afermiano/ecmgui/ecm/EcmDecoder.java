@@ -0,0 +1,332 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.afermiano.ecmgui.util.Closeables.closeQuietly;
+
+// A null output file name only verifies the .ecm: everything is decoded and checked, but nothing is written
+public class EcmDecoder implements AutoCloseable {
+    private final String inputFileName;
+    private final String outputFileName;
+    @Setter
+    private int maxStepInBytes;
+    private final Progress progress;
+    private final ForkJoinPool pool;
+    // Output bytes between two checkpoints; 0 neither writes checkpoints nor resumes from one
+    @Setter
+    private long checkpointIntervalInBytes;
+    // Whether the output may be kept after a failure, because a checkpoint describes it
+    @Getter
+    private boolean resumable;
+
+    private final RecordIndex index = new RecordIndex();
+    private final byte[] checksumBytes = new byte[EcmFormat.CHECKSUM_SIZE];
+
+    private FileChannel inputChannel;
+    private RandomAccessFile outputFile;
+    private MappedWindow input;
+    private MappedWindow output;
+    private RecordScanner scanner;
+    private ParallelDecoder decoder;
+    private ImageHasher hasher;
+    private Path outputPath;
+    private long inputLength;
+    private long inputModifiedTimeInMs;
+
+    private Checkpoint resumed;
+    private ResumeReader outputReader;
+    private long lastCheckpointPosition;
+
+    public EcmDecoder(String inputFileName, String outputFileName, int maxStepInBytes, Progress progress, ForkJoinPool pool) {
+        this.inputFileName = inputFileName;
+        this.outputFileName = outputFileName;
+        this.maxStepInBytes = maxStepInBytes;
+        this.progress = progress;
+        this.pool = pool;
+    }
+
+    public EcmDecoder(String inputFileName, String outputFileName, int maxStepInBytes, Progress progress) {
+        this(inputFileName, outputFileName, maxStepInBytes, progress, ForkJoinPool.commonPool());
+    }
+
+    public FailureReason prepare() {
+        progress.clear();
+
+        try {
+            final Path inputPath = Paths.get(inputFileName);
+            inputChannel = FileChannel.open(inputPath, StandardOpenOption.READ);
+            inputLength = inputChannel.size();
+            inputModifiedTimeInMs = Files.getLastModifiedTime(inputPath).toMillis();
+            input = new MappedWindow(inputChannel, FileChannel.MapMode.READ_ONLY, inputLength);
+        } catch (IOException | InvalidPathException e) {
+            close();
+            return FailureReason.ERROR_OPENING_INPUT_FILE;
+        }
+
+        try {
+            if (inputLength < EcmFormat.MAGIC.length) {
+                close();
+                return FailureReason.INVALID_ECM_FILE;
+            }
+            final byte[] magic = new byte[EcmFormat.MAGIC.length];
+            input.get(0, magic, 0, magic.length);
+            if (!Arrays.equals(magic, EcmFormat.MAGIC)) {
+                close();
+                return FailureReason.INVALID_ECM_FILE;
+            }
+        } catch (IOException e) {
+            close();
+            return FailureReason.ERROR_READING_INPUT_FILE;
+        }
+
+        if (outputFileName != null) {
+            try {
+                outputPath = Paths.get(outputFileName);
+                resumed = checkpointIntervalInBytes > 0 ? loadCheckpoint() : null;
+                outputFile = new RandomAccessFile(outputFileName, "rw");
+                if (resumed == null) {
+                    outputFile.setLength(0);
+                    if (checkpointIntervalInBytes > 0) {
+                        CheckpointFile.delete(outputPath);
+                    }
+                }
+            } catch (IOException | InvalidPathException e) {
+                close();
+                return FailureReason.ERROR_OPENING_OUTPUT_FILE;
+            }
+        }
+
+        scanner = new RecordScanner(input, inputLength);
+        progress.setBytesBeforeProcessing(inputLength);
+        // The header pass skips over the sector data, so only the decoding pass is counted
+        progress.setBytesToRead(inputLength);
+
+        return FailureReason.SUCCESS;
+    }
+
+    // Returns null unless the checkpoint describes this input and an output at least as long as it needs
+    private Checkpoint loadCheckpoint() {
+        try {
+            final Checkpoint checkpoint = CheckpointFile.load(outputPath, Paths.get(inputFileName), false);
+            if (checkpoint == null || !Files.isRegularFile(outputPath) || Files.size(outputPath) < checkpoint.getOutputPosition()) {
+                return null;
+            }
+
+            return checkpoint;
+        } catch (IOException e) {
+            // An unreadable checkpoint only costs a fresh start
+            return null;
+        }
+    }
+
+    public void decode() {
+        if (progress.getState() != State.IN_PROGRESS) {
+            return;
+        }
+
+        try {
+            if (decoder == null) {
+                headerPassStep();
+            } else {
+                decodeStep();
+            }
+        } catch (EcmException e) {
+            close();
+            progress.fail(e.getFailureReason());
+        } catch (IOException e) {
+            close();
+            progress.fail(FailureReason.ERROR_READING_INPUT_FILE);
+        } catch (OutOfMemoryError e) {
+            close();
+            progress.fail(FailureReason.OUT_OF_MEMORY);
+        }
+    }
+
+    // Walks the record headers only, indexing them so the output can be sized and mapped, and decoded in ranges
+    private void headerPassStep() throws IOException, EcmException {
+        scanner.scan(maxStepInBytes, index);
+
+        if (scanner.isDone()) {
+            startDecoding();
+            return;
+        }
+
+        progress.setAnalyzePercentage(Progress.percentage(scanner.getPosition(), inputLength));
+    }
+
+    private void startDecoding() throws EcmException {
+        if (outputFile != null) {
+            try {
+                outputFile.setLength(index.getOutputLength());
+                output = new MappedWindow(outputFile.getChannel(), FileChannel.MapMode.READ_WRITE, index.getOutputLength());
+            } catch (IOException e) {
+                throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+            }
+        }
+
+        hasher = new ImageHasher(pool);
+        decoder = new ParallelDecoder(input, output, index, pool, hasher);
+        progress.setAnalyzePercentage(100);
+
+        if (resumed != null && matchesIndex(resumed)) {
+            // Hashes and checksum are fed again from the image already decoded, which is checked against the checkpoint
+            outputReader = new ResumeReader(outputFile.getChannel(), resumed.getOutputPosition(), hasher, null);
+            resumable = true;
+        } else if (resumed != null) {
+            resumed = null;
+            deleteCheckpoint();
+        }
+    }
+
+    private boolean matchesIndex(Checkpoint checkpoint) {
+        final int recordIndex = checkpoint.getRecordIndex();
+        if (recordIndex < 0 || recordIndex >= index.size() || checkpoint.getElementIndex() < 0 || checkpoint.getElementIndex() >= index.getCount(recordIndex)) {
+            return false;
+        }
+
+        return index.getOutputOffset(recordIndex) + (long) checkpoint.getElementIndex() * index.getType(recordIndex).getRawSize() == checkpoint.getOutputPosition()
+                && index.getInputOffset(recordIndex) + (long) checkpoint.getElementIndex() * index.getType(recordIndex).getEncodedSize() == checkpoint.getInputPosition();
+    }
+
+    private void decodeStep() throws IOException, EcmException {
+        if (outputReader != null) {
+            resumeStep();
+            return;
+        }
+
+        decoder.decode(maxStepInBytes);
+
+        if (decoder.isDone()) {
+            finish();
+            return;
+        }
+
+        progress.setEncodingOrDecodingPercentage(Progress.percentage(decoder.getOutputPosition(), index.getOutputLength()));
+        progress.setBytesRead(decoder.getInputPosition());
+        progress.setBytesWritten(decoder.getOutputPosition());
+
+        checkpointIfDue();
+    }
+
+    private void resumeStep() throws EcmException {
+        try {
+            outputReader.read(maxStepInBytes);
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+        }
+
+        progress.setEncodingOrDecodingPercentage(Progress.percentage(outputReader.getPosition(), index.getOutputLength()));
+
+        if (outputReader.isDone()) {
+            if (hasher.getCrc32() == resumed.getOutputCrc32()) {
+                decoder.restore(resumed.getRecordIndex(), resumed.getElementIndex(), resumed.getOutputPosition(), outputReader.getEdc());
+                lastCheckpointPosition = resumed.getOutputPosition();
+            } else {
+                // The output was changed since the checkpoint, so it is decoded again from the start
+                deleteCheckpoint();
+                hasher = new ImageHasher(pool);
+                decoder = new ParallelDecoder(input, output, index, pool, hasher);
+            }
+            resumed = null;
+            outputReader = null;
+        }
+    }
+
+    private void checkpointIfDue() throws EcmException {
+        if (checkpointIntervalInBytes <= 0 || output == null || decoder.getOutputPosition() - lastCheckpointPosition < checkpointIntervalInBytes) {
+            return;
+        }
+
+        try {
+            output.force();
+            outputFile.getChannel().force(false);
+            CheckpointFile.save(new Checkpoint(false, inputLength, inputModifiedTimeInMs, decoder.getRecordIndex(), decoder.getElementIndex(),
+                    decoder.getInputPosition(), decoder.getOutputPosition(), hasher.getCrc32(), null), outputPath);
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+        }
+
+        lastCheckpointPosition = decoder.getOutputPosition();
+        resumable = true;
+    }
+
+    private void deleteCheckpoint() {
+        if (checkpointIntervalInBytes <= 0 || outputPath == null) {
+            return;
+        }
+
+        try {
+            CheckpointFile.delete(outputPath);
+        } catch (IOException e) {
+            // A leftover checkpoint still describes the complete output
+            e.printStackTrace();
+        }
+        resumable = false;
+    }
+
+    private void finish() throws IOException, EcmException {
+        input.get(index.getChecksumOffset(), checksumBytes, 0, EcmFormat.CHECKSUM_SIZE);
+        if (!EccEdc.matchesEdc(decoder.getChecksum(), checksumBytes, 0)) {
+            throw new EcmException(FailureReason.ERROR_IN_CHECKSUM);
+        }
+
+        progress.setImageHashes(hasher.finish());
+        close();
+        deleteCheckpoint();
+
+        progress.setBytesAfterProcessing(index.getOutputLength());
+        progress.setBytesRead(inputLength);
+        progress.setBytesWritten(index.getOutputLength());
+        progress.setEncodingOrDecodingPercentage(100);
+        progress.setState(State.COMPLETED);
+    }
+
+    @Override
+    public void close() {
+        if (output != null) {
+            // Written back and unmapped before the file is closed, so it can be deleted even on Windows
+            output.close();
+        }
+        closeQuietly(inputChannel);
+        closeQuietly(outputFile);
+        inputChannel = null;
+        outputFile = null;
+        input = null;
+        output = null;
+        scanner = null;
+        decoder = null;
+        hasher = null;
+    }
+}
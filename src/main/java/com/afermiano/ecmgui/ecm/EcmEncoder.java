@@ -0,0 +1,393 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+import static com.afermiano.ecmgui.util.Closeables.closeQuietly;
+
+public class EcmEncoder implements AutoCloseable {
+    public static final int IO_BUFFER_SIZE = 1024 * 1024;
+
+    private final String inputFileName;
+    private final String outputFileName;
+    @Setter
+    private int maxStepInBytes;
+    private final Progress progress;
+    private final ForkJoinPool pool;
+    // Input bytes between two checkpoints; 0 neither writes checkpoints nor resumes from one
+    @Setter
+    private long checkpointIntervalInBytes;
+    // Whether the output may be kept after a failure, because a checkpoint describes it
+    @Getter
+    private boolean resumable;
+
+    private final RecordList records = new RecordList();
+    private final CRC32 outputCrc32 = new CRC32();
+    private final byte[] header = new byte[EcmFormat.MAX_TYPE_COUNT_SIZE + EcmFormat.CHECKSUM_SIZE];
+    private ParallelAnalyzer analyzer;
+    private ParallelEncoder encoder;
+    private ImageHasher hasher;
+
+    private FileChannel inputChannel;
+    private FileChannel outputChannel;
+    private OutputStream output;
+    private Path outputPath;
+    private long inputLength;
+    private long inputModifiedTimeInMs;
+    private long analyzedBytes;
+    private long writtenBytes;
+
+    private Checkpoint resumed;
+    private ResumeReader inputReader;
+    private ResumeReader outputReader;
+    private long lastCheckpointPosition;
+
+    public EcmEncoder(String inputFileName, String outputFileName, int maxStepInBytes, Progress progress, ForkJoinPool pool) {
+        this.inputFileName = inputFileName;
+        this.outputFileName = outputFileName;
+        this.maxStepInBytes = maxStepInBytes;
+        this.progress = progress;
+        this.pool = pool;
+    }
+
+    public EcmEncoder(String inputFileName, String outputFileName, int maxStepInBytes, Progress progress) {
+        this(inputFileName, outputFileName, maxStepInBytes, progress, ForkJoinPool.commonPool());
+    }
+
+    public FailureReason prepare() {
+        progress.clear();
+
+        try {
+            final Path inputPath = Paths.get(inputFileName);
+            inputChannel = FileChannel.open(inputPath, StandardOpenOption.READ);
+            inputLength = inputChannel.size();
+            inputModifiedTimeInMs = Files.getLastModifiedTime(inputPath).toMillis();
+        } catch (IOException | InvalidPathException e) {
+            close();
+            return FailureReason.ERROR_OPENING_INPUT_FILE;
+        }
+
+        try {
+            outputPath = Paths.get(outputFileName);
+            resumed = checkpointIntervalInBytes > 0 ? loadCheckpoint() : null;
+            // Readable too, so a resumed job can check what it wrote before
+            outputChannel = FileChannel.open(outputPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            output = new BufferedOutputStream(Channels.newOutputStream(outputChannel), IO_BUFFER_SIZE);
+            if (resumed != null) {
+                resume();
+            } else {
+                outputChannel.truncate(0);
+                if (checkpointIntervalInBytes > 0) {
+                    CheckpointFile.delete(outputPath);
+                }
+                write(EcmFormat.MAGIC, 0, EcmFormat.MAGIC.length);
+            }
+        } catch (IOException | InvalidPathException | EcmException e) {
+            close();
+            return FailureReason.ERROR_OPENING_OUTPUT_FILE;
+        }
+
+        try {
+            analyzer = resumed != null ? null : new ParallelAnalyzer(inputChannel, inputLength, pool);
+        } catch (OutOfMemoryError e) {
+            close();
+            return FailureReason.OUT_OF_MEMORY;
+        }
+
+        progress.setBytesBeforeProcessing(inputLength);
+        progress.setBytesToRead(2 * inputLength);
+        if (resumed != null) {
+            progress.setAnalyzePercentage(100);
+            progress.setBytesRead(inputLength);
+        }
+
+        return FailureReason.SUCCESS;
+    }
+
+    // Returns null unless the checkpoint describes this input and an output at least as long as it needs
+    private Checkpoint loadCheckpoint() {
+        try {
+            final Checkpoint checkpoint = CheckpointFile.load(outputPath, Paths.get(inputFileName), true);
+            if (checkpoint == null || !Files.isRegularFile(outputPath) || Files.size(outputPath) < checkpoint.getOutputPosition()
+                    || checkpoint.getOutputPosition() < EcmFormat.MAGIC.length || !matchesRecords(checkpoint)) {
+                return null;
+            }
+
+            return checkpoint;
+        } catch (IOException e) {
+            // An unreadable checkpoint only costs a fresh start
+            return null;
+        }
+    }
+
+    private boolean matchesRecords(Checkpoint checkpoint) {
+        final RecordList checkpointRecords = checkpoint.getRecords();
+        final int recordIndex = checkpoint.getRecordIndex();
+        if (recordIndex < 0 || recordIndex >= checkpointRecords.size()
+                || checkpoint.getElementIndex() < 0 || checkpoint.getElementIndex() >= checkpointRecords.getCount(recordIndex)) {
+            return false;
+        }
+
+        long position = (long) checkpoint.getElementIndex() * checkpointRecords.getType(recordIndex).getRawSize();
+        long length = 0;
+        for (int i = 0; i < checkpointRecords.size(); i++) {
+            final long recordLength = (long) checkpointRecords.getCount(i) * checkpointRecords.getType(i).getRawSize();
+            if (i < recordIndex) {
+                position += recordLength;
+            }
+            length += recordLength;
+        }
+
+        return position == checkpoint.getInputPosition() && length == inputLength;
+    }
+
+    // The analysis records come from the checkpoint; the output is cut back to what the checkpoint committed
+    private void resume() throws IOException {
+        final RecordList checkpointRecords = resumed.getRecords();
+        for (int i = 0; i < checkpointRecords.size(); i++) {
+            records.add(checkpointRecords.getType(i), checkpointRecords.getCount(i));
+        }
+        analyzedBytes = inputLength;
+
+        outputChannel.truncate(resumed.getOutputPosition());
+        outputChannel.position(resumed.getOutputPosition());
+        writtenBytes = resumed.getOutputPosition();
+        resumable = true;
+    }
+
+    public void encode() {
+        if (progress.getState() != State.IN_PROGRESS) {
+            return;
+        }
+
+        try {
+            if (analyzedBytes < inputLength) {
+                analyzeStep();
+            } else {
+                encodeStep();
+            }
+        } catch (EcmException e) {
+            close();
+            progress.fail(e.getFailureReason());
+        }
+    }
+
+    private void analyzeStep() throws EcmException {
+        try {
+            analyzedBytes = analyzer.analyze(analyzedBytes, maxStepInBytes, records);
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_READING_INPUT_FILE, e);
+        } catch (OutOfMemoryError e) {
+            throw new EcmException(FailureReason.OUT_OF_MEMORY);
+        }
+
+        progress.setAnalyzePercentage(Progress.percentage(analyzedBytes, inputLength));
+        progress.setBytesRead(analyzedBytes);
+    }
+
+    private void encodeStep() throws EcmException {
+        if (encoder == null) {
+            startEncoding();
+        }
+
+        if (inputReader != null) {
+            resumeStep();
+            return;
+        }
+
+        encoder.encode(maxStepInBytes, this::write);
+
+        if (encoder.isDone()) {
+            finish();
+            return;
+        }
+
+        progress.setEncodingOrDecodingPercentage(Progress.percentage(encoder.getInputPosition(), inputLength));
+        progress.setBytesRead(inputLength + encoder.getInputPosition());
+        progress.setBytesWritten(writtenBytes);
+
+        checkpointIfDue();
+    }
+
+    private void startEncoding() {
+        hasher = new ImageHasher(pool);
+        encoder = new ParallelEncoder(inputChannel, records, pool, hasher);
+        progress.setAnalyzePercentage(100);
+
+        if (resumed != null) {
+            // Hashes and checksum are fed again from the input already encoded, and the output is checked against the checkpoint
+            inputReader = new ResumeReader(inputChannel, resumed.getInputPosition(), hasher, null);
+            outputReader = new ResumeReader(outputChannel, resumed.getOutputPosition(), null, outputCrc32);
+        }
+    }
+
+    private void resumeStep() throws EcmException {
+        if (!inputReader.isDone()) {
+            try {
+                inputReader.read(maxStepInBytes);
+            } catch (IOException e) {
+                throw new EcmException(FailureReason.ERROR_READING_INPUT_FILE, e);
+            }
+        } else {
+            try {
+                outputReader.read(maxStepInBytes);
+            } catch (IOException e) {
+                throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+            }
+        }
+
+        progress.setEncodingOrDecodingPercentage(Progress.percentage(inputReader.getPosition(), inputLength));
+        progress.setBytesRead(inputLength + inputReader.getPosition());
+
+        if (inputReader.isDone() && outputReader.isDone()) {
+            if ((int) outputCrc32.getValue() == resumed.getOutputCrc32()) {
+                encoder.restore(resumed.getRecordIndex(), resumed.getElementIndex(), resumed.getInputPosition(), inputReader.getEdc());
+                lastCheckpointPosition = resumed.getInputPosition();
+            } else {
+                restart();
+            }
+            resumed = null;
+            inputReader = null;
+            outputReader = null;
+        }
+    }
+
+    // The output was changed since the checkpoint, so it is encoded again from the start
+    private void restart() throws EcmException {
+        try {
+            outputChannel.truncate(0);
+            outputChannel.position(0);
+            CheckpointFile.delete(outputPath);
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+        }
+        resumable = false;
+
+        outputCrc32.reset();
+        writtenBytes = 0;
+        write(EcmFormat.MAGIC, 0, EcmFormat.MAGIC.length);
+
+        hasher = new ImageHasher(pool);
+        encoder = new ParallelEncoder(inputChannel, records, pool, hasher);
+    }
+
+    private void checkpointIfDue() throws EcmException {
+        if (checkpointIntervalInBytes <= 0 || encoder.getInputPosition() - lastCheckpointPosition < checkpointIntervalInBytes) {
+            return;
+        }
+
+        try {
+            output.flush();
+            outputChannel.force(false);
+            CheckpointFile.save(new Checkpoint(true, inputLength, inputModifiedTimeInMs, encoder.getRecordIndex(), encoder.getElementIndex(),
+                    encoder.getInputPosition(), writtenBytes, (int) outputCrc32.getValue(), records), outputPath);
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+        }
+
+        lastCheckpointPosition = encoder.getInputPosition();
+        resumable = true;
+    }
+
+    private void finish() throws EcmException {
+        progress.setImageHashes(hasher.finish());
+        int length = EcmFormat.writeEndOfRecords(header, 0);
+        EcmFormat.writeChecksum(header, length, encoder.getChecksum());
+        length += EcmFormat.CHECKSUM_SIZE;
+        write(header, 0, length);
+
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+        } finally {
+            output = null;
+            close();
+        }
+        deleteCheckpoint();
+
+        progress.setLiteralBytes(records.getTotal(SectorType.LITERAL));
+        progress.setMode1Sectors(records.getTotal(SectorType.MODE_1));
+        progress.setMode2Form1Sectors(records.getTotal(SectorType.MODE_2_FORM_1));
+        progress.setMode2Form2Sectors(records.getTotal(SectorType.MODE_2_FORM_2));
+        progress.setBytesAfterProcessing(writtenBytes);
+        progress.setBytesRead(2 * inputLength);
+        progress.setBytesWritten(writtenBytes);
+        progress.setAnalyzePercentage(100);
+        progress.setEncodingOrDecodingPercentage(100);
+        progress.setState(State.COMPLETED);
+    }
+
+    private void deleteCheckpoint() {
+        if (checkpointIntervalInBytes <= 0) {
+            return;
+        }
+
+        try {
+            CheckpointFile.delete(outputPath);
+        } catch (IOException e) {
+            // A leftover checkpoint still describes the complete output
+            e.printStackTrace();
+        }
+        resumable = false;
+    }
+
+    private void write(byte[] source, int offset, int length) throws EcmException {
+        try {
+            output.write(source, offset, length);
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+        }
+
+        if (checkpointIntervalInBytes > 0) {
+            outputCrc32.update(source, offset, length);
+        }
+        writtenBytes += length;
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(inputChannel);
+        closeQuietly(output);
+        closeQuietly(outputChannel);
+        inputChannel = null;
+        outputChannel = null;
+        output = null;
+        analyzer = null;
+        encoder = null;
+        hasher = null;
+    }
+}
@@ -0,0 +1,57 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class EcmFormat {
+    public static final byte[] MAGIC = {'E', 'C', 'M', 0};
+    public static final int SECTOR_SIZE = 2352;
+    public static final int CHECKSUM_SIZE = 4;
+    public static final int MAX_TYPE_COUNT_SIZE = 5;
+    public static final long MAX_RECORD_COUNT = 0x7FFFFFFFL;
+    public static final long END_OF_RECORDS = 0xFFFFFFFFL;
+
+    // Returns how many bytes were written
+    public static int writeTypeCount(byte[] destination, int offset, SectorType type, long count) {
+        return writeRawTypeCount(destination, offset, type.getCode(), (count - 1) & 0xFFFFFFFFL);
+    }
+
+    public static int writeEndOfRecords(byte[] destination, int offset) {
+        return writeRawTypeCount(destination, offset, 0, END_OF_RECORDS);
+    }
+
+    private static int writeRawTypeCount(byte[] destination, int offset, int type, long value) {
+        int position = offset;
+
+        destination[position++] = (byte) (((value >= 32) ? 0x80 : 0) | ((value & 31) << 2) | type);
+        value >>>= 5;
+        while (value != 0) {
+            destination[position++] = (byte) (((value >= 128) ? 0x80 : 0) | (value & 127));
+            value >>>= 7;
+        }
+
+        return position - offset;
+    }
+
+    public static void writeChecksum(byte[] destination, int offset, int checksum) {
+        EccEdc.writeEdc(checksum, destination, offset);
+    }
+}
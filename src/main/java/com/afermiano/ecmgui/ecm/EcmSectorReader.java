@@ -0,0 +1,196 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static com.afermiano.ecmgui.util.Closeables.closeQuietly;
+
+// Decodes any range of the image of an .ecm file, rebuilding only the sectors it covers. The record index comes from
+// the sidecar next to the .ecm when it is current; otherwise the headers are walked once and the sidecar is (re)written.
+// The checksum covers the whole image, so it is not verified here.
+public class EcmSectorReader implements AutoCloseable {
+    public static final long HEADER_SCAN_STEP_IN_BYTES = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final RecordIndex index;
+    @Getter
+    private final long imageLength;
+
+    private final byte[] payload = new byte[EcmFormat.SECTOR_SIZE];
+    private final byte[] sector = new byte[EcmFormat.SECTOR_SIZE];
+    // The last rebuilt sector, as small reads usually hit the same one again
+    private long sectorInputOffset = -1;
+    private int sectorOffset;
+
+    private EcmSectorReader(FileChannel channel, RecordIndex index) {
+        this.channel = channel;
+        this.index = index;
+        this.imageLength = index.getOutputLength();
+    }
+
+    public static EcmSectorReader open(Path ecmPath) throws EcmException {
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(ecmPath, StandardOpenOption.READ);
+        } catch (IOException | InvalidPathException e) {
+            throw new EcmException(FailureReason.ERROR_OPENING_INPUT_FILE, e);
+        }
+
+        try {
+            return new EcmSectorReader(channel, loadIndex(ecmPath, channel));
+        } catch (EcmException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    private static RecordIndex loadIndex(Path ecmPath, FileChannel channel) throws EcmException {
+        try {
+            final RecordIndex index = RecordIndexFile.load(ecmPath);
+            if (index != null) {
+                return index;
+            }
+        } catch (IOException e) {
+            // A damaged sidecar is just rebuilt
+        }
+
+        final RecordIndex index = scan(channel);
+        try {
+            RecordIndexFile.save(index, ecmPath);
+        } catch (IOException e) {
+            // E.g. a read-only directory; the index is simply rebuilt next time
+        }
+
+        return index;
+    }
+
+    private static RecordIndex scan(FileChannel channel) throws EcmException {
+        final RecordIndex index = new RecordIndex();
+
+        try {
+            final long inputLength = channel.size();
+            final MappedWindow input = new MappedWindow(channel, FileChannel.MapMode.READ_ONLY, inputLength);
+
+            final byte[] magic = new byte[EcmFormat.MAGIC.length];
+            if (inputLength < magic.length) {
+                throw new EcmException(FailureReason.INVALID_ECM_FILE);
+            }
+            input.get(0, magic, 0, magic.length);
+            if (!Arrays.equals(magic, EcmFormat.MAGIC)) {
+                throw new EcmException(FailureReason.INVALID_ECM_FILE);
+            }
+
+            final RecordScanner scanner = new RecordScanner(input, inputLength);
+            while (!scanner.isDone()) {
+                scanner.scan(HEADER_SCAN_STEP_IN_BYTES, index);
+            }
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_READING_INPUT_FILE, e);
+        }
+
+        return index;
+    }
+
+    public long getSectorCount() {
+        return (imageLength + EcmFormat.SECTOR_SIZE - 1) / EcmFormat.SECTOR_SIZE;
+    }
+
+    // Reads image sector "sectorNumber" (2352 bytes, fewer for a partial last sector) and returns how many bytes were read
+    public int readSector(long sectorNumber, byte[] destination, int offset) throws IOException {
+        if (sectorNumber < 0 || sectorNumber >= getSectorCount()) {
+            throw new IndexOutOfBoundsException("Sector " + sectorNumber + " of " + getSectorCount());
+        }
+
+        return read(sectorNumber * EcmFormat.SECTOR_SIZE, destination, offset, EcmFormat.SECTOR_SIZE);
+    }
+
+    // Reads up to "length" bytes of the image starting at "position"; returns how many were read, or -1 past the end
+    public synchronized int read(long position, byte[] destination, int offset, int length) throws IOException {
+        if (position >= imageLength) {
+            return -1;
+        }
+
+        final int total = (int) Math.min(length, imageLength - position);
+        int done = 0;
+        int record = index.findByOutputPosition(position);
+
+        while (done < total) {
+            final long current = position + done;
+            while (index.getOutputEnd(record) <= current) {
+                record++;
+            }
+
+            final SectorType type = index.getType(record);
+            final long recordOffset = current - index.getOutputOffset(record);
+
+            if (type == SectorType.LITERAL) {
+                final int count = (int) Math.min(total - done, index.getOutputEnd(record) - current);
+                readFully(index.getInputOffset(record) + recordOffset, destination, offset + done, count);
+                done += count;
+                continue;
+            }
+
+            final long element = recordOffset / type.getRawSize();
+            final int elementOffset = (int) (recordOffset % type.getRawSize());
+            rebuild(type, index.getInputOffset(record) + element * type.getEncodedSize());
+
+            final int count = Math.min(total - done, type.getRawSize() - elementOffset);
+            System.arraycopy(sector, sectorOffset + elementOffset, destination, offset + done, count);
+            done += count;
+        }
+
+        return total;
+    }
+
+    private void rebuild(SectorType type, long inputOffset) throws IOException {
+        if (inputOffset == sectorInputOffset) {
+            return;
+        }
+
+        // Invalidated first, so a failed read does not leave a stale sector behind
+        sectorInputOffset = -1;
+        readFully(inputOffset, payload, 0, type.getEncodedSize());
+        sectorOffset = SectorCodec.rebuild(type, payload, 0, sector);
+        sectorInputOffset = inputOffset;
+    }
+
+    private void readFully(long position, byte[] destination, int offset, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(destination, offset, length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - offset) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(channel);
+    }
+}
@@ -0,0 +1,253 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static com.afermiano.ecmgui.util.Closeables.closeQuietly;
+
+// Decodes in a single sequential pass, so neither side has to be seekable (pipes, sockets); no header pass, no mapping
+public class EcmStreamDecoder implements AutoCloseable {
+    public static final int IO_BUFFER_SIZE = 1024 * 1024;
+    public static final long UNKNOWN_LENGTH = -1;
+
+    private final ReadableByteChannel inputChannel;
+    private final WritableByteChannel outputChannel;
+    @Setter
+    private int maxStepInBytes;
+    private final Progress progress;
+
+    private final ByteBuffer inputBuffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+    private final ByteBuffer outputBuffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+    private final byte[] payload = new byte[EcmFormat.SECTOR_SIZE];
+    private final byte[] sector = new byte[EcmFormat.SECTOR_SIZE];
+    private final byte[] magic = new byte[EcmFormat.MAGIC.length];
+    private final ImageHasher hasher = new ImageHasher();
+
+    private long inputLength = UNKNOWN_LENGTH;
+    private long readBytes;
+    private long writtenBytes;
+    private int edc;
+
+    private SectorType recordType;
+    private long recordRemaining;
+
+    public EcmStreamDecoder(ReadableByteChannel inputChannel, WritableByteChannel outputChannel, int maxStepInBytes, Progress progress) {
+        this.inputChannel = inputChannel;
+        this.outputChannel = outputChannel;
+        this.maxStepInBytes = maxStepInBytes;
+        this.progress = progress;
+    }
+
+    public FailureReason prepare() {
+        progress.clear();
+        inputBuffer.limit(0);
+
+        if (inputChannel instanceof FileChannel) {
+            try {
+                // Redirected files have a size; pipes report 0 or fail
+                final long size = ((FileChannel) inputChannel).size();
+                inputLength = size > 0 ? size : UNKNOWN_LENGTH;
+            } catch (IOException e) {
+                inputLength = UNKNOWN_LENGTH;
+            }
+        }
+
+        try {
+            require(magic.length);
+        } catch (EcmException e) {
+            close();
+            return e.getFailureReason();
+        }
+        inputBuffer.get(magic);
+        readBytes = magic.length;
+        if (!Arrays.equals(magic, EcmFormat.MAGIC)) {
+            close();
+            return FailureReason.INVALID_ECM_FILE;
+        }
+
+        progress.setAnalyzePercentage(100);
+        progress.setBytesToRead(Math.max(0, inputLength));
+        progress.setBytesRead(readBytes);
+
+        return FailureReason.SUCCESS;
+    }
+
+    public void decode() {
+        if (progress.getState() != State.IN_PROGRESS) {
+            return;
+        }
+
+        try {
+            decodeStep();
+        } catch (EcmException e) {
+            close();
+            progress.fail(e.getFailureReason());
+        }
+    }
+
+    private void decodeStep() throws EcmException {
+        final long stepEnd = writtenBytes + outputBuffer.position() + maxStepInBytes;
+
+        while (writtenBytes + outputBuffer.position() < stepEnd) {
+            if (recordRemaining == 0 && !readRecordHeader()) {
+                finish();
+                return;
+            }
+
+            if (recordType == SectorType.LITERAL) {
+                final int length = (int) Math.min(recordRemaining, sector.length);
+                read(sector, length);
+                edc = EccEdc.computeEdc(edc, sector, 0, length);
+                write(sector, 0, length);
+                recordRemaining -= length;
+            } else {
+                read(payload, recordType.getEncodedSize());
+                final int offset = SectorCodec.rebuild(recordType, payload, 0, sector);
+                edc = EccEdc.computeEdc(edc, sector, offset, recordType.getRawSize());
+                write(sector, offset, recordType.getRawSize());
+                recordRemaining--;
+            }
+        }
+
+        flush();
+        progress.setEncodingOrDecodingPercentage(inputLength == UNKNOWN_LENGTH ? 0 : Progress.percentage(readBytes, inputLength));
+        progress.setBytesRead(readBytes);
+        progress.setBytesWritten(writtenBytes);
+    }
+
+    private void finish() throws EcmException {
+        read(payload, EcmFormat.CHECKSUM_SIZE);
+        if (!EccEdc.matchesEdc(edc, payload, 0)) {
+            throw new EcmException(FailureReason.ERROR_IN_CHECKSUM);
+        }
+
+        flush();
+        close();
+
+        progress.setBytesBeforeProcessing(readBytes);
+        progress.setBytesAfterProcessing(writtenBytes);
+        progress.setImageHashes(hasher.finish());
+        progress.setBytesToRead(readBytes);
+        progress.setBytesRead(readBytes);
+        progress.setBytesWritten(writtenBytes);
+        progress.setEncodingOrDecodingPercentage(100);
+        progress.setState(State.COMPLETED);
+    }
+
+    // Same encoding as EcmDecoder.readRecordHeader(); returns false at the end of records
+    private boolean readRecordHeader() throws EcmException {
+        int value = readByte();
+        final int type = value & 3;
+        long count = (value >> 2) & 0x1F;
+        int bits = 5;
+
+        while ((value & 0x80) != 0) {
+            if (bits > 31) {
+                throw new EcmException(FailureReason.INVALID_ECM_FILE);
+            }
+            value = readByte();
+            count |= ((long) (value & 0x7F)) << bits;
+            bits += 7;
+        }
+
+        if (count == EcmFormat.END_OF_RECORDS) {
+            return false;
+        }
+
+        count++;
+        if (count > EcmFormat.MAX_RECORD_COUNT) {
+            throw new EcmException(FailureReason.INVALID_ECM_FILE);
+        }
+
+        recordType = SectorType.fromCode(type);
+        recordRemaining = count;
+
+        return true;
+    }
+
+    private int readByte() throws EcmException {
+        require(1);
+        readBytes++;
+
+        return inputBuffer.get() & 0xFF;
+    }
+
+    private void read(byte[] destination, int length) throws EcmException {
+        require(length);
+        inputBuffer.get(destination, 0, length);
+        readBytes += length;
+    }
+
+    // Makes "length" bytes available in the input buffer; running out of input before the end of records is an invalid file
+    private void require(int length) throws EcmException {
+        if (inputBuffer.remaining() >= length) {
+            return;
+        }
+
+        inputBuffer.compact();
+        try {
+            while (inputBuffer.position() < length) {
+                if (inputChannel.read(inputBuffer) < 0) {
+                    throw new EcmException(FailureReason.INVALID_ECM_FILE);
+                }
+            }
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_READING_INPUT_FILE, e);
+        } finally {
+            inputBuffer.flip();
+        }
+    }
+
+    private void write(byte[] source, int offset, int length) throws EcmException {
+        if (outputBuffer.remaining() < length) {
+            flush();
+        }
+
+        outputBuffer.put(source, offset, length);
+    }
+
+    private void flush() throws EcmException {
+        outputBuffer.flip();
+        hasher.update(outputBuffer.duplicate());
+        try {
+            while (outputBuffer.hasRemaining()) {
+                writtenBytes += outputChannel.write(outputBuffer);
+            }
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+        } finally {
+            outputBuffer.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(inputChannel);
+        closeQuietly(outputChannel);
+    }
+}
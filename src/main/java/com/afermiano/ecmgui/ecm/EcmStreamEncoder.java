@@ -0,0 +1,254 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static com.afermiano.ecmgui.util.Closeables.closeQuietly;
+
+// Classifies and writes records in a single sequential pass, so the input is read once and need not be seekable.
+// A record is written once its run ends or its payload fills the pending buffer, so very long runs are split in
+// several records of the same type (still a valid .ecm, just a few bytes longer than the two pass encoding).
+public class EcmStreamEncoder implements AutoCloseable {
+    public static final int IO_BUFFER_SIZE = 1024 * 1024;
+    // The classifier needs a whole sector past the current position
+    public static final int LOOK_AHEAD_SIZE = IO_BUFFER_SIZE + EcmFormat.SECTOR_SIZE;
+    public static final int MAX_PENDING_PAYLOAD = IO_BUFFER_SIZE;
+    public static final long UNKNOWN_LENGTH = -1;
+
+    private final ReadableByteChannel inputChannel;
+    private final WritableByteChannel outputChannel;
+    @Setter
+    private int maxStepInBytes;
+    private final Progress progress;
+
+    private final byte[] window = new byte[LOOK_AHEAD_SIZE];
+    private final ByteBuffer windowBuffer = ByteBuffer.wrap(window);
+    private int windowPosition;
+    private int windowLimit;
+    private boolean endOfInput;
+
+    private final byte[] pending = new byte[MAX_PENDING_PAYLOAD];
+    private SectorType pendingType;
+    private int pendingCount;
+    private int pendingLength;
+
+    private final ByteBuffer outputBuffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+    private final byte[] header = new byte[EcmFormat.MAX_TYPE_COUNT_SIZE + EcmFormat.CHECKSUM_SIZE];
+    private final long[] totals = new long[SectorType.values().length];
+    private final ImageHasher hasher = new ImageHasher();
+
+    private long inputLength = UNKNOWN_LENGTH;
+    private long readBytes;
+    private long writtenBytes;
+    private int edc;
+
+    public EcmStreamEncoder(ReadableByteChannel inputChannel, WritableByteChannel outputChannel, int maxStepInBytes, Progress progress) {
+        this.inputChannel = inputChannel;
+        this.outputChannel = outputChannel;
+        this.maxStepInBytes = maxStepInBytes;
+        this.progress = progress;
+    }
+
+    public FailureReason prepare() {
+        progress.clear();
+
+        if (inputChannel instanceof FileChannel) {
+            try {
+                final long size = ((FileChannel) inputChannel).size();
+                inputLength = size > 0 ? size : UNKNOWN_LENGTH;
+            } catch (IOException e) {
+                inputLength = UNKNOWN_LENGTH;
+            }
+        }
+
+        try {
+            write(EcmFormat.MAGIC, 0, EcmFormat.MAGIC.length);
+        } catch (EcmException e) {
+            close();
+            return FailureReason.ERROR_OPENING_OUTPUT_FILE;
+        }
+
+        // There is no separate analysis pass
+        progress.setAnalyzePercentage(100);
+        progress.setBytesToRead(Math.max(0, inputLength));
+
+        return FailureReason.SUCCESS;
+    }
+
+    public void encode() {
+        if (progress.getState() != State.IN_PROGRESS) {
+            return;
+        }
+
+        try {
+            encodeStep();
+        } catch (EcmException e) {
+            close();
+            progress.fail(e.getFailureReason());
+        }
+    }
+
+    private void encodeStep() throws EcmException {
+        final long stepEnd = readBytes + maxStepInBytes;
+
+        while (readBytes < stepEnd) {
+            fillWindow();
+            if (windowPosition == windowLimit) {
+                finish();
+                return;
+            }
+
+            final SectorType type = SectorClassifier.classify(window, windowPosition, windowLimit - windowPosition);
+            edc = EccEdc.computeEdc(edc, window, windowPosition, type.getRawSize());
+            append(type);
+
+            windowPosition += type.getRawSize();
+            readBytes += type.getRawSize();
+        }
+
+        flush();
+        progress.setEncodingOrDecodingPercentage(inputLength == UNKNOWN_LENGTH ? 0 : Progress.percentage(readBytes, inputLength));
+        progress.setBytesRead(readBytes);
+        progress.setBytesWritten(writtenBytes);
+    }
+
+    private void append(SectorType type) throws EcmException {
+        if (pendingCount > 0 && (type != pendingType || pendingLength + type.getEncodedSize() > pending.length)) {
+            writeRecord();
+        }
+
+        if (type == SectorType.LITERAL) {
+            pending[pendingLength] = window[windowPosition];
+        } else {
+            SectorCodec.extract(type, window, windowPosition, pending, pendingLength);
+        }
+        pendingType = type;
+        pendingLength += type.getEncodedSize();
+        pendingCount++;
+        totals[type.getCode()]++;
+    }
+
+    private void writeRecord() throws EcmException {
+        write(header, 0, EcmFormat.writeTypeCount(header, 0, pendingType, pendingCount));
+        write(pending, 0, pendingLength);
+
+        pendingCount = 0;
+        pendingLength = 0;
+    }
+
+    private void finish() throws EcmException {
+        if (pendingCount > 0) {
+            writeRecord();
+        }
+
+        int length = EcmFormat.writeEndOfRecords(header, 0);
+        EcmFormat.writeChecksum(header, length, edc);
+        length += EcmFormat.CHECKSUM_SIZE;
+        write(header, 0, length);
+
+        flush();
+        close();
+
+        progress.setLiteralBytes(totals[SectorType.LITERAL.getCode()]);
+        progress.setMode1Sectors(totals[SectorType.MODE_1.getCode()]);
+        progress.setMode2Form1Sectors(totals[SectorType.MODE_2_FORM_1.getCode()]);
+        progress.setMode2Form2Sectors(totals[SectorType.MODE_2_FORM_2.getCode()]);
+        progress.setBytesBeforeProcessing(readBytes);
+        progress.setBytesAfterProcessing(writtenBytes);
+        progress.setImageHashes(hasher.finish());
+        progress.setBytesToRead(readBytes);
+        progress.setBytesRead(readBytes);
+        progress.setBytesWritten(writtenBytes);
+        progress.setEncodingOrDecodingPercentage(100);
+        progress.setState(State.COMPLETED);
+    }
+
+    // Keeps at least a whole sector ahead of the current position, unless the input ends before it
+    private void fillWindow() throws EcmException {
+        if (endOfInput || windowLimit - windowPosition >= EcmFormat.SECTOR_SIZE) {
+            return;
+        }
+
+        System.arraycopy(window, windowPosition, window, 0, windowLimit - windowPosition);
+        windowLimit -= windowPosition;
+        windowPosition = 0;
+
+        windowBuffer.clear().position(windowLimit);
+        try {
+            while (windowBuffer.hasRemaining()) {
+                if (inputChannel.read(windowBuffer) < 0) {
+                    endOfInput = true;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_READING_INPUT_FILE, e);
+        } finally {
+            // Everything read is eventually consumed, in order
+            hasher.update(window, windowLimit, windowBuffer.position() - windowLimit);
+            windowLimit = windowBuffer.position();
+        }
+    }
+
+    private void write(byte[] source, int offset, int length) throws EcmException {
+        if (outputBuffer.remaining() < length) {
+            flush();
+        }
+
+        if (length > outputBuffer.capacity()) {
+            writeFully(ByteBuffer.wrap(source, offset, length));
+            return;
+        }
+
+        outputBuffer.put(source, offset, length);
+    }
+
+    private void flush() throws EcmException {
+        outputBuffer.flip();
+        try {
+            writeFully(outputBuffer);
+        } finally {
+            outputBuffer.clear();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws EcmException {
+        try {
+            while (buffer.hasRemaining()) {
+                writtenBytes += outputChannel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(inputChannel);
+        closeQuietly(outputChannel);
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.ImageHashes;
+import lombok.SneakyThrows;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+
+// CRC32, MD5 and SHA-1 of an image, fed in order as it is read or rebuilt. Big chunks feed the three at once.
+public class ImageHasher {
+    public static final int MIN_CONCURRENT_LENGTH = 1024 * 1024;
+
+    private final ForkJoinPool pool;
+    private final CRC32 crc32 = new CRC32();
+    private final MessageDigest md5 = newDigest("MD5");
+    private final MessageDigest sha1 = newDigest("SHA-1");
+
+    public ImageHasher(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ImageHasher() {
+        this(null);
+    }
+
+    @SneakyThrows
+    private static MessageDigest newDigest(String algorithm) {
+        // Every Java platform has to provide MD5 and SHA-1
+        return MessageDigest.getInstance(algorithm);
+    }
+
+    public void update(byte[] source, int offset, int length) {
+        update(ByteBuffer.wrap(source, offset, length));
+    }
+
+    // Consumes the remaining bytes of "source"
+    public void update(ByteBuffer source) {
+        if (pool == null || source.remaining() < MIN_CONCURRENT_LENGTH) {
+            crc32.update(source.duplicate());
+            md5.update(source.duplicate());
+            sha1.update(source);
+            return;
+        }
+
+        final List<ForkJoinTask<?>> tasks = Arrays.asList(
+                ForkJoinTask.adapt(() -> crc32.update(source.duplicate())),
+                ForkJoinTask.adapt(() -> md5.update(source.duplicate())),
+                ForkJoinTask.adapt(() -> sha1.update(source.duplicate())));
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        source.position(source.limit());
+    }
+
+    // Of the bytes fed so far
+    public int getCrc32() {
+        return (int) crc32.getValue();
+    }
+
+    public ImageHashes finish() {
+        return new ImageHashes(String.format("%08x", crc32.getValue()), toHex(md5.digest()), toHex(sha1.digest()));
+    }
+
+    private static String toHex(byte[] digest) {
+        final StringBuilder builder = new StringBuilder(2 * digest.length);
+        for (byte value : digest) {
+            builder.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+
+        return builder.toString();
+    }
+}
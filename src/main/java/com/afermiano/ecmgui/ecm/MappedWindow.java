@@ -0,0 +1,107 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import org.agrona.IoUtil;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Maps a file through a sliding window so files bigger than what a single MappedByteBuffer can address are supported.
+// Writable windows are forced and unmapped as soon as they are replaced or closed: FileChannel.force() does not write
+// back mapped views on every platform (e.g. Windows), and a file still mapped there cannot be truncated or deleted.
+// Read-only windows are left to the garbage collector, as readers may still hold buffers of them.
+public class MappedWindow {
+    public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final long fileLength;
+    private final long windowSize;
+
+    private MappedByteBuffer buffer;
+    private long windowStart;
+    private long windowEnd;
+
+    public MappedWindow(FileChannel channel, FileChannel.MapMode mode, long fileLength, long windowSize) {
+        this.channel = channel;
+        this.mode = mode;
+        this.fileLength = fileLength;
+        this.windowSize = windowSize;
+    }
+
+    public MappedWindow(FileChannel channel, FileChannel.MapMode mode, long fileLength) {
+        this(channel, mode, fileLength, DEFAULT_WINDOW_SIZE);
+    }
+
+    // Returns the mapped buffer positioned at "position", with at least "length" bytes remaining
+    public MappedByteBuffer map(long position, int length) throws IOException {
+        if (buffer == null || position < windowStart || position + length > windowEnd) {
+            final long size = Math.min(Math.max(windowSize, length), fileLength - position);
+            if (size < length) {
+                throw new IOException("Mapping past the end of file");
+            }
+            release();
+            buffer = channel.map(mode, position, size);
+            windowStart = position;
+            windowEnd = position + size;
+        }
+
+        buffer.position((int) (position - windowStart));
+
+        return buffer;
+    }
+
+    // Writes the current window back to the file; earlier windows were written back when they were replaced
+    public void force() {
+        if (buffer != null && mode == FileChannel.MapMode.READ_WRITE) {
+            buffer.force();
+        }
+    }
+
+    // No buffer returned by map() may be used afterwards
+    public void close() {
+        release();
+    }
+
+    private void release() {
+        if (buffer == null) {
+            return;
+        }
+
+        if (mode == FileChannel.MapMode.READ_WRITE) {
+            buffer.force();
+            IoUtil.unmap(buffer);
+        }
+        buffer = null;
+    }
+
+    public int get(long position) throws IOException {
+        return map(position, 1).get() & 0xFF;
+    }
+
+    public void get(long position, byte[] destination, int offset, int length) throws IOException {
+        map(position, length).get(destination, offset, length);
+    }
+
+    public void put(long position, byte[] source, int offset, int length) throws IOException {
+        map(position, length).put(source, offset, length);
+    }
+}
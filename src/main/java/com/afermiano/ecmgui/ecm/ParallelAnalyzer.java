@@ -0,0 +1,197 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Splits the analysis of a step in sector aligned chunks that are classified concurrently. Each chunk is analyzed
+// as if a sector started at its first byte; when the previous chunk ends somewhere else (e.g. after literal bytes),
+// the chunk is analyzed again sequentially until both parses meet, so the result is the same as a sequential analysis.
+public class ParallelAnalyzer {
+    public static final int MIN_CHUNK_SECTORS = 64;
+
+    private final FileChannel channel;
+    private final long inputLength;
+    private final ForkJoinPool pool;
+    private final Chunk[] chunks;
+
+    public ParallelAnalyzer(FileChannel channel, long inputLength, ForkJoinPool pool) {
+        this.channel = channel;
+        this.inputLength = inputLength;
+        this.pool = pool;
+
+        chunks = new Chunk[pool.getParallelism()];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Chunk();
+        }
+    }
+
+    // Analyzes about "stepInBytes" bytes starting at "from", which must be a position reached by a previous analysis.
+    // Returns where the analysis stopped.
+    public long analyze(long from, int stepInBytes, RecordList records) throws IOException {
+        final long chunkSize = Math.max(stepInBytes / chunks.length / EcmFormat.SECTOR_SIZE, MIN_CHUNK_SECTORS) * EcmFormat.SECTOR_SIZE;
+
+        int count = 0;
+        long start = from;
+        while (count < chunks.length && start < inputLength) {
+            final long end = Math.min((start + chunkSize) / EcmFormat.SECTOR_SIZE * EcmFormat.SECTOR_SIZE, inputLength);
+            chunks[count++].reset(start, end);
+            start = end;
+        }
+
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(chunks[i]);
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        for (int i = 0; i < count; i++) {
+            if (chunks[i].failure != null) {
+                throw chunks[i].failure;
+            }
+        }
+
+        long position = from;
+        for (int i = 0; i < count; i++) {
+            final Chunk chunk = chunks[i];
+
+            if (position == chunk.start) {
+                appendFrom(chunk.records, 0, 0, records);
+                position = chunk.reached;
+            } else if (position < chunk.end) {
+                position = resynchronize(chunk, position, records);
+            }
+        }
+
+        return position;
+    }
+
+    private long resynchronize(Chunk chunk, long position, RecordList records) {
+        final RecordList speculative = chunk.records;
+        int recordIndex = 0;
+        long recordStart = chunk.start;
+        int pendingLiteralBytes = 0;
+
+        while (position < chunk.end) {
+            while (recordIndex < speculative.size() && recordStart + span(speculative, recordIndex) <= position) {
+                recordStart += span(speculative, recordIndex);
+                recordIndex++;
+            }
+
+            if (recordIndex < speculative.size()) {
+                final int rawSize = speculative.getType(recordIndex).getRawSize();
+                final long offset = position - recordStart;
+
+                if (offset % rawSize == 0) {
+                    if (pendingLiteralBytes > 0) {
+                        records.add(SectorType.LITERAL, pendingLiteralBytes);
+                    }
+                    appendFrom(speculative, recordIndex, (int) (offset / rawSize), records);
+
+                    return chunk.reached;
+                }
+            }
+
+            final SectorType type = SectorClassifier.classify(chunk.window, (int) (position - chunk.start), inputLength - position);
+            if (type == SectorType.LITERAL) {
+                pendingLiteralBytes++;
+            } else {
+                if (pendingLiteralBytes > 0) {
+                    records.add(SectorType.LITERAL, pendingLiteralBytes);
+                    pendingLiteralBytes = 0;
+                }
+                records.add(type, 1);
+            }
+            position += type.getRawSize();
+        }
+
+        if (pendingLiteralBytes > 0) {
+            records.add(SectorType.LITERAL, pendingLiteralBytes);
+        }
+
+        return position;
+    }
+
+    private static long span(RecordList records, int index) {
+        return (long) records.getCount(index) * records.getType(index).getRawSize();
+    }
+
+    private static void appendFrom(RecordList source, int index, int skippedElements, RecordList destination) {
+        if (index >= source.size()) {
+            return;
+        }
+
+        destination.add(source.getType(index), source.getCount(index) - skippedElements);
+        for (int i = index + 1; i < source.size(); i++) {
+            destination.add(source.getType(i), source.getCount(i));
+        }
+    }
+
+    private class Chunk extends RecursiveAction {
+        private final RecordList records = new RecordList();
+        private byte[] window = new byte[0];
+        private long start;
+        private long end;
+        private long reached;
+        private IOException failure;
+
+        private void reset(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.failure = null;
+            reinitialize();
+        }
+
+        @Override
+        protected void compute() {
+            final int length = (int) Math.min(end - start + EcmFormat.SECTOR_SIZE, inputLength - start);
+            if (window.length < length) {
+                window = new byte[length];
+            }
+
+            final ByteBuffer buffer = ByteBuffer.wrap(window, 0, length);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of file");
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+
+            records.clear();
+            reached = SectorAnalyzer.analyze(window, start, start, end, inputLength, records);
+        }
+    }
+}
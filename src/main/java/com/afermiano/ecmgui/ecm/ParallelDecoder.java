@@ -0,0 +1,254 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Decodes ranges of a RecordIndex concurrently: each step maps the input and output regions it covers once, and every
+// range decodes into its own slice of the output mapping. The checksum of the image is combined from each range.
+// Without an output the image is only rebuilt to compute that checksum (and its hashes, through a scratch buffer).
+public class ParallelDecoder {
+    public static final int MIN_RANGE_SECTORS = 64;
+
+    private final MappedWindow input;
+    private final MappedWindow output;
+    private final RecordIndex index;
+    private final ForkJoinPool pool;
+    private final ImageHasher hasher;
+    private final Range[] ranges;
+
+    private ByteBuffer inputMapping;
+    private ByteBuffer outputMapping;
+    private ByteBuffer scratch;
+    private long stepInputStart;
+    private long stepOutputStart;
+
+    @Getter
+    private int recordIndex;
+    @Getter
+    private int elementIndex;
+    @Getter
+    private long outputPosition;
+    @Getter
+    private int checksum;
+
+    public ParallelDecoder(MappedWindow input, MappedWindow output, RecordIndex index, ForkJoinPool pool, ImageHasher hasher) {
+        this.input = input;
+        this.output = output;
+        this.index = index;
+        this.pool = pool;
+        this.hasher = hasher;
+
+        ranges = new Range[pool.getParallelism()];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = new Range();
+        }
+    }
+
+    public long getInputPosition() {
+        return inputOffset(recordIndex, elementIndex);
+    }
+
+    // Continues a resumed job; "checksum" is the one of the image before "outputPosition"
+    public void restore(int recordIndex, int elementIndex, long outputPosition, int checksum) {
+        this.recordIndex = recordIndex;
+        this.elementIndex = elementIndex;
+        this.outputPosition = outputPosition;
+        this.checksum = checksum;
+    }
+
+    public boolean isDone() {
+        return recordIndex >= index.size();
+    }
+
+    // Decodes about "stepInBytes" bytes of output; failing to map the output is reported apart from the input
+    public void decode(int stepInBytes) throws IOException, EcmException {
+        final long rangeSize = Math.max(stepInBytes / ranges.length / EcmFormat.SECTOR_SIZE, MIN_RANGE_SECTORS) * EcmFormat.SECTOR_SIZE;
+
+        stepInputStart = inputOffset(recordIndex, elementIndex);
+        stepOutputStart = outputPosition;
+
+        int count = 0;
+        while (count < ranges.length && !isDone()) {
+            planRange(ranges[count++], rangeSize);
+        }
+
+        final long stepInputEnd = isDone() ? index.getChecksumOffset() : inputOffset(recordIndex, elementIndex);
+        final int stepOutputLength = (int) (outputPosition - stepOutputStart);
+        inputMapping = input.map(stepInputStart, (int) (stepInputEnd - stepInputStart)).duplicate();
+        try {
+            outputMapping = mapOutput(stepOutputLength);
+        } catch (IOException e) {
+            throw new EcmException(FailureReason.ERROR_WRITING_OUTPUT_FILE, e);
+        }
+
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(ranges[i]);
+        }
+
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            // invokeAll returns on the first failure; the other ranges must be done before the output can be unmapped
+            for (ForkJoinTask<?> task : tasks) {
+                task.quietlyJoin();
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            checksum = EccEdc.combineEdc(checksum, ranges[i].edc, ranges[i].outputLength);
+        }
+
+        if (hasher != null) {
+            final ByteBuffer decoded = outputMapping.duplicate();
+            decoded.limit(decoded.position() + stepOutputLength);
+            hasher.update(decoded);
+        }
+    }
+
+    private ByteBuffer mapOutput(int stepOutputLength) throws IOException {
+        if (output != null) {
+            return output.map(stepOutputStart, stepOutputLength).duplicate();
+        }
+        if (hasher == null) {
+            return null;
+        }
+
+        if (scratch == null || scratch.capacity() < stepOutputLength) {
+            scratch = ByteBuffer.allocate(stepOutputLength);
+        }
+        scratch.clear();
+
+        return scratch;
+    }
+
+    private long inputOffset(int record, int element) {
+        if (record >= index.size()) {
+            return index.getChecksumOffset();
+        }
+
+        return index.getInputOffset(record) + (long) element * index.getType(record).getEncodedSize();
+    }
+
+    private void planRange(Range range, long rangeSize) {
+        range.reset(recordIndex, elementIndex, outputPosition);
+
+        long length = 0;
+        while (length < rangeSize && !isDone()) {
+            final SectorType type = index.getType(recordIndex);
+            final int count = index.getCount(recordIndex);
+            final long wanted = (rangeSize - length + type.getRawSize() - 1) / type.getRawSize();
+            final int taken = (int) Math.min(count - elementIndex, wanted);
+
+            length += (long) taken * type.getRawSize();
+            elementIndex += taken;
+            if (elementIndex == count) {
+                recordIndex++;
+                elementIndex = 0;
+            }
+        }
+
+        range.outputLength = (int) length;
+        outputPosition += length;
+    }
+
+    private class Range extends RecursiveAction {
+        private final byte[] payload = new byte[EcmFormat.SECTOR_SIZE];
+        private final byte[] sector = new byte[EcmFormat.SECTOR_SIZE];
+        private int firstRecordIndex;
+        private int firstElementIndex;
+        private long outputStart;
+        private int outputLength;
+        private int edc;
+
+        private void reset(int firstRecordIndex, int firstElementIndex, long outputStart) {
+            this.firstRecordIndex = firstRecordIndex;
+            this.firstElementIndex = firstElementIndex;
+            this.outputStart = outputStart;
+            reinitialize();
+        }
+
+        @Override
+        protected void compute() {
+            final ByteBuffer in = inputMapping.duplicate();
+            final ByteBuffer out = outputMapping == null ? null : outputMapping.duplicate();
+            final int inputBase = in.position();
+
+            if (out != null) {
+                out.position(out.position() + (int) (outputStart - stepOutputStart));
+            }
+            edc = 0;
+
+            int record = firstRecordIndex;
+            int element = firstElementIndex;
+            int produced = 0;
+
+            while (produced < outputLength) {
+                final SectorType type = index.getType(record);
+                final int count = index.getCount(record);
+                in.position(inputBase + (int) (inputOffset(record, element) - stepInputStart));
+
+                if (type == SectorType.LITERAL) {
+                    int remaining = Math.min(count - element, outputLength - produced);
+                    element += remaining;
+                    produced += remaining;
+
+                    while (remaining > 0) {
+                        final int length = Math.min(remaining, sector.length);
+                        in.get(sector, 0, length);
+                        edc = EccEdc.computeEdc(edc, sector, 0, length);
+                        if (out != null) {
+                            out.put(sector, 0, length);
+                        }
+                        remaining -= length;
+                    }
+                } else {
+                    in.get(payload, 0, type.getEncodedSize());
+                    final int offset = SectorCodec.rebuild(type, payload, 0, sector);
+                    edc = EccEdc.computeEdc(edc, sector, offset, type.getRawSize());
+                    if (out != null) {
+                        out.put(sector, offset, type.getRawSize());
+                    }
+                    element++;
+                    produced += type.getRawSize();
+                }
+
+                if (element == count) {
+                    record++;
+                    element = 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import lombok.Getter;
+import org.agrona.collections.IntArrayList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Encoding pass over already analyzed records. Each step is cut in segments at sector boundaries, segments are
+// encoded concurrently into their own payload buffers and then stitched in order: record headers come from the
+// analysis records, so a record crossing segments is still written as a single record, and the checksum of the
+// whole input is combined from the checksum of each segment.
+public class ParallelEncoder {
+    public static final int MIN_SEGMENT_SECTORS = 64;
+
+    private final FileChannel channel;
+    private final RecordList records;
+    private final ForkJoinPool pool;
+    private final ImageHasher hasher;
+    private final Segment[] segments;
+    private final byte[] header = new byte[EcmFormat.MAX_TYPE_COUNT_SIZE];
+
+    @Getter
+    private int recordIndex;
+    @Getter
+    private int elementIndex;
+    @Getter
+    private long inputPosition;
+    @Getter
+    private int checksum;
+
+    public ParallelEncoder(FileChannel channel, RecordList records, ForkJoinPool pool, ImageHasher hasher) {
+        this.channel = channel;
+        this.records = records;
+        this.pool = pool;
+        this.hasher = hasher;
+
+        segments = new Segment[pool.getParallelism()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // Continues a resumed job; "checksum" is the one of the input before "inputPosition"
+    public void restore(int recordIndex, int elementIndex, long inputPosition, int checksum) {
+        this.recordIndex = recordIndex;
+        this.elementIndex = elementIndex;
+        this.inputPosition = inputPosition;
+        this.checksum = checksum;
+    }
+
+    public boolean isDone() {
+        return recordIndex >= records.size();
+    }
+
+    // Encodes about "stepInBytes" bytes of input, writing complete records to "sink"
+    public void encode(int stepInBytes, ByteSink sink) throws EcmException {
+        final long segmentSize = Math.max(stepInBytes / segments.length / EcmFormat.SECTOR_SIZE, MIN_SEGMENT_SECTORS) * EcmFormat.SECTOR_SIZE;
+
+        int count = 0;
+        while (count < segments.length && !isDone()) {
+            planSegment(segments[count++], segmentSize);
+        }
+
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(segments[i]);
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        for (int i = 0; i < count; i++) {
+            if (segments[i].failure != null) {
+                throw new EcmException(FailureReason.ERROR_READING_INPUT_FILE, segments[i].failure);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            stitch(segments[i], sink);
+        }
+    }
+
+    private void planSegment(Segment segment, long segmentSize) {
+        segment.reset(recordIndex, elementIndex, inputPosition);
+
+        long length = 0;
+        while (length < segmentSize && !isDone()) {
+            final SectorType type = records.getType(recordIndex);
+            final int count = records.getCount(recordIndex);
+            final long wanted = (segmentSize - length + type.getRawSize() - 1) / type.getRawSize();
+            final int taken = (int) Math.min(count - elementIndex, wanted);
+
+            length += (long) taken * type.getRawSize();
+            elementIndex += taken;
+            if (elementIndex == count) {
+                recordIndex++;
+                elementIndex = 0;
+            }
+        }
+
+        segment.inputLength = (int) length;
+        inputPosition += length;
+    }
+
+    private void stitch(Segment segment, ByteSink sink) throws EcmException {
+        checksum = EccEdc.combineEdc(checksum, segment.edc, segment.inputLength);
+        // Segments are stitched in input order, so the image is hashed as it was read
+        hasher.update(segment.input, 0, segment.inputLength);
+
+        int payloadOffset = 0;
+        for (int i = 0; i < segment.pieceRecords.size(); i++) {
+            final int index = segment.pieceRecords.getInt(i);
+            final SectorType type = records.getType(index);
+
+            if (segment.pieceStartsRecord(i)) {
+                sink.write(header, 0, EcmFormat.writeTypeCount(header, 0, type, records.getCount(index)));
+            }
+
+            final int payloadLength = segment.pieceElements.getInt(i) * type.getEncodedSize();
+            sink.write(segment.payload, payloadOffset, payloadLength);
+            payloadOffset += payloadLength;
+        }
+    }
+
+    private class Segment extends RecursiveAction {
+        private final IntArrayList pieceRecords = new IntArrayList();
+        private final IntArrayList pieceElements = new IntArrayList();
+        private final IntArrayList pieceFirstElements = new IntArrayList();
+        private byte[] input = new byte[0];
+        private byte[] payload = new byte[0];
+        private int firstRecordIndex;
+        private int firstElementIndex;
+        private long inputStart;
+        private int inputLength;
+        private int edc;
+        private IOException failure;
+
+        private void reset(int firstRecordIndex, int firstElementIndex, long inputStart) {
+            this.firstRecordIndex = firstRecordIndex;
+            this.firstElementIndex = firstElementIndex;
+            this.inputStart = inputStart;
+            this.failure = null;
+            reinitialize();
+        }
+
+        private boolean pieceStartsRecord(int piece) {
+            return pieceFirstElements.getInt(piece) == 0;
+        }
+
+        @Override
+        protected void compute() {
+            if (input.length < inputLength) {
+                input = new byte[inputLength];
+                payload = new byte[inputLength];
+            }
+
+            final ByteBuffer buffer = ByteBuffer.wrap(input, 0, inputLength);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, inputStart + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of file");
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+
+            edc = EccEdc.computeEdc(0, input, 0, inputLength);
+
+            pieceRecords.clear();
+            pieceElements.clear();
+            pieceFirstElements.clear();
+
+            int index = firstRecordIndex;
+            int element = firstElementIndex;
+            int position = 0;
+            int payloadPosition = 0;
+
+            while (position < inputLength) {
+                final SectorType type = records.getType(index);
+                final int count = records.getCount(index);
+                final int taken = Math.min(count - element, (inputLength - position) / type.getRawSize());
+
+                pieceRecords.addInt(index);
+                pieceElements.addInt(taken);
+                pieceFirstElements.addInt(element);
+
+                if (type == SectorType.LITERAL) {
+                    System.arraycopy(input, position, payload, payloadPosition, taken);
+                    position += taken;
+                    payloadPosition += taken;
+                } else {
+                    for (int i = 0; i < taken; i++) {
+                        SectorCodec.extract(type, input, position, payload, payloadPosition);
+                        position += type.getRawSize();
+                        payloadPosition += type.getEncodedSize();
+                    }
+                }
+
+                element += taken;
+                if (element == count) {
+                    index++;
+                    element = 0;
+                }
+            }
+        }
+    }
+}
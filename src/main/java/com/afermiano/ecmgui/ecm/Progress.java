@@ -0,0 +1,72 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.ImageHashes;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class Progress {
+    private State state;
+    private FailureReason failureReason;
+    private int analyzePercentage;
+    private int encodingOrDecodingPercentage;
+    private long literalBytes;
+    private long mode1Sectors;
+    private long mode2Form1Sectors;
+    private long mode2Form2Sectors;
+    private long bytesBeforeProcessing;
+    private long bytesAfterProcessing;
+    // Input is counted once per pass over it, so encoding reads it twice (analysis, then encoding)
+    private long bytesToRead;
+    private long bytesRead;
+    private long bytesWritten;
+    // Of the image: the input when encoding, the output when decoding; set on completion
+    private ImageHashes imageHashes;
+
+    public void clear() {
+        state = State.IN_PROGRESS;
+        failureReason = FailureReason.SUCCESS;
+        analyzePercentage = 0;
+        encodingOrDecodingPercentage = 0;
+        literalBytes = 0;
+        mode1Sectors = 0;
+        mode2Form1Sectors = 0;
+        mode2Form2Sectors = 0;
+        bytesBeforeProcessing = 0;
+        bytesAfterProcessing = 0;
+        bytesToRead = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+        imageHashes = null;
+    }
+
+    public void fail(FailureReason failureReason) {
+        this.state = State.FAILURE;
+        this.failureReason = failureReason;
+    }
+
+    public static int percentage(long done, long total) {
+        return total == 0 ? 100 : (int) (done * 100 / total);
+    }
+}
@@ -0,0 +1,92 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.LongArrayList;
+
+// Position of every record of an ECM file: where its payload starts in the .ecm and where its sectors go in the image
+public class RecordIndex {
+    private final LongArrayList inputOffsets = new LongArrayList();
+    private final LongArrayList outputOffsets = new LongArrayList();
+    private final IntArrayList types = new IntArrayList();
+    private final IntArrayList counts = new IntArrayList();
+
+    @Getter
+    private long outputLength;
+    @Getter
+    @Setter
+    private long checksumOffset;
+
+    public void add(SectorType type, int count, long inputOffset) {
+        types.addInt(type.getCode());
+        counts.addInt(count);
+        inputOffsets.addLong(inputOffset);
+        outputOffsets.addLong(outputLength);
+
+        outputLength += (long) count * type.getRawSize();
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    public SectorType getType(int index) {
+        return SectorType.fromCode(types.getInt(index));
+    }
+
+    public int getCount(int index) {
+        return counts.getInt(index);
+    }
+
+    public long getInputOffset(int index) {
+        return inputOffsets.getLong(index);
+    }
+
+    public long getOutputOffset(int index) {
+        return outputOffsets.getLong(index);
+    }
+
+    public long getInputEnd(int index) {
+        return getInputOffset(index) + (long) getCount(index) * getType(index).getEncodedSize();
+    }
+
+    public long getOutputEnd(int index) {
+        return getOutputOffset(index) + (long) getCount(index) * getType(index).getRawSize();
+    }
+
+    // Index of the record whose sectors cover "outputPosition", which must be below the output length
+    public int findByOutputPosition(long outputPosition) {
+        int low = 0;
+        int high = size() - 1;
+
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (outputOffsets.getLong(middle) <= outputPosition) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return low;
+    }
+}
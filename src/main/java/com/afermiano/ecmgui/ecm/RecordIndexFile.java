@@ -0,0 +1,95 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.util.AtomicFiles;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Sidecar persisting the RecordIndex of an .ecm file, so it is walked once instead of on every open.
+// It is only trusted while the .ecm keeps the length and modification time it had when the sidecar was written.
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class RecordIndexFile {
+    public static final String EXTENSION = ".idx";
+    public static final byte[] MAGIC = {'E', 'C', 'M', 'I'};
+    public static final int VERSION = 1;
+
+    public static Path sidecarOf(Path ecmPath) {
+        return ecmPath.resolveSibling(ecmPath.getFileName() + EXTENSION);
+    }
+
+    public static void save(RecordIndex index, Path ecmPath) throws IOException {
+        final Path sidecar = sidecarOf(ecmPath);
+        // Readers never see a partially written sidecar, even with several readers of the same .ecm file saving it
+        AtomicFiles.write(sidecar, temporary -> {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.write(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(Files.size(ecmPath));
+                output.writeLong(Files.getLastModifiedTime(ecmPath).toMillis());
+                output.writeLong(index.getChecksumOffset());
+                output.writeInt(index.size());
+                for (int i = 0; i < index.size(); i++) {
+                    output.writeByte(index.getType(i).getCode());
+                    output.writeInt(index.getCount(i));
+                    output.writeLong(index.getInputOffset(i));
+                }
+            }
+        });
+    }
+
+    // Returns null if there is no sidecar or it does not describe the current .ecm file
+    public static RecordIndex load(Path ecmPath) throws IOException {
+        final Path sidecar = sidecarOf(ecmPath);
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            final byte[] magic = new byte[MAGIC.length];
+            input.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || input.readInt() != VERSION
+                    || input.readLong() != Files.size(ecmPath)
+                    || input.readLong() != Files.getLastModifiedTime(ecmPath).toMillis()) {
+                return null;
+            }
+
+            final RecordIndex index = new RecordIndex();
+            index.setChecksumOffset(input.readLong());
+            final int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                final int code = input.readUnsignedByte();
+                if (code >= SectorType.values().length) {
+                    return null;
+                }
+                index.add(SectorType.fromCode(code), input.readInt(), input.readLong());
+            }
+
+            return index;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import org.agrona.collections.IntArrayList;
+
+import java.util.Arrays;
+
+public class RecordList {
+    private final IntArrayList types = new IntArrayList();
+    private final IntArrayList counts = new IntArrayList();
+    private final long[] totals = new long[SectorType.values().length];
+
+    public void add(SectorType type, int count) {
+        totals[type.getCode()] += count;
+
+        final int last = types.size() - 1;
+        if (last >= 0 && types.getInt(last) == type.getCode()) {
+            final long merged = (long) counts.getInt(last) + count;
+            if (merged <= EcmFormat.MAX_RECORD_COUNT) {
+                counts.setInt(last, (int) merged);
+                return;
+            }
+        }
+
+        types.addInt(type.getCode());
+        counts.addInt(count);
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    public SectorType getType(int index) {
+        return SectorType.fromCode(types.getInt(index));
+    }
+
+    public int getCount(int index) {
+        return counts.getInt(index);
+    }
+
+    public long getTotal(SectorType type) {
+        return totals[type.getCode()];
+    }
+
+    public void clear() {
+        types.clear();
+        counts.clear();
+        Arrays.fill(totals, 0);
+    }
+}
@@ -0,0 +1,104 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import lombok.Getter;
+
+import java.io.IOException;
+
+// Walks the record headers of an .ecm file, skipping over the sector data
+public class RecordScanner {
+    private final MappedWindow input;
+    private final long inputLength;
+
+    @Getter
+    private long position = EcmFormat.MAGIC.length;
+    @Getter
+    private boolean done;
+
+    private SectorType recordType;
+    private long recordCount;
+
+    public RecordScanner(MappedWindow input, long inputLength) {
+        this.input = input;
+        this.inputLength = inputLength;
+    }
+
+    // Adds to "index" the records found in about the next "maxStepInBytes" bytes of input
+    public void scan(long maxStepInBytes, RecordIndex index) throws IOException, EcmException {
+        final long stepEnd = position + maxStepInBytes;
+
+        while (!done && position < stepEnd) {
+            position = readRecordHeader(position);
+
+            if (recordType == null) {
+                if (position + EcmFormat.CHECKSUM_SIZE > inputLength) {
+                    throw new EcmException(FailureReason.INVALID_ECM_FILE);
+                }
+                index.setChecksumOffset(position);
+                done = true;
+                return;
+            }
+
+            index.add(recordType, (int) recordCount, position);
+            position = index.getInputEnd(index.size() - 1);
+
+            if (position > inputLength) {
+                throw new EcmException(FailureReason.INVALID_ECM_FILE);
+            }
+        }
+    }
+
+    // Sets recordType/recordCount (recordType is null at the end of records) and returns the position after the header
+    private long readRecordHeader(long position) throws IOException, EcmException {
+        if (position >= inputLength) {
+            throw new EcmException(FailureReason.INVALID_ECM_FILE);
+        }
+
+        int value = input.get(position++);
+        final int type = value & 3;
+        long count = (value >> 2) & 0x1F;
+        int bits = 5;
+
+        while ((value & 0x80) != 0) {
+            if (position >= inputLength || bits > 31) {
+                throw new EcmException(FailureReason.INVALID_ECM_FILE);
+            }
+            value = input.get(position++);
+            count |= ((long) (value & 0x7F)) << bits;
+            bits += 7;
+        }
+
+        if (count == EcmFormat.END_OF_RECORDS) {
+            recordType = null;
+            recordCount = 0;
+            return position;
+        }
+
+        count++;
+        if (count > EcmFormat.MAX_RECORD_COUNT) {
+            throw new EcmException(FailureReason.INVALID_ECM_FILE);
+        }
+
+        recordType = SectorType.fromCode(type);
+        recordCount = count;
+
+        return position;
+    }
+}
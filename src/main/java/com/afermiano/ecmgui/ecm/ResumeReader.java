@@ -0,0 +1,73 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.Checksum;
+
+// Reads back, a step at a time, the part of a file a resumed job had already processed, so its checksum and hashes
+// continue from the checkpoint. Either of "hasher" and "crc32" may be null.
+public class ResumeReader {
+    private final FileChannel channel;
+    private final long length;
+    private final ImageHasher hasher;
+    private final Checksum crc32;
+    private final byte[] buffer = new byte[EcmEncoder.IO_BUFFER_SIZE];
+
+    @Getter
+    private long position;
+    @Getter
+    private int edc;
+
+    public ResumeReader(FileChannel channel, long length, ImageHasher hasher, Checksum crc32) {
+        this.channel = channel;
+        this.length = length;
+        this.hasher = hasher;
+        this.crc32 = crc32;
+    }
+
+    public boolean isDone() {
+        return position >= length;
+    }
+
+    public void read(int stepInBytes) throws IOException {
+        final long stepEnd = Math.min(length, position + Math.max(stepInBytes, buffer.length));
+
+        while (position < stepEnd) {
+            final ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, stepEnd - position));
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, position + chunk.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+
+            edc = EccEdc.computeEdc(edc, buffer, 0, chunk.limit());
+            if (crc32 != null) {
+                crc32.update(buffer, 0, chunk.limit());
+            }
+            if (hasher != null) {
+                hasher.update(buffer, 0, chunk.limit());
+            }
+            position += chunk.limit();
+        }
+    }
+}
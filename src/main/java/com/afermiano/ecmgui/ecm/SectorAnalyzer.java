@@ -0,0 +1,55 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class SectorAnalyzer {
+
+    // "window" holds the input starting at "windowPosition" and must cover one full sector past "to" (or up to the end of input).
+    // Returns where classification stopped, which can be past "to" when the last sector crosses it.
+    public static long analyze(byte[] window, long windowPosition, long from, long to, long inputLength, RecordList records) {
+        long position = from;
+        int pendingLiteralBytes = 0;
+
+        while (position < to) {
+            final SectorType type = SectorClassifier.classify(window, (int) (position - windowPosition), inputLength - position);
+
+            if (type == SectorType.LITERAL) {
+                pendingLiteralBytes++;
+            } else {
+                if (pendingLiteralBytes > 0) {
+                    records.add(SectorType.LITERAL, pendingLiteralBytes);
+                    pendingLiteralBytes = 0;
+                }
+                records.add(type, 1);
+            }
+
+            position += type.getRawSize();
+        }
+
+        if (pendingLiteralBytes > 0) {
+            records.add(SectorType.LITERAL, pendingLiteralBytes);
+        }
+
+        return position;
+    }
+}
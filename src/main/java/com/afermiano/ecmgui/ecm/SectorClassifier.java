@@ -0,0 +1,101 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class SectorClassifier {
+
+    // Mode 1 is checked against a full 2352 bytes sector; mode 2 against a 2336 bytes sector (no sync and header)
+    public static SectorType classify(byte[] buffer, int offset, long available) {
+        if (available < SectorType.MODE_2_FORM_1.getRawSize()) {
+            return SectorType.LITERAL;
+        }
+
+        boolean canBeMode1 = available >= SectorType.MODE_1.getRawSize() && hasMode1Layout(buffer, offset);
+        boolean canBeMode2Form1 = true;
+        boolean canBeMode2Form2 = true;
+
+        if (buffer[offset] != buffer[offset + 4]
+                || buffer[offset + 1] != buffer[offset + 5]
+                || buffer[offset + 2] != buffer[offset + 6]
+                || buffer[offset + 3] != buffer[offset + 7]) {
+            if (!canBeMode1) {
+                return SectorType.LITERAL;
+            }
+            canBeMode2Form1 = false;
+            canBeMode2Form2 = false;
+        }
+
+        int edc = EccEdc.computeEdc(0, buffer, offset, 0x808);
+        if (canBeMode2Form1 && !EccEdc.matchesEdc(edc, buffer, offset + 0x808)) {
+            canBeMode2Form1 = false;
+        }
+
+        edc = EccEdc.computeEdc(edc, buffer, offset + 0x808, 8);
+        if (canBeMode1 && !EccEdc.matchesEdc(edc, buffer, offset + 0x810)) {
+            canBeMode1 = false;
+        }
+
+        if (canBeMode2Form2) {
+            edc = EccEdc.computeEdc(edc, buffer, offset + 0x810, 0x10C);
+            if (!EccEdc.matchesEdc(edc, buffer, offset + 0x91C)) {
+                canBeMode2Form2 = false;
+            }
+        }
+
+        if (canBeMode1 && !EccEdc.checkEcc(buffer, offset + EccEdc.ADDRESS_OFFSET, offset + 0x10, offset + EccEdc.P_PARITY_OFFSET)) {
+            canBeMode1 = false;
+        }
+        if (canBeMode2Form1 && !EccEdc.checkEcc(buffer, -1, offset, offset + 0x80C)) {
+            canBeMode2Form1 = false;
+        }
+
+        if (canBeMode1) {
+            return SectorType.MODE_1;
+        }
+        if (canBeMode2Form1) {
+            return SectorType.MODE_2_FORM_1;
+        }
+        if (canBeMode2Form2) {
+            return SectorType.MODE_2_FORM_2;
+        }
+
+        return SectorType.LITERAL;
+    }
+
+    private static boolean hasMode1Layout(byte[] buffer, int offset) {
+        if (buffer[offset] != 0 || buffer[offset + 0x0B] != 0 || buffer[offset + EccEdc.MODE_OFFSET] != 1) {
+            return false;
+        }
+        for (int i = 1; i <= 0x0A; i++) {
+            if (buffer[offset + i] != (byte) 0xFF) {
+                return false;
+            }
+        }
+        for (int i = 0x814; i < 0x81C; i++) {
+            if (buffer[offset + i] != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
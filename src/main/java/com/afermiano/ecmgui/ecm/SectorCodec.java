@@ -0,0 +1,65 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class SectorCodec {
+    private static final int MODE_1_DATA_OFFSET = 0x10;
+    private static final int MODE_1_DATA_SIZE = 0x800;
+    private static final int MODE_2_OFFSET = 0x10;
+    private static final int MODE_2_PAYLOAD_OFFSET = 0x14;
+
+    // Copies what is stored in the .ecm for a sector read from the image ("raw" points to what the classifier checked)
+    public static void extract(SectorType type, byte[] raw, int rawOffset, byte[] payload, int payloadOffset) {
+        if (type == SectorType.MODE_1) {
+            System.arraycopy(raw, rawOffset + EccEdc.ADDRESS_OFFSET, payload, payloadOffset, 3);
+            System.arraycopy(raw, rawOffset + MODE_1_DATA_OFFSET, payload, payloadOffset + 3, MODE_1_DATA_SIZE);
+        } else {
+            System.arraycopy(raw, rawOffset + 4, payload, payloadOffset, type.getEncodedSize());
+        }
+    }
+
+    // Rebuilds a sector from its payload into "sector" and returns where the bytes of the image start in it
+    public static int rebuild(SectorType type, byte[] payload, int payloadOffset, byte[] sector) {
+        sector[0] = 0;
+        Arrays.fill(sector, 1, 11, (byte) 0xFF);
+        sector[0x0B] = 0;
+
+        if (type == SectorType.MODE_1) {
+            sector[EccEdc.MODE_OFFSET] = 1;
+            System.arraycopy(payload, payloadOffset, sector, EccEdc.ADDRESS_OFFSET, 3);
+            System.arraycopy(payload, payloadOffset + 3, sector, MODE_1_DATA_OFFSET, MODE_1_DATA_SIZE);
+            EccEdc.generate(sector, 0, type);
+
+            return 0;
+        }
+
+        sector[EccEdc.MODE_OFFSET] = 2;
+        System.arraycopy(payload, payloadOffset, sector, MODE_2_PAYLOAD_OFFSET, type.getEncodedSize());
+        System.arraycopy(sector, MODE_2_PAYLOAD_OFFSET, sector, MODE_2_OFFSET, 4);
+        EccEdc.generate(sector, 0, type);
+
+        return MODE_2_OFFSET;
+    }
+}
@@ -0,0 +1,40 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@AllArgsConstructor
+@Getter
+public enum SectorType {
+    LITERAL(0, 1, 1),
+    MODE_1(1, 2352, 0x803),
+    MODE_2_FORM_1(2, 2336, 0x804),
+    MODE_2_FORM_2(3, 2336, 0x918);
+
+    private static final SectorType[] BY_CODE = values();
+
+    private int code;
+    private int rawSize;
+    private int encodedSize;
+
+    public static SectorType fromCode(int code) {
+        return BY_CODE[code];
+    }
+}
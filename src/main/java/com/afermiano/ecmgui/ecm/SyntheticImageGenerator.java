@@ -0,0 +1,169 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+// Writes BIN images with valid sync, headers and EDC/ECC; the same settings always produce the same bytes
+@Builder
+public class SyntheticImageGenerator {
+    // Sync and header of a mode 2 sector are outside of what ECM encodes, so they end up as literal bytes
+    public static final int MODE_2_HEADER_SIZE = 0x10;
+    public static final int PREGAP_FRAMES = 150;
+    public static final int FRAMES_PER_SECOND = 75;
+    public static final int SECONDS_PER_MINUTE = 60;
+    public static final int FORM_2_SUBMODE = 0x20;
+    public static final int DATA_SUBMODE = 0x08;
+
+    @Builder.Default
+    private final long seed = 0;
+    private final long sectorCount;
+    @Builder.Default
+    private final int mode1Weight = 1;
+    @Builder.Default
+    private final int mode2Form1Weight = 0;
+    @Builder.Default
+    private final int mode2Form2Weight = 0;
+    @Builder.Default
+    private final int literalWeight = 0;
+    // Real discs have long runs of one type (data tracks, XA streams, audio); runs are 1..maxRunLength sectors
+    @Builder.Default
+    private final int maxRunLength = 1;
+    // Bytes after the last full sector, always literal
+    @Builder.Default
+    private final int trailingBytes = 0;
+
+    // What encoding the image must report
+    @Value
+    public static class Result {
+        long imageBytes;
+        long literalBytes;
+        long mode1Sectors;
+        long mode2Form1Sectors;
+        long mode2Form2Sectors;
+    }
+
+    public Result write(Path path) throws IOException {
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(path))) {
+            return write(output);
+        }
+    }
+
+    public Result write(OutputStream output) throws IOException {
+        final int totalWeight = mode1Weight + mode2Form1Weight + mode2Form2Weight + literalWeight;
+        if (totalWeight <= 0 || maxRunLength <= 0 || sectorCount < 0 || trailingBytes < 0 || trailingBytes >= SectorType.MODE_2_FORM_1.getRawSize()) {
+            throw new IllegalArgumentException();
+        }
+
+        final Random random = new Random(seed);
+        final byte[] sector = new byte[EcmFormat.SECTOR_SIZE];
+        long literalBytes = 0;
+        final long[] sectors = new long[SectorType.values().length];
+
+        long lba = 0;
+        while (lba < sectorCount) {
+            final SectorType type = pickType(random.nextInt(totalWeight));
+            final long runEnd = Math.min(sectorCount, lba + 1 + random.nextInt(maxRunLength));
+
+            for (; lba < runEnd; lba++) {
+                buildSector(sector, type, lba, random);
+                output.write(sector);
+
+                if (type == SectorType.LITERAL) {
+                    literalBytes += EcmFormat.SECTOR_SIZE;
+                } else {
+                    sectors[type.ordinal()]++;
+                    if (type != SectorType.MODE_1) {
+                        literalBytes += MODE_2_HEADER_SIZE;
+                    }
+                }
+            }
+        }
+
+        final byte[] trailing = new byte[trailingBytes];
+        random.nextBytes(trailing);
+        output.write(trailing);
+        literalBytes += trailingBytes;
+
+        return new Result(sectorCount * EcmFormat.SECTOR_SIZE + trailingBytes, literalBytes,
+                sectors[SectorType.MODE_1.ordinal()], sectors[SectorType.MODE_2_FORM_1.ordinal()], sectors[SectorType.MODE_2_FORM_2.ordinal()]);
+    }
+
+    private SectorType pickType(int value) {
+        if ((value -= mode1Weight) < 0) {
+            return SectorType.MODE_1;
+        }
+        if ((value -= mode2Form1Weight) < 0) {
+            return SectorType.MODE_2_FORM_1;
+        }
+        if (value - mode2Form2Weight < 0) {
+            return SectorType.MODE_2_FORM_2;
+        }
+
+        return SectorType.LITERAL;
+    }
+
+    private static void buildSector(byte[] sector, SectorType type, long lba, Random random) {
+        random.nextBytes(sector);
+        if (type == SectorType.LITERAL) {
+            return;
+        }
+
+        sector[0] = 0;
+        Arrays.fill(sector, 1, 11, (byte) 0xFF);
+        sector[11] = 0;
+
+        final long frames = lba + PREGAP_FRAMES;
+        sector[EccEdc.ADDRESS_OFFSET] = toBcd(frames / (FRAMES_PER_SECOND * SECONDS_PER_MINUTE));
+        sector[EccEdc.ADDRESS_OFFSET + 1] = toBcd(frames / FRAMES_PER_SECOND % SECONDS_PER_MINUTE);
+        sector[EccEdc.ADDRESS_OFFSET + 2] = toBcd(frames % FRAMES_PER_SECOND);
+
+        if (type == SectorType.MODE_1) {
+            sector[EccEdc.MODE_OFFSET] = 1;
+        } else {
+            sector[EccEdc.MODE_OFFSET] = 2;
+
+            // File, channel, submode and coding info, stored twice
+            final byte file = 1;
+            final byte channel = (byte) random.nextInt(32);
+            final byte submode = (byte) (type == SectorType.MODE_2_FORM_2 ? FORM_2_SUBMODE : DATA_SUBMODE);
+            for (int offset = MODE_2_HEADER_SIZE; offset < MODE_2_HEADER_SIZE + 8; offset += 4) {
+                sector[offset] = file;
+                sector[offset + 1] = channel;
+                sector[offset + 2] = submode;
+                sector[offset + 3] = 0;
+            }
+        }
+
+        EccEdc.generate(sector, 0, type);
+    }
+
+    private static byte toBcd(long value) {
+        return (byte) ((value / 10 % 10) << 4 | value % 10);
+    }
+}
@@ -0,0 +1,75 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.fs;
+
+import lombok.AllArgsConstructor;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+// Attributes of the .ecm file, except for the size, which is the one of the decoded image
+@AllArgsConstructor
+public class EcmFileAttributes implements BasicFileAttributes {
+    private final BasicFileAttributes delegate;
+    private final long imageLength;
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return delegate.lastModifiedTime();
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return delegate.lastAccessTime();
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return delegate.creationTime();
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return delegate.isRegularFile();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return delegate.isDirectory();
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return delegate.isSymbolicLink();
+    }
+
+    @Override
+    public boolean isOther() {
+        return delegate.isOther();
+    }
+
+    @Override
+    public long size() {
+        return imageLength;
+    }
+
+    @Override
+    public Object fileKey() {
+        return delegate.fileKey();
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.fs;
+
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+// Mirrors the default file system: every path names an .ecm file there, and reads as its decoded image
+public class EcmFileSystem extends FileSystem {
+    public static final String BASIC_VIEW = "basic";
+
+    private final EcmFileSystemProvider provider;
+    private final FileSystem delegate = FileSystems.getDefault();
+
+    EcmFileSystem(EcmFileSystemProvider provider) {
+        this.provider = provider;
+    }
+
+    @Override
+    public EcmFileSystemProvider provider() {
+        return provider;
+    }
+
+    // Always open, like the default file system it mirrors
+    @Override
+    public void close() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return delegate.getSeparator();
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return StreamSupport.stream(delegate.getRootDirectories().spliterator(), false)
+                .map(this::wrap)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return StreamSupport.stream(delegate.getFileStores().spliterator(), false)
+                .map(EcmFileStore::new)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Collections.singleton(BASIC_VIEW);
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        return wrap(delegate.getPath(first, more));
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        final PathMatcher matcher = delegate.getPathMatcher(syntaxAndPattern);
+
+        return path -> matcher.matches(EcmPath.unwrap(path));
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException();
+    }
+
+    EcmPath wrap(Path path) {
+        return new EcmPath(this, path);
+    }
+}
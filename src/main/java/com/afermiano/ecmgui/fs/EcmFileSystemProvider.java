@@ -0,0 +1,286 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.fs;
+
+import com.afermiano.ecmgui.ecm.EcmException;
+import com.afermiano.ecmgui.ecm.EcmFormat;
+import com.afermiano.ecmgui.ecm.EcmSectorReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+// Reads .ecm files as the images they decode to, without decoding them first: "ecm:file:///games/game.bin.ecm".
+// Read-only; each channel decodes the sectors it touches through an EcmSectorReader and caches them.
+public class EcmFileSystemProvider extends FileSystemProvider {
+    public static final String SCHEME = "ecm";
+
+    private final EcmFileSystem fileSystem = new EcmFileSystem(this);
+
+    @Override
+    public String getScheme() {
+        return SCHEME;
+    }
+
+    // There is a single file system, mirroring the default one
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        throw new FileSystemAlreadyExistsException();
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        checkScheme(uri);
+
+        return fileSystem;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        checkScheme(uri);
+
+        return fileSystem.wrap(Paths.get(URI.create(uri.getRawSchemeSpecificPart())));
+    }
+
+    private static void checkScheme(URI uri) {
+        if (!SCHEME.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("URI scheme is not \"" + SCHEME + "\"");
+        }
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attributes) throws IOException {
+        for (OpenOption option : options) {
+            if (option == StandardOpenOption.WRITE || option == StandardOpenOption.APPEND) {
+                throw new ReadOnlyFileSystemException();
+            }
+        }
+
+        return new EcmSeekableByteChannel(openReader(path), new SectorCache());
+    }
+
+    private static EcmSectorReader openReader(Path path) throws IOException {
+        try {
+            return EcmSectorReader.open(EcmPath.unwrap(path));
+        } catch (EcmException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(path + ": " + e.getFailureReason(), e);
+        }
+    }
+
+    // Lists the subdirectories and the .ecm files (by their magic) of the directory, so Files.list and Files.walk
+    // only meet paths that read as images
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path directory, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        final DirectoryStream<Path> entries = Files.newDirectoryStream(EcmPath.unwrap(directory),
+                entry -> (Files.isDirectory(entry) || isEcmFile(entry)) && filter.accept(fileSystem.wrap(entry)));
+
+        return new DirectoryStream<Path>() {
+            @Override
+            public Iterator<Path> iterator() {
+                final Iterator<Path> iterator = entries.iterator();
+
+                return new Iterator<Path>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Path next() {
+                        return fileSystem.wrap(iterator.next());
+                    }
+                };
+            }
+
+            @Override
+            public void close() throws IOException {
+                entries.close();
+            }
+        };
+    }
+
+    private static boolean isEcmFile(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+
+        final byte[] magic = new byte[EcmFormat.MAGIC.length];
+        try (InputStream input = Files.newInputStream(path)) {
+            return input.readNBytes(magic, 0, magic.length) == magic.length && Arrays.equals(magic, EcmFormat.MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void createDirectory(Path directory, FileAttribute<?>... attributes) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path other) throws IOException {
+        return other instanceof EcmPath && Files.isSameFile(EcmPath.unwrap(path), EcmPath.unwrap(other));
+    }
+
+    @Override
+    public boolean isHidden(Path path) throws IOException {
+        return Files.isHidden(EcmPath.unwrap(path));
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        return new EcmFileStore(Files.getFileStore(EcmPath.unwrap(path)));
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        for (AccessMode mode : modes) {
+            if (mode != AccessMode.READ) {
+                throw new AccessDeniedException(path.toString());
+            }
+        }
+
+        final Path delegate = EcmPath.unwrap(path);
+        delegate.getFileSystem().provider().checkAccess(delegate, AccessMode.READ);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        if (type != BasicFileAttributeView.class) {
+            return null;
+        }
+
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return EcmFileSystem.BASIC_VIEW;
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return EcmFileSystemProvider.this.readAttributes(path, BasicFileAttributes.class, options);
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new ReadOnlyFileSystemException();
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        if (type != BasicFileAttributes.class) {
+            throw new UnsupportedOperationException();
+        }
+
+        final BasicFileAttributes attributes = Files.readAttributes(EcmPath.unwrap(path), BasicFileAttributes.class, options);
+        if (!attributes.isRegularFile()) {
+            return (A) attributes;
+        }
+
+        try (EcmSectorReader reader = openReader(path)) {
+            return (A) new EcmFileAttributes(attributes, reader.getImageLength());
+        }
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        final String names = attributes.startsWith(EcmFileSystem.BASIC_VIEW + ":") ? attributes.substring(EcmFileSystem.BASIC_VIEW.length() + 1) : attributes;
+        if (names.contains(":")) {
+            throw new UnsupportedOperationException("Only the \"" + EcmFileSystem.BASIC_VIEW + "\" view is supported");
+        }
+
+        final BasicFileAttributes basic = readAttributes(path, BasicFileAttributes.class, options);
+        final Map<String, Object> all = new HashMap<>();
+        all.put("lastModifiedTime", basic.lastModifiedTime());
+        all.put("lastAccessTime", basic.lastAccessTime());
+        all.put("creationTime", basic.creationTime());
+        all.put("size", basic.size());
+        all.put("isRegularFile", basic.isRegularFile());
+        all.put("isDirectory", basic.isDirectory());
+        all.put("isSymbolicLink", basic.isSymbolicLink());
+        all.put("isOther", basic.isOther());
+        all.put("fileKey", basic.fileKey());
+
+        if (names.equals("*")) {
+            return all;
+        }
+
+        final Map<String, Object> selected = new HashMap<>();
+        for (String name : names.split(",")) {
+            if (!all.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown attribute \"" + name + "\"");
+            }
+            selected.put(name, all.get(name));
+        }
+
+        return selected;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+}
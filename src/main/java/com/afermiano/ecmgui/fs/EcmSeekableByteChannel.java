@@ -0,0 +1,129 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.fs;
+
+import com.afermiano.ecmgui.ecm.EcmFormat;
+import com.afermiano.ecmgui.ecm.EcmSectorReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+// Read-only view of the decoded image; sectors are decoded on first access and kept in a bounded LRU cache
+public class EcmSeekableByteChannel implements SeekableByteChannel {
+    private final EcmSectorReader reader;
+    private final SectorCache cache;
+    private long position;
+    private volatile boolean open = true;
+
+    public EcmSeekableByteChannel(EcmSectorReader reader, SectorCache cache) {
+        this.reader = reader;
+        this.cache = cache;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer destination) throws IOException {
+        ensureOpen();
+
+        if (position >= reader.getImageLength()) {
+            return -1;
+        }
+
+        int done = 0;
+        while (destination.hasRemaining() && position < reader.getImageLength()) {
+            final long sectorNumber = position / EcmFormat.SECTOR_SIZE;
+            final int sectorOffset = (int) (position % EcmFormat.SECTOR_SIZE);
+            final byte[] sector = getSector(sectorNumber);
+            final int count = Math.min(destination.remaining(), sector.length - sectorOffset);
+
+            destination.put(sector, sectorOffset, count);
+            position += count;
+            done += count;
+        }
+
+        return done;
+    }
+
+    private byte[] getSector(long sectorNumber) throws IOException {
+        byte[] sector = cache.get(sectorNumber);
+        if (sector != null) {
+            return sector;
+        }
+
+        final long sectorLength = Math.min(EcmFormat.SECTOR_SIZE, reader.getImageLength() - sectorNumber * EcmFormat.SECTOR_SIZE);
+        sector = cache.allocate((int) sectorLength);
+        reader.readSector(sectorNumber, sector, 0);
+        cache.put(sectorNumber, sector);
+
+        return sector;
+    }
+
+    @Override
+    public int write(ByteBuffer source) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        position = newPosition;
+
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+
+        return reader.getImageLength();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        reader.close();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
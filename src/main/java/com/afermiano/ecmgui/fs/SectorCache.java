@@ -0,0 +1,72 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.fs;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Decoded sectors by number, evicting the least recently used one once "capacity" are held
+public class SectorCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    @Getter
+    private final int capacity;
+    private final LinkedHashMap<Long, byte[]> sectors;
+    private byte[] evicted;
+
+    public SectorCache(int capacity) {
+        this.capacity = capacity;
+        this.sectors = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                if (size() <= SectorCache.this.capacity) {
+                    return false;
+                }
+
+                evicted = eldest.getValue();
+                return true;
+            }
+        };
+    }
+
+    public SectorCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public byte[] get(long sector) {
+        return sectors.get(sector);
+    }
+
+    // Returns a buffer to decode a new sector into; the one of the last evicted sector is reused
+    public byte[] allocate(int length) {
+        final byte[] buffer = evicted != null && evicted.length == length ? evicted : new byte[length];
+        evicted = null;
+
+        return buffer;
+    }
+
+    public void put(long sector, byte[] data) {
+        sectors.put(sector, data);
+    }
+
+    public int size() {
+        return sectors.size();
+    }
+}
@@ -19,17 +19,27 @@ package com.afermiano.ecmgui.gui;
 
 import com.afermiano.ecmgui.Context;
 import com.afermiano.ecmgui.common.Observer;
+import com.afermiano.ecmgui.control.Job;
 import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.model.ModelSnapshot;
 
 import javax.swing.*;
 import java.awt.*;
 
 public class ButtonPanel extends JPanel implements Observer {
     public static final String PLEASE_SELECT_BOTH_FILES_TEXT = "Please select both files";
+    public static final String PLEASE_SELECT_INPUT_FILE_TEXT = "Please select the input file";
+    public static final String PAUSE_TEXT = "Pause";
+    public static final String RESUME_TEXT = "Resume";
     private JButton encodeButton;
     private JButton decodeButton;
+    private JButton verifyButton;
+    private JButton pauseButton;
+    private JButton cancelButton;
 
     private Model model;
+    private Job currentJob;
+    private boolean paused;
 
     public ButtonPanel(Context context) {
         final LayoutManager layout = new FlowLayout();
@@ -39,9 +49,16 @@ public class ButtonPanel extends JPanel implements Observer {
 
         encodeButton = new JButton("Encode");
         decodeButton = new JButton("Decode");
+        verifyButton = new JButton("Verify");
+        pauseButton = new JButton(PAUSE_TEXT);
+        cancelButton = new JButton("Cancel");
 
         add(encodeButton);
         add(decodeButton);
+        add(verifyButton);
+        add(pauseButton);
+        add(cancelButton);
+        setButtonsEnable(true);
 
         context.getControl().registerObserver(this);
 
@@ -50,20 +67,43 @@ public class ButtonPanel extends JPanel implements Observer {
                 return;
             }
 
-            context.getControl().startEncoding();
+            setButtonsEnable(false);
+            currentJob = context.getControl().startEncoding();
         });
         decodeButton.addActionListener(e -> {
             if (!checkSelectedFiles()) {
                 return;
             }
 
-            context.getControl().startDecoding();
+            setButtonsEnable(false);
+            currentJob = context.getControl().startDecoding();
+        });
+        verifyButton.addActionListener(e -> {
+            if (!checkSelectedInputFile()) {
+                return;
+            }
+
+            setButtonsEnable(false);
+            currentJob = context.getControl().startVerification();
+        });
+        pauseButton.addActionListener(e -> {
+            if (paused) {
+                context.getControl().resume(currentJob);
+            } else {
+                context.getControl().pause(currentJob);
+            }
+            setPaused(!paused);
+        });
+        cancelButton.addActionListener(e -> {
+            cancelButton.setEnabled(false);
+            context.getControl().cancel(currentJob);
         });
     }
 
     private boolean checkSelectedFiles() {
-        final String inputFile = model.getInputFileName();
-        final String outputFile = model.getOutputFileName();
+        final ModelSnapshot snapshot = model.getSnapshot();
+        final String inputFile = snapshot.getInputFileName();
+        final String outputFile = snapshot.getOutputFileName();
 
         if (inputFile == null || inputFile.isBlank() || outputFile == null || outputFile.isBlank()) {
             JOptionPane.showMessageDialog(this, PLEASE_SELECT_BOTH_FILES_TEXT);
@@ -73,38 +113,69 @@ public class ButtonPanel extends JPanel implements Observer {
         return true;
     }
 
+    // Verification writes nothing, so only the input file is needed
+    private boolean checkSelectedInputFile() {
+        final String inputFile = model.getSnapshot().getInputFileName();
+
+        if (inputFile == null || inputFile.isBlank()) {
+            JOptionPane.showMessageDialog(this, PLEASE_SELECT_INPUT_FILE_TEXT);
+            return false;
+        }
+
+        return true;
+    }
+
     private void setButtonsEnable(boolean enabled) {
         encodeButton.setEnabled(enabled);
         decodeButton.setEnabled(enabled);
+        verifyButton.setEnabled(enabled);
+        pauseButton.setEnabled(!enabled);
+        cancelButton.setEnabled(!enabled);
+    }
+
+    private void setPaused(boolean paused) {
+        this.paused = paused;
+        pauseButton.setText(paused ? RESUME_TEXT : PAUSE_TEXT);
+    }
+
+    private void onJobDone() {
+        currentJob = null;
+        setPaused(false);
+        setButtonsEnable(true);
     }
 
     @Override
-    public void onEncodingStart() {
+    public void onEncodingStart(Job job) {
         setButtonsEnable(false);
     }
 
     @Override
-    public void onDecodingStart() {
+    public void onDecodingStart(Job job) {
         setButtonsEnable(false);
     }
 
     @Override
-    public void onEncodingSuccess() {
-        setButtonsEnable(true);
+    public void onEncodingSuccess(Job job) {
+        onJobDone();
     }
 
     @Override
-    public void onDecodingSuccess() {
-        setButtonsEnable(true);
+    public void onDecodingSuccess(Job job) {
+        onJobDone();
     }
 
     @Override
-    public void onEncodingFailure() {
-        setButtonsEnable(true);
+    public void onEncodingFailure(Job job) {
+        onJobDone();
     }
 
     @Override
-    public void onDecodingFailure() {
-        setButtonsEnable(true);
+    public void onDecodingFailure(Job job) {
+        onJobDone();
+    }
+
+    @Override
+    public void onCancelled(Job job) {
+        onJobDone();
     }
 }
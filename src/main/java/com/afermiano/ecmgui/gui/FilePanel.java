@@ -19,6 +19,7 @@ package com.afermiano.ecmgui.gui;
 
 import com.afermiano.ecmgui.Context;
 import com.afermiano.ecmgui.common.Observer;
+import com.afermiano.ecmgui.control.Job;
 import com.afermiano.ecmgui.model.Model;
 
 import javax.swing.*;
@@ -156,12 +157,12 @@ public class FilePanel extends JPanel implements Observer {
 
     private void setInputFileName(String filePath) {
         inputFileTextField.setText(filePath);
-        model.setInputFileName(filePath);
+        model.update(builder -> builder.inputFileName(filePath));
     }
 
     private void setOutputFileName(String filePath) {
         outputFileTextField.setText(filePath);
-        model.setOutputFileName(filePath);
+        model.update(builder -> builder.outputFileName(filePath));
     }
 
     private void createOutputFilePanel() {
@@ -199,32 +200,37 @@ public class FilePanel extends JPanel implements Observer {
     }
 
     @Override
-    public void onEncodingStart() {
+    public void onEncodingStart(Job job) {
         setComponentsEnable(false);
     }
 
     @Override
-    public void onDecodingStart() {
+    public void onDecodingStart(Job job) {
         setComponentsEnable(false);
     }
 
     @Override
-    public void onEncodingSuccess() {
+    public void onEncodingSuccess(Job job) {
         setComponentsEnable(true);
     }
 
     @Override
-    public void onDecodingSuccess() {
+    public void onDecodingSuccess(Job job) {
         setComponentsEnable(true);
     }
 
     @Override
-    public void onEncodingFailure() {
+    public void onEncodingFailure(Job job) {
         setComponentsEnable(true);
     }
 
     @Override
-    public void onDecodingFailure() {
+    public void onDecodingFailure(Job job) {
+        setComponentsEnable(true);
+    }
+
+    @Override
+    public void onCancelled(Job job) {
         setComponentsEnable(true);
     }
 }
@@ -0,0 +1,34 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.gui;
+
+import com.afermiano.ecmgui.Context;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import javax.swing.*;
+
+// Keeps Swing/AWT out of the classes loaded by the headless commands
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class GuiLauncher {
+    public static void launch(Context context) {
+        context.getControl().deliverEventsTo(SwingUtilities::invokeLater);
+        SwingUtilities.invokeLater(() -> new MainWindow(context));
+    }
+}
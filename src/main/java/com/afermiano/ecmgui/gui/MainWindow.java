@@ -19,7 +19,10 @@ package com.afermiano.ecmgui.gui;
 
 import com.afermiano.ecmgui.Context;
 import com.afermiano.ecmgui.common.Observer;
-import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.control.Job;
+import com.afermiano.ecmgui.control.JobType;
+import com.afermiano.ecmgui.model.ModelSnapshot;
+import com.afermiano.ecmgui.util.Formats;
 
 import javax.swing.*;
 import java.awt.*;
@@ -29,14 +32,12 @@ import java.awt.event.WindowEvent;
 public class MainWindow extends JFrame implements Observer {
 
     public static final String TITLE = "ECM GUI";
-    public static final int WIDTH = 510;
-    public static final int HEIGHT = 210;
+    public static final int WIDTH = 560;
+    public static final int HEIGHT = 235;
     public static final int INSETS = 10;
     public static final int WEIGHT_X = 1;
     public static final double MILLI_TO_SECONDS_FACTOR = 1000.0;
-    public static final int REFRESH_TIME_IN_MS = 200;
     private final Context context;
-    private final Timer timer;
 
     private StringBuilder stringBuilder = new StringBuilder();
 
@@ -76,9 +77,6 @@ public class MainWindow extends JFrame implements Observer {
         setResizable(false);
 
         context.getControl().registerObserver(this);
-
-        timer = new Timer(REFRESH_TIME_IN_MS, e -> context.getControl().pollEvents());
-        timer.setRepeats(true);
     }
 
     private GridBagConstraints buildConstraints(int gridx, int gridy, boolean addInsets) {
@@ -95,48 +93,34 @@ public class MainWindow extends JFrame implements Observer {
     }
 
     @Override
-    public void onEncodingStart() {
-        timer.start();
-    }
-
-    @Override
-    public void onDecodingStart() {
-        timer.start();
-    }
-
-    @Override
-    public void onEncodingSuccess() {
-        timer.stop();
-        final String report = buildEncodingReport();
+    public void onEncodingSuccess(Job job) {
+        final String report = buildEncodingReport(job.getModel().getSnapshot());
         JOptionPane.showMessageDialog(this, report);
     }
 
     @Override
-    public void onDecodingSuccess() {
-        timer.stop();
-        final String report = buildDecodingReport();
+    public void onDecodingSuccess(Job job) {
+        final ModelSnapshot snapshot = job.getModel().getSnapshot();
+        final String report = job.getType() == JobType.VERIFICATION ? buildVerificationReport(snapshot) : buildDecodingReport(snapshot);
         JOptionPane.showMessageDialog(this, report);
     }
 
     @Override
-    public void onEncodingFailure() {
-        onFailure();
+    public void onEncodingFailure(Job job) {
+        onFailure(job);
     }
 
     @Override
-    public void onDecodingFailure() {
-        onFailure();
+    public void onDecodingFailure(Job job) {
+        onFailure(job);
     }
 
-    private void onFailure() {
-        timer.stop();
-        final String message = String.format("Error: %s", context.getModel().getFailureReason().toString());
+    private void onFailure(Job job) {
+        final String message = String.format("Error: %s", job.getModel().getSnapshot().getFailureReason().toString());
         JOptionPane.showMessageDialog(this, message);
     }
 
-    private String buildEncodingReport() {
-        final Model model = context.getModel();
-
+    private String buildEncodingReport(ModelSnapshot model) {
         final double processingTimeInSeconds = (model.getEndTimeInMs() - model.getStartTimeInMs()) / MILLI_TO_SECONDS_FACTOR;
 
         stringBuilder.setLength(0);
@@ -146,22 +130,63 @@ public class MainWindow extends JFrame implements Observer {
                 .append("Mode 2 form 1 sectors: ").append(model.getMode2Form1Sectors()).append('\n')
                 .append("Mode 2 form 2 sectors: ").append(model.getMode2Form2Sectors()).append('\n')
                 .append("Encoded ").append(model.getBytesBeforeProcessing()).append(" bytes -> ").append(model.getBytesAfterProcessing()).append(" bytes\n")
-                .append("Processing took ").append(processingTimeInSeconds).append(" seconds\n");
+                .append("Processing took ").append(processingTimeInSeconds).append(" seconds\n")
+                .append("Analysis took ").append(Formats.seconds(model.getAnalysisTimeInMs())).append(" seconds, encoding took ")
+                .append(Formats.seconds(model.getProcessingTimeInMs())).append(" seconds\n");
+        appendThroughput(model);
+        appendHashes(model);
 
         return stringBuilder.toString();
     }
 
-    private String buildDecodingReport() {
-        final Model model = context.getModel();
-
+    private String buildDecodingReport(ModelSnapshot model) {
         final double processingTimeInSeconds = (model.getEndTimeInMs() - model.getStartTimeInMs()) / MILLI_TO_SECONDS_FACTOR;
 
         stringBuilder.setLength(0);
         stringBuilder
                 .append("Decoded ").append(model.getBytesBeforeProcessing()).append(" bytes -> ").append(model.getBytesAfterProcessing()).append(" bytes\n")
-                .append("Processing took ").append(processingTimeInSeconds).append(" seconds\n");
+                .append("Processing took ").append(processingTimeInSeconds).append(" seconds\n")
+                .append("Header scan took ").append(Formats.seconds(model.getAnalysisTimeInMs())).append(" seconds, decoding took ")
+                .append(Formats.seconds(model.getProcessingTimeInMs())).append(" seconds\n");
+        appendThroughput(model);
+        appendHashes(model);
 
         return stringBuilder.toString();
     }
 
+    private String buildVerificationReport(ModelSnapshot model) {
+        final double processingTimeInSeconds = (model.getEndTimeInMs() - model.getStartTimeInMs()) / MILLI_TO_SECONDS_FACTOR;
+
+        stringBuilder.setLength(0);
+        stringBuilder
+                .append("Verified ").append(model.getBytesBeforeProcessing()).append(" bytes: the ").append(model.getBytesAfterProcessing())
+                .append(" bytes image is intact\n")
+                .append("Processing took ").append(processingTimeInSeconds).append(" seconds\n")
+                .append("Read ").append(Formats.mebibytes(model.getBytesRead()))
+                .append(", ").append(Formats.averageThroughput(model)).append(" on average\n");
+        appendHashes(model);
+
+        return stringBuilder.toString();
+    }
+
+    private void appendThroughput(ModelSnapshot model) {
+        stringBuilder
+                .append("Read ").append(Formats.mebibytes(model.getBytesRead()))
+                .append(", wrote ").append(Formats.mebibytes(model.getBytesWritten()))
+                .append(", ").append(Formats.averageThroughput(model)).append(" on average\n");
+    }
+
+    private void appendHashes(ModelSnapshot model) {
+        if (model.getImageHashes() == null) {
+            return;
+        }
+
+        stringBuilder.append("Image ").append(Formats.hashes(model.getImageHashes())).append('\n');
+        if (model.getImageMatch() != null) {
+            stringBuilder.append("Identified as ").append(Formats.match(model.getImageMatch())).append('\n');
+        } else if (context.getHashDatabase() != null) {
+            stringBuilder.append("Not found in the hash database\n");
+        }
+    }
+
 }
@@ -19,7 +19,9 @@ package com.afermiano.ecmgui.gui;
 
 import com.afermiano.ecmgui.Context;
 import com.afermiano.ecmgui.common.Observer;
-import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.control.Job;
+import com.afermiano.ecmgui.model.ModelSnapshot;
+import com.afermiano.ecmgui.util.Formats;
 
 import javax.swing.*;
 import java.awt.*;
@@ -30,11 +32,13 @@ public class PercentagePanel extends JPanel implements Observer {
     public static final double PERCENTAGE_BAR_WEIGHT_X = 0.95;
     public static final String ANALYSIS_TEXT = "Analysis:";
     public static final String PROCESSING_TEXT = "Processing:";
+    public static final String STATISTICS_FORMAT = "Read %s, written %s, %s, ETA %s";
 
     private final Context context;
 
     private JProgressBar analysisBar;
     private JProgressBar processingBar;
+    private JLabel statisticsLabel;
 
     public PercentagePanel(Context context) {
         this.context = context;
@@ -44,6 +48,7 @@ public class PercentagePanel extends JPanel implements Observer {
 
         createAnalysisPanel();
         createProcessingPanel();
+        createStatisticsLabel();
 
         context.getControl().registerObserver(this);
     }
@@ -70,6 +75,14 @@ public class PercentagePanel extends JPanel implements Observer {
         add(processingBar, constraints);
     }
 
+    private void createStatisticsLabel() {
+        statisticsLabel = new JLabel(" ");
+
+        final GridBagConstraints constraints = buildLabelConstraints(0, 2);
+        constraints.gridwidth = 2;
+        add(statisticsLabel, constraints);
+    }
+
     final GridBagConstraints buildLabelConstraints(int gridx, int gridy) {
         final GridBagConstraints constraints = new GridBagConstraints();
         constraints.gridx = gridx;
@@ -92,45 +105,53 @@ public class PercentagePanel extends JPanel implements Observer {
     }
 
     @Override
-    public void onEncodingStart() {
+    public void onEncodingStart(Job job) {
         resetPercentages();
     }
 
     @Override
-    public void onDecodingStart() {
+    public void onDecodingStart(Job job) {
         resetPercentages();
     }
 
     @Override
-    public void onEncodingSuccess() {
+    public void onEncodingSuccess(Job job) {
         resetPercentages();
     }
 
     @Override
-    public void onDecodingSuccess() {
+    public void onDecodingSuccess(Job job) {
         resetPercentages();
     }
 
     @Override
-    public void onEncodingFailure() {
+    public void onEncodingFailure(Job job) {
         resetPercentages();
     }
 
     @Override
-    public void onDecodingFailure() {
+    public void onDecodingFailure(Job job) {
         resetPercentages();
     }
 
     @Override
-    public void onProgressUpdate() {
-        final Model model = context.getModel();
+    public void onProgressUpdate(Job job) {
+        final ModelSnapshot model = job.getModel().getSnapshot();
 
         analysisBar.setValue(model.getAnalyzePercentage());
         processingBar.setValue(model.getEncodingOrDecodingPercentage());
+        statisticsLabel.setText(String.format(STATISTICS_FORMAT, Formats.mebibytes(model.getBytesRead()), Formats.mebibytes(model.getBytesWritten()),
+                Formats.throughput(model.getThroughputInBytesPerSecond()), Formats.eta(model.getEtaInMs())));
     }
 
     private void resetPercentages() {
         analysisBar.setValue(0);
         processingBar.setValue(0);
+        statisticsLabel.setText(" ");
+    }
+
+    @Override
+    public void onCancelled(Job job) {
+        resetPercentages();
     }
 }
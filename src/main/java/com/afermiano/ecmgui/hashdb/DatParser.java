@@ -0,0 +1,119 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.hashdb;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+// Reads Logiqx XML DAT files, the format of Redump and No-Intro: <game name="..."><rom name="..." size="..." crc="..." sha1="..."/></game>
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class DatParser {
+    public static final int SHA1_SIZE = 20;
+
+    public static void parse(Path path, Consumer<DatEntry> consumer) throws IOException {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(path))) {
+            parse(input, consumer);
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid DAT file " + path, e);
+        }
+    }
+
+    public static void parse(InputStream input, Consumer<DatEntry> consumer) throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        // DATs declare a remote DTD, which must neither be fetched nor expanded
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        final XMLStreamReader reader = factory.createXMLStreamReader(input);
+        try {
+            String title = null;
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    final String element = reader.getLocalName();
+                    if (isGame(element)) {
+                        title = reader.getAttributeValue(null, "name");
+                    } else if ("rom".equals(element) && title != null) {
+                        final DatEntry entry = buildEntry(title, reader);
+                        if (entry != null) {
+                            consumer.accept(entry);
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && isGame(reader.getLocalName())) {
+                    title = null;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean isGame(String element) {
+        // Newer No-Intro DATs use <machine>
+        return "game".equals(element) || "machine".equals(element);
+    }
+
+    // Returns null for ROMs without a usable CRC32
+    private static DatEntry buildEntry(String title, XMLStreamReader reader) {
+        final String crc32 = reader.getAttributeValue(null, "crc");
+        final String size = reader.getAttributeValue(null, "size");
+        final String track = reader.getAttributeValue(null, "name");
+        if (crc32 == null) {
+            return null;
+        }
+
+        try {
+            return new DatEntry(title, track == null ? "" : track,
+                    size == null ? 0 : Long.parseLong(size),
+                    Integer.parseUnsignedInt(crc32, 16),
+                    parseSha1(reader.getAttributeValue(null, "sha1")));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // All zeros if "hex" is not a SHA-1
+    public static byte[] parseSha1(String hex) {
+        final byte[] sha1 = new byte[SHA1_SIZE];
+        if (hex == null || hex.length() != 2 * SHA1_SIZE) {
+            return sha1;
+        }
+
+        for (int i = 0; i < SHA1_SIZE; i++) {
+            final int high = Character.digit(hex.charAt(2 * i), 16);
+            final int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return new byte[SHA1_SIZE];
+            }
+            sha1[i] = (byte) ((high << 4) | low);
+        }
+
+        return sha1;
+    }
+}
@@ -0,0 +1,243 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.hashdb;
+
+import com.afermiano.ecmgui.model.ImageHashes;
+import com.afermiano.ecmgui.model.ImageMatch;
+import com.afermiano.ecmgui.util.AtomicFiles;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hashes of known images, built once from DAT files and memory-mapped, so opening it only checks a header.
+// Layout: magic, version, entry count, entries sorted by CRC32 (CRC32, SHA-1, size, title and track offsets),
+// then the strings they point to, each preceded by its UTF-8 length.
+public class HashDatabase {
+    public static final String DIRECTORY_NAME = ".ecmgui";
+    public static final String FILE_NAME = "hashes.db";
+    public static final byte[] MAGIC = {'E', 'C', 'M', 'H'};
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = MAGIC.length + 2 * Integer.BYTES;
+    public static final int ENTRY_SIZE = Integer.BYTES + DatParser.SHA1_SIZE + Long.BYTES + 2 * Integer.BYTES;
+    public static final int MAX_STRING_LENGTH = 0xFFFF;
+
+    private static final Comparator<DatEntry> ORDER = Comparator
+            .comparingInt((DatEntry entry) -> entry.getCrc32() ^ Integer.MIN_VALUE)
+            .thenComparing(DatEntry::getSha1, Arrays::compareUnsigned)
+            .thenComparing(DatEntry::getTitle)
+            .thenComparing(DatEntry::getTrack);
+
+    // Only absolute reads, so lookups from several job threads do not interfere
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int stringsOffset;
+
+    private HashDatabase(ByteBuffer buffer, int entryCount) {
+        this.buffer = buffer;
+        this.entryCount = entryCount;
+        this.stringsOffset = HEADER_SIZE + entryCount * ENTRY_SIZE;
+    }
+
+    public static Path defaultPath() {
+        return Paths.get(System.getProperty("user.home"), DIRECTORY_NAME, FILE_NAME);
+    }
+
+    public static HashDatabase open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            final long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("Invalid hash database " + path);
+            }
+
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            final byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            final int version = buffer.getInt();
+            final int entryCount = buffer.getInt();
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION || entryCount < 0
+                    || (length - HEADER_SIZE) / ENTRY_SIZE < entryCount) {
+                throw new IOException("Invalid hash database " + path);
+            }
+
+            return new HashDatabase(buffer, entryCount);
+        }
+    }
+
+    // Returns how many distinct entries were written
+    public static int write(Collection<DatEntry> entries, Path path) throws IOException {
+        final List<DatEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(ORDER);
+
+        final List<DatEntry> unique = new ArrayList<>(sorted.size());
+        for (DatEntry entry : sorted) {
+            if (unique.isEmpty() || ORDER.compare(unique.get(unique.size() - 1), entry) != 0) {
+                unique.add(entry);
+            }
+        }
+
+        // Titles repeat for every track of a disc; they are stored once
+        final Map<String, Integer> stringOffsets = new HashMap<>();
+        final List<byte[]> strings = new ArrayList<>();
+        final int[] offsets = new int[2 * unique.size()];
+        int stringsLength = 0;
+        for (int i = 0; i < unique.size(); i++) {
+            for (int j = 0; j < 2; j++) {
+                final String string = j == 0 ? unique.get(i).getTitle() : unique.get(i).getTrack();
+                Integer offset = stringOffsets.get(string);
+                if (offset == null) {
+                    final byte[] bytes = encode(string);
+                    offset = stringsLength;
+                    stringOffsets.put(string, offset);
+                    strings.add(bytes);
+                    stringsLength += Short.BYTES + bytes.length;
+                }
+                offsets[2 * i + j] = offset;
+            }
+        }
+
+        // Running jobs keep the previous database mapped
+        AtomicFiles.write(path, temporary -> {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.write(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(unique.size());
+                for (int i = 0; i < unique.size(); i++) {
+                    final DatEntry entry = unique.get(i);
+                    output.writeInt(entry.getCrc32());
+                    output.write(entry.getSha1());
+                    output.writeLong(entry.getSize());
+                    output.writeInt(offsets[2 * i]);
+                    output.writeInt(offsets[2 * i + 1]);
+                }
+                for (byte[] bytes : strings) {
+                    output.writeShort(bytes.length);
+                    output.write(bytes);
+                }
+            }
+        });
+
+        return unique.size();
+    }
+
+    private static byte[] encode(String string) {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        return bytes.length <= MAX_STRING_LENGTH ? bytes : Arrays.copyOf(bytes, MAX_STRING_LENGTH);
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    // An entry with the same SHA-1 wins over one only known by its CRC32; returns null if nothing matches
+    public ImageMatch lookup(ImageHashes hashes) {
+        try {
+            return find(hashes);
+        } catch (IndexOutOfBoundsException e) {
+            // A damaged database identifies nothing, instead of failing the job
+            return null;
+        }
+    }
+
+    private ImageMatch find(ImageHashes hashes) {
+        final int crc32 = Integer.parseUnsignedInt(hashes.getCrc32(), 16);
+        final byte[] sha1 = DatParser.parseSha1(hashes.getSha1());
+        ImageMatch crc32Match = null;
+
+        for (int i = firstEntryNotBelow(crc32); i < entryCount && buffer.getInt(entryOffset(i)) == crc32; i++) {
+            final int sha1Offset = entryOffset(i) + Integer.BYTES;
+            if (matches(sha1Offset, sha1)) {
+                return buildMatch(i, true);
+            }
+            if (crc32Match == null && isZero(sha1Offset)) {
+                crc32Match = buildMatch(i, false);
+            }
+        }
+
+        return crc32Match;
+    }
+
+    private int firstEntryNotBelow(int crc32) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (Integer.compareUnsigned(buffer.getInt(entryOffset(middle)), crc32) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private static int entryOffset(int index) {
+        return HEADER_SIZE + index * ENTRY_SIZE;
+    }
+
+    private boolean matches(int offset, byte[] sha1) {
+        for (int i = 0; i < sha1.length; i++) {
+            if (buffer.get(offset + i) != sha1[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isZero(int offset) {
+        for (int i = 0; i < DatParser.SHA1_SIZE; i++) {
+            if (buffer.get(offset + i) != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private ImageMatch buildMatch(int index, boolean exact) {
+        final int offsetsOffset = entryOffset(index) + Integer.BYTES + DatParser.SHA1_SIZE + Long.BYTES;
+
+        return new ImageMatch(readString(buffer.getInt(offsetsOffset)), readString(buffer.getInt(offsetsOffset + Integer.BYTES)), exact);
+    }
+
+    private String readString(int offset) {
+        final int position = stringsOffset + offset;
+        final byte[] bytes = new byte[buffer.getShort(position) & 0xFFFF];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(position + Short.BYTES + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,41 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.jfr;
+
+import com.afermiano.ecmgui.control.Job;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+// Fields shared by the events of a single job
+public abstract class JobEvent extends Event {
+    @Label("Job Id")
+    public int jobId;
+
+    @Label("Job Type")
+    public String jobType;
+
+    @Label("Bridge")
+    public String bridge;
+
+    public void setJob(Job job) {
+        jobId = job.getId();
+        jobType = job.getType().name();
+        bridge = job.getBridge().getClass().getSimpleName();
+    }
+}
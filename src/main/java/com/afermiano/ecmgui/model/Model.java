@@ -15,42 +15,50 @@
 // You should have received a copy of the GNU General Public License
 // along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
 
+
 package com.afermiano.ecmgui.model;
 
-import com.afermiano.ecmgui.model.nativemapping.FailureReason;
-import com.afermiano.ecmgui.model.nativemapping.State;
-import lombok.Getter;
-import lombok.Setter;
-import lombok.Synchronized;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
 
-@Getter(onMethod_ = {@Synchronized})
-@Setter(onMethod_ = {@Synchronized})
+// Readers take one immutable snapshot, so they never block the job and never see half of an update
 public class Model {
-    private State state;
-    private FailureReason failureReason;
-    private int analyzePercentage;
-    private int encodingOrDecodingPercentage;
-    private long literalBytes;
-    private long mode1Sectors;
-    private long mode2Form1Sectors;
-    private long mode2Form2Sectors;
-    private long bytesBeforeProcessing;
-    private long bytesAfterProcessing;
-    private long startTimeInMs;
-    private long endTimeInMs;
-    private String inputFileName;
-    private String outputFileName;
-
-    public synchronized void clearStatus() {
-        analyzePercentage = 0;
-        encodingOrDecodingPercentage = 0;
-        literalBytes = 0;
-        mode1Sectors = 0;
-        mode2Form1Sectors = 0;
-        mode2Form2Sectors = 0;
-        bytesBeforeProcessing = 0;
-        bytesAfterProcessing = 0;
-        startTimeInMs = 0;
-        endTimeInMs = 0;
+    private final AtomicReference<ModelSnapshot> snapshot = new AtomicReference<>(ModelSnapshot.EMPTY);
+
+    public ModelSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    // All fields changed by "change" are published together
+    public ModelSnapshot update(UnaryOperator<ModelSnapshot.ModelSnapshotBuilder> change) {
+        return snapshot.updateAndGet(current -> change.apply(current.toBuilder()).build());
+    }
+
+    // For changes computed from the current values
+    public ModelSnapshot update(BiFunction<ModelSnapshot, ModelSnapshot.ModelSnapshotBuilder, ModelSnapshot.ModelSnapshotBuilder> change) {
+        return snapshot.updateAndGet(current -> change.apply(current, current.toBuilder()).build());
+    }
+
+    public void clearStatus() {
+        update(builder -> builder
+                .analyzePercentage(0)
+                .encodingOrDecodingPercentage(0)
+                .literalBytes(0)
+                .mode1Sectors(0)
+                .mode2Form1Sectors(0)
+                .mode2Form2Sectors(0)
+                .bytesBeforeProcessing(0)
+                .bytesAfterProcessing(0)
+                .startTimeInMs(0)
+                .endTimeInMs(0)
+                .bytesToRead(0)
+                .bytesRead(0)
+                .bytesWritten(0)
+                .analysisEndTimeInMs(0)
+                .throughputInBytesPerSecond(0)
+                .sampleTimeInNs(0)
+                .imageHashes(null)
+                .imageMatch(null));
     }
 }
@@ -0,0 +1,76 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.model;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class ModelSnapshot {
+    public static final ModelSnapshot EMPTY = ModelSnapshot.builder().build();
+    public static final long UNKNOWN_ETA = -1;
+    public static final double MILLIS_PER_SECOND = 1000.0;
+
+    State state;
+    FailureReason failureReason;
+    int analyzePercentage;
+    int encodingOrDecodingPercentage;
+    long literalBytes;
+    long mode1Sectors;
+    long mode2Form1Sectors;
+    long mode2Form2Sectors;
+    long bytesBeforeProcessing;
+    long bytesAfterProcessing;
+    long startTimeInMs;
+    long endTimeInMs;
+    // Every pass over the input counts, see Progress; estimated from the percentages for the native library
+    long bytesToRead;
+    long bytesRead;
+    long bytesWritten;
+    long analysisEndTimeInMs;
+    // Exponentially weighted, updated on every progress sample
+    double throughputInBytesPerSecond;
+    long sampleTimeInNs;
+    String inputFileName;
+    String outputFileName;
+    // Of the image, only known once a Java engine job completes
+    ImageHashes imageHashes;
+    // Null unless the hashes are listed in the hash database
+    ImageMatch imageMatch;
+
+    public long getAnalysisTimeInMs() {
+        return analysisEndTimeInMs == 0 ? 0 : analysisEndTimeInMs - startTimeInMs;
+    }
+
+    public long getProcessingTimeInMs() {
+        return endTimeInMs == 0 ? 0 : endTimeInMs - (analysisEndTimeInMs == 0 ? startTimeInMs : analysisEndTimeInMs);
+    }
+
+    public long getEtaInMs() {
+        // Streamed input has no known length
+        if (throughputInBytesPerSecond <= 0 || bytesToRead <= 0) {
+            return UNKNOWN_ETA;
+        }
+
+        return (long) (Math.max(0, bytesToRead - bytesRead) * MILLIS_PER_SECOND / throughputInBytesPerSecond);
+    }
+}
@@ -26,7 +26,9 @@ public enum State {
 
     COMPLETED(0),
     IN_PROGRESS(1),
-    FAILURE(2);
+    FAILURE(2),
+    // Never reported by the library; set when the user cancels a job
+    CANCELLED(3);
 
     private int nativeCode;
 
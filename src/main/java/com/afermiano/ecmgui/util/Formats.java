@@ -0,0 +1,71 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.util;
+
+import com.afermiano.ecmgui.model.ImageHashes;
+import com.afermiano.ecmgui.model.ImageMatch;
+import com.afermiano.ecmgui.model.ModelSnapshot;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.Locale;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class Formats {
+    public static final double BYTES_PER_MIB = 1024.0 * 1024.0;
+    public static final long MILLIS_PER_SECOND = 1000;
+    public static final long SECONDS_PER_MINUTE = 60;
+    public static final String UNKNOWN = "-";
+
+    public static String mebibytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / BYTES_PER_MIB);
+    }
+
+    public static String throughput(double bytesPerSecond) {
+        return bytesPerSecond <= 0 ? UNKNOWN : String.format(Locale.ROOT, "%.1f MiB/s", bytesPerSecond / BYTES_PER_MIB);
+    }
+
+    public static String seconds(long timeInMs) {
+        return String.format(Locale.ROOT, "%.3f", timeInMs / (double) MILLIS_PER_SECOND);
+    }
+
+    public static String eta(long etaInMs) {
+        if (etaInMs == ModelSnapshot.UNKNOWN_ETA) {
+            return UNKNOWN;
+        }
+
+        final long seconds = (etaInMs + MILLIS_PER_SECOND - 1) / MILLIS_PER_SECOND;
+        return String.format(Locale.ROOT, "%d:%02d", seconds / SECONDS_PER_MINUTE, seconds % SECONDS_PER_MINUTE);
+    }
+
+    public static String hashes(ImageHashes hashes) {
+        return String.format(Locale.ROOT, "CRC32 %s, MD5 %s, SHA-1 %s", hashes.getCrc32(), hashes.getMd5(), hashes.getSha1());
+    }
+
+    public static String match(ImageMatch match) {
+        return String.format(Locale.ROOT, "%s, %s%s", match.getTitle(), match.getTrack(), match.isExact() ? "" : " (CRC32 only)");
+    }
+
+    // Over the whole job, from the bytes read in every pass
+    public static String averageThroughput(ModelSnapshot model) {
+        final long timeInMs = model.getEndTimeInMs() - model.getStartTimeInMs();
+
+        return timeInMs <= 0 ? UNKNOWN : throughput(model.getBytesRead() * (double) MILLIS_PER_SECOND / timeInMs);
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.cli;
+
+import com.afermiano.ecmgui.App;
+import com.afermiano.ecmgui.control.JobType;
+import com.afermiano.ecmgui.hashdb.HashDatabase;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HeadlessCommandsTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static int execute(String... args) {
+        return new CommandLine(new App()).execute(args);
+    }
+
+    private static byte[] buildContent(int seed) {
+        final byte[] content = new byte[100_000];
+        new Random(seed).nextBytes(content);
+
+        return content;
+    }
+
+    @Test
+    public void encodeAndDecodeShouldRoundTrip() throws IOException {
+        final File image = temporaryFolder.newFile("image.bin");
+        final File ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm");
+        final File decoded = new File(temporaryFolder.getRoot(), "decoded.bin");
+        final byte[] content = buildContent(1);
+        Files.write(image.toPath(), content);
+
+        assertEquals(0, execute("encode", "-j", image.getPath(), ecm.getPath()));
+        assertEquals(0, execute("decode", "--java-engine", ecm.getPath(), decoded.getPath()));
+
+        assertArrayEquals(content, Files.readAllBytes(decoded.toPath()));
+    }
+
+    @Test
+    public void singlePassEncodingShouldMatchTwoPassEncoding() throws IOException {
+        final File image = temporaryFolder.newFile("image.bin");
+        final File ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm");
+        final File singlePassEcm = new File(temporaryFolder.getRoot(), "single-pass.ecm");
+        Files.write(image.toPath(), buildContent(2));
+
+        assertEquals(0, execute("encode", "-j", image.getPath(), ecm.getPath()));
+        assertEquals(0, execute("encode", "--single-pass", image.getPath(), singlePassEcm.getPath()));
+
+        assertArrayEquals(Files.readAllBytes(ecm.toPath()), Files.readAllBytes(singlePassEcm.toPath()));
+    }
+
+    @Test
+    public void verifyShouldReportCorruptedFiles() throws IOException {
+        final File image = temporaryFolder.newFile("image.bin");
+        final File ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm");
+        final File corrupted = new File(temporaryFolder.getRoot(), "corrupted.ecm");
+        Files.write(image.toPath(), buildContent(3));
+        assertEquals(0, execute("encode", "-j", image.getPath(), ecm.getPath()));
+
+        final byte[] content = Files.readAllBytes(ecm.toPath());
+        content[content.length / 2] ^= 0x01;
+        Files.write(corrupted.toPath(), content);
+
+        assertEquals(0, execute("verify", "-j", ecm.getPath()));
+        assertEquals(FailureReason.ERROR_IN_CHECKSUM.getNativeCode(), execute("verify", "-j", "-w", "2", ecm.getPath(), corrupted.getPath()));
+        assertTrue(corrupted.exists());
+    }
+
+    @Test
+    public void importDatsShouldBuildTheHashDatabase() throws IOException {
+        final File dat = temporaryFolder.newFile("system.dat");
+        final File database = new File(temporaryFolder.getRoot(), "hashes/hashes.db");
+        Files.write(dat.toPath(), ("<datafile><game name=\"Game\"><rom name=\"Game.bin\" size=\"1\" crc=\"00000001\"/></game></datafile>")
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, execute("import-dats", "--hash-database", database.getPath(), dat.getPath()));
+        assertEquals(1, HashDatabase.open(database.toPath()).size());
+
+        assertEquals(FailureReason.ERROR_READING_INPUT_FILE.getNativeCode(),
+                execute("import-dats", "--hash-database", database.getPath(), new File(temporaryFolder.getRoot(), "missing.dat").getPath()));
+    }
+
+    @Test
+    public void batchShouldProcessEveryFile() throws IOException {
+        final File outputDirectory = temporaryFolder.newFolder("out");
+        final File first = temporaryFolder.newFile("first.bin");
+        final File second = temporaryFolder.newFile("second.bin");
+        Files.write(first.toPath(), buildContent(1));
+        Files.write(second.toPath(), buildContent(2));
+
+        assertEquals(0, execute("batch", "-j", "-w", "2", "-o", outputDirectory.getPath(), first.getPath(), second.getPath()));
+        assertEquals(0, execute("batch", "-j", "-d", new File(outputDirectory, "first.bin.ecm").getPath(), new File(outputDirectory, "second.bin.ecm").getPath()));
+
+        assertArrayEquals(buildContent(1), Files.readAllBytes(new File(outputDirectory, "first.bin").toPath()));
+        assertArrayEquals(buildContent(2), Files.readAllBytes(new File(outputDirectory, "second.bin").toPath()));
+    }
+
+    @Test
+    public void exitCodeShouldMapFailureReason() {
+        final File missing = new File(temporaryFolder.getRoot(), "missing.bin");
+        final File ecm = new File(temporaryFolder.getRoot(), "missing.bin.ecm");
+
+        assertEquals(FailureReason.ERROR_OPENING_INPUT_FILE.getNativeCode(), execute("encode", "-j", missing.getPath(), ecm.getPath()));
+        assertFalse(ecm.exists());
+    }
+
+    @Test
+    public void batchShouldNameOutputsLikeEcmTools() {
+        assertEquals("game.bin.ecm", BatchCommand.buildOutputFileName(JobType.ENCODING, "game.bin", null));
+        assertEquals("game.bin", BatchCommand.buildOutputFileName(JobType.DECODING, "game.bin.ecm", null));
+        assertEquals("game.bin.unecm", BatchCommand.buildOutputFileName(JobType.DECODING, "game.bin", null));
+        assertEquals(new File("out", "game.bin.ecm").getPath(), BatchCommand.buildOutputFileName(JobType.ENCODING, new File("in", "game.bin").getPath(), new File("out")));
+    }
+}
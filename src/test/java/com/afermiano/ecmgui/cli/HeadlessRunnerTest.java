@@ -0,0 +1,54 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.cli;
+
+import com.afermiano.ecmgui.control.Control;
+import com.afermiano.ecmgui.control.Job;
+import com.afermiano.ecmgui.control.JobType;
+import com.afermiano.ecmgui.control.bridge.Bridge;
+import com.afermiano.ecmgui.model.Model;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class HeadlessRunnerTest {
+    @Test
+    public void progressShouldOnlyBePrintedWhenAPercentageChanges() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final HeadlessRunner runner = new HeadlessRunner(mock(Control.class), new PrintStream(bytes, true));
+        final Model model = new Model();
+        final Job job = new Job(1, JobType.ENCODING, model, mock(Bridge.class));
+        model.update(builder -> builder.inputFileName("image.bin"));
+
+        for (int i = 0; i < 60; i++) {
+            final long bytesRead = i;
+            model.update(builder -> builder.analyzePercentage(bytesRead < 30 ? 50 : 100).bytesRead(bytesRead));
+            runner.onProgressUpdate(job);
+        }
+        model.update(builder -> builder.encodingOrDecodingPercentage(1));
+        runner.onProgressUpdate(job);
+        runner.onProgressUpdate(job);
+
+        assertEquals(3, new String(bytes.toByteArray(), StandardCharsets.UTF_8).split(System.lineSeparator()).length);
+    }
+}
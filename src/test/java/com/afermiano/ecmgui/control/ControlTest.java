@@ -22,21 +22,33 @@ import com.afermiano.ecmgui.common.Observer;
 import com.afermiano.ecmgui.control.bridge.Bridge;
 import com.afermiano.ecmgui.control.bridge.BridgeEvent;
 import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.model.ModelSnapshot;
 import com.afermiano.ecmgui.model.nativemapping.FailureReason;
 import com.afermiano.ecmgui.model.nativemapping.State;
 import org.agrona.collections.MutableInteger;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 
-import java.lang.reflect.Field;
+import java.io.File;
+import java.io.IOException;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -45,23 +57,28 @@ public class ControlTest {
     private static final String OUTPUT_FILE_NAME = "outputfile";
     public static final int ASYNC_TIMEOUT_IN_SECONDS = 10;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private Context context;
     private Control control;
     private Model model;
     private Bridge bridge;
-    private ExecutorService bridgeExecutor;
+    private ExecutorService jobExecutor;
+    private JobEventChannel eventChannel;
+    private final List<BridgeEvent> events = new CopyOnWriteArrayList<>();
 
     @Before
     public void setup() {
         context = new Context();
 
         model = spy(new Model());
-        model.setInputFileName(INPUT_FILE_NAME);
-        model.setOutputFileName(OUTPUT_FILE_NAME);
+        model.update(builder -> builder.inputFileName(INPUT_FILE_NAME).outputFileName(OUTPUT_FILE_NAME));
         context.setModel(model);
+        eventChannel = context.getEventChannel();
 
         bridge = mock(Bridge.class);
-        context.setBridge(bridge);
+        context.setBridgeFactory((bridgeContext, bridgeModel) -> bridge);
 
         control = new Control(context);
     }
@@ -71,44 +88,74 @@ public class ControlTest {
         control.close();
     }
 
-    private void disableBridgeExecutor() throws NoSuchFieldException, IllegalAccessException, InterruptedException {
+    private void disableJobExecutor() throws InterruptedException {
+        jobExecutor = mock(ExecutorService.class);
+        when(jobExecutor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+        control.close();
+        control = new Control(context, new JobScheduler(context, jobExecutor));
+    }
+
+    private void runSubmittedJob() {
+        final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(jobExecutor, times(1)).submit(captor.capture());
 
-        bridgeExecutor = mock(ExecutorService.class);
-        when(bridgeExecutor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
+        captor.getValue().run();
+    }
 
-        final Field field = control.getClass().getDeclaredField("bridgeExecutor");
-        field.setAccessible(true);
+    private Job buildJob(JobType type) {
+        return registerJob(new Job(1, type, model, bridge));
+    }
 
-        final ExecutorService oldService = (ExecutorService) field.get(control);
-        oldService.shutdownNow();
+    private Job registerJob(Job job) {
+        eventChannel.register(job);
+        return job;
+    }
 
-        field.set(control, bridgeExecutor);
+    private void awaitEvent(BridgeEvent event) {
+        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> {
+            eventChannel.drain((job, drainedEvent) -> events.add(drainedEvent));
+            return events.contains(event);
+        });
     }
 
     @Test
-    public void startEncodingShouldBehaveCorrectlyIfSuccess() throws NoSuchFieldException, IllegalAccessException, InterruptedException {
-        disableBridgeExecutor();
+    public void startEncodingShouldBehaveCorrectlyIfSuccess() throws InterruptedException {
+        disableJobExecutor();
 
         when(bridge.prepareEncoding(anyString(), anyString())).thenReturn(FailureReason.SUCCESS);
+        doAnswer(invocationOnMock -> {
+            model.update(builder -> builder.state(State.COMPLETED));
+            return null;
+        }).when(bridge).encode();
 
         final Observer observer = mock(Observer.class);
 
         control.registerObserver(observer);
 
-        control.startEncoding();
+        final Job job = control.startEncoding();
 
+        assertEquals(model, job.getModel());
+        assertEquals(JobType.ENCODING, job.getType());
         verify(model, times(1)).clearStatus();
-        assertTrue(model.getStartTimeInMs() > 0);
+        verify(bridge, never()).prepareEncoding(anyString(), anyString());
+
+        runSubmittedJob();
+
+        assertTrue(model.getSnapshot().getStartTimeInMs() > 0);
+        assertTrue(job.isPrepared());
         verify(bridge, times(1)).prepareEncoding(INPUT_FILE_NAME, OUTPUT_FILE_NAME);
-        verify(observer, never()).onEncodingFailure();
-        assertEquals(State.IN_PROGRESS, model.getState());
-        verify(observer, times(1)).onEncodingStart();
-        verify(bridgeExecutor, times(1)).submit(any(Runnable.class));
+
+        control.pollEvents();
+
+        verify(observer, times(1)).onEncodingStart(job);
+        verify(observer, times(1)).onEncodingSuccess(job);
+        verify(observer, never()).onEncodingFailure(any(Job.class));
     }
 
     @Test
-    public void startEncodingShouldBehaveCorrectlyIfFailure() throws NoSuchFieldException, InterruptedException, IllegalAccessException {
-        disableBridgeExecutor();
+    public void startEncodingShouldBehaveCorrectlyIfFailure() throws InterruptedException {
+        disableJobExecutor();
 
         final FailureReason FAILURE_REASON = FailureReason.OUT_OF_MEMORY;
         when(bridge.prepareEncoding(anyString(), anyString())).thenReturn(FAILURE_REASON);
@@ -117,16 +164,33 @@ public class ControlTest {
 
         control.registerObserver(observer);
 
-        control.startEncoding();
+        final Job job = control.startEncoding();
+        runSubmittedJob();
 
-        verify(model, times(1)).clearStatus();
-        assertTrue(model.getStartTimeInMs() > 0);
         verify(bridge, times(1)).prepareEncoding(INPUT_FILE_NAME, OUTPUT_FILE_NAME);
-        assertEquals(State.FAILURE, model.getState());
-        assertEquals(FAILURE_REASON, model.getFailureReason());
-        verify(observer, times(1)).onEncodingFailure();
-        verify(observer, never()).onEncodingStart();
-        verify(bridgeExecutor, never()).submit(any(Runnable.class));
+        verify(bridge, never()).encode();
+        assertEquals(State.FAILURE, model.getSnapshot().getState());
+        assertEquals(FAILURE_REASON, model.getSnapshot().getFailureReason());
+
+        control.pollEvents();
+
+        verify(observer, times(1)).onEncodingFailure(job);
+        verify(observer, never()).onEncodingStart(any(Job.class));
+    }
+
+    @Test
+    public void prepareFailureShouldKeepExistingOutputFile() throws Exception {
+        disableJobExecutor();
+
+        final File outputFile = temporaryFolder.newFile();
+        model.update(builder -> builder.outputFileName(outputFile.getPath()));
+        when(bridge.prepareDecoding(anyString(), anyString())).thenReturn(FailureReason.ERROR_OPENING_INPUT_FILE);
+
+        control.startDecoding();
+        runSubmittedJob();
+        control.pollEvents();
+
+        assertTrue(outputFile.exists());
     }
 
     @Test
@@ -137,23 +201,17 @@ public class ControlTest {
 
         doAnswer(invocationOnMock -> {
             final State state = encodeCallsRemaining.getAndDecrement() == 0 ? State.COMPLETED : State.IN_PROGRESS;
-            model.setState(state);
+            model.update(builder -> builder.state(state));
 
             return null;
         }).when(bridge).encode();
 
         control.startEncoding();
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
-
-        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> eventQueue.size() >= PROGRESS_UPDATE_CALLS + 1);
+        awaitEvent(BridgeEvent.ENCODING_SUCCESS);
 
-        assertEquals(PROGRESS_UPDATE_CALLS + 1, eventQueue.size());
-
-        for (int i = 0; i < PROGRESS_UPDATE_CALLS; i++) {
-            assertEquals(BridgeEvent.PROGRESS_UPDATE, eventQueue.poll());
-        }
-        assertEquals(BridgeEvent.ENCODING_SUCCESS, eventQueue.poll());
+        // Progress is coalesced while nobody drains the channel
+        assertEquals(Arrays.asList(BridgeEvent.ENCODING_START, BridgeEvent.PROGRESS_UPDATE, BridgeEvent.ENCODING_SUCCESS), events);
     }
 
     @Test
@@ -164,49 +222,80 @@ public class ControlTest {
 
         doAnswer(invocationOnMock -> {
             final State state = encodeCallsRemaining.getAndDecrement() == 0 ? State.FAILURE : State.IN_PROGRESS;
-            model.setState(state);
+            model.update(builder -> builder.state(state));
 
             return null;
         }).when(bridge).encode();
 
         control.startEncoding();
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
+        awaitEvent(BridgeEvent.ENCODING_FAILURE);
 
-        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> eventQueue.size() >= PROGRESS_UPDATE_CALLS + 1);
+        // Progress is coalesced while nobody drains the channel
+        assertEquals(Arrays.asList(BridgeEvent.ENCODING_START, BridgeEvent.PROGRESS_UPDATE, BridgeEvent.ENCODING_FAILURE), events);
+    }
 
-        assertEquals(PROGRESS_UPDATE_CALLS + 1, eventQueue.size());
+    @Test
+    public void encodingShouldFailIfBridgeThrows() {
+        when(bridge.prepareEncoding(anyString(), anyString())).thenReturn(FailureReason.SUCCESS);
+        doThrow(new IllegalStateException("Broken bridge")).when(bridge).encode();
 
-        for (int i = 0; i < PROGRESS_UPDATE_CALLS; i++) {
-            assertEquals(BridgeEvent.PROGRESS_UPDATE, eventQueue.poll());
-        }
-        assertEquals(BridgeEvent.ENCODING_FAILURE, eventQueue.poll());
+        control.startEncoding();
+
+        awaitEvent(BridgeEvent.ENCODING_FAILURE);
+
+        assertEquals(Arrays.asList(BridgeEvent.ENCODING_START, BridgeEvent.ENCODING_FAILURE), events);
+        assertEquals(State.FAILURE, model.getSnapshot().getState());
+        assertEquals(FailureReason.ERROR_READING_INPUT_FILE, model.getSnapshot().getFailureReason());
+        verify(bridge, times(1)).release();
+    }
+
+    @Test
+    public void decodingShouldFailIfPrepareRunsOutOfMemory() {
+        when(bridge.prepareDecoding(anyString(), anyString())).thenThrow(new OutOfMemoryError());
+
+        control.startDecoding();
+
+        awaitEvent(BridgeEvent.DECODING_FAILURE);
+
+        assertEquals(FailureReason.OUT_OF_MEMORY, model.getSnapshot().getFailureReason());
+        verify(bridge, never()).decode();
     }
 
     @Test
-    public void startDecodingShouldBehaveCorrectlyIfSuccess() throws NoSuchFieldException, InterruptedException, IllegalAccessException {
-        disableBridgeExecutor();
+    public void startDecodingShouldBehaveCorrectlyIfSuccess() throws InterruptedException {
+        disableJobExecutor();
 
         when(bridge.prepareDecoding(anyString(), anyString())).thenReturn(FailureReason.SUCCESS);
+        doAnswer(invocationOnMock -> {
+            model.update(builder -> builder.state(State.COMPLETED));
+            return null;
+        }).when(bridge).decode();
 
         final Observer observer = mock(Observer.class);
 
         control.registerObserver(observer);
 
-        control.startDecoding();
+        final Job job = control.startDecoding();
 
+        assertEquals(JobType.DECODING, job.getType());
         verify(model, times(1)).clearStatus();
-        assertTrue(model.getStartTimeInMs() > 0);
+
+        runSubmittedJob();
+
+        assertTrue(model.getSnapshot().getStartTimeInMs() > 0);
         verify(bridge, times(1)).prepareDecoding(INPUT_FILE_NAME, OUTPUT_FILE_NAME);
-        verify(observer, never()).onDecodingFailure();
-        assertEquals(State.IN_PROGRESS, model.getState());
-        verify(observer, times(1)).onDecodingStart();
-        verify(bridgeExecutor, times(1)).submit(any(Runnable.class));
+
+        control.pollEvents();
+
+        verify(observer, times(1)).onDecodingStart(job);
+        verify(observer, times(1)).onDecodingSuccess(job);
+        verify(observer, never()).onDecodingFailure(any(Job.class));
     }
 
     @Test
-    public void startDecodingShouldBehaveCorrectlyIfFailure() throws NoSuchFieldException, InterruptedException, IllegalAccessException {
-        disableBridgeExecutor();
+    public void startDecodingShouldBehaveCorrectlyIfFailure() throws InterruptedException {
+        disableJobExecutor();
 
         final FailureReason FAILURE_REASON = FailureReason.OUT_OF_MEMORY;
         when(bridge.prepareDecoding(anyString(), anyString())).thenReturn(FAILURE_REASON);
@@ -215,16 +304,18 @@ public class ControlTest {
 
         control.registerObserver(observer);
 
-        control.startDecoding();
+        final Job job = control.startDecoding();
+        runSubmittedJob();
 
-        verify(model, times(1)).clearStatus();
-        assertTrue(model.getStartTimeInMs() > 0);
         verify(bridge, times(1)).prepareDecoding(INPUT_FILE_NAME, OUTPUT_FILE_NAME);
-        assertEquals(State.FAILURE, model.getState());
-        assertEquals(FAILURE_REASON, model.getFailureReason());
-        verify(observer, times(1)).onDecodingFailure();
-        verify(observer, never()).onDecodingStart();
-        verify(bridgeExecutor, never()).submit(any(Runnable.class));
+        verify(bridge, never()).decode();
+        assertEquals(State.FAILURE, model.getSnapshot().getState());
+        assertEquals(FAILURE_REASON, model.getSnapshot().getFailureReason());
+
+        control.pollEvents();
+
+        verify(observer, times(1)).onDecodingFailure(job);
+        verify(observer, never()).onDecodingStart(any(Job.class));
     }
 
     @Test
@@ -235,23 +326,17 @@ public class ControlTest {
 
         doAnswer(invocationOnMock -> {
             final State state = encodeCallsRemaining.getAndDecrement() == 0 ? State.COMPLETED : State.IN_PROGRESS;
-            model.setState(state);
+            model.update(builder -> builder.state(state));
 
             return null;
         }).when(bridge).decode();
 
         control.startDecoding();
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
+        awaitEvent(BridgeEvent.DECODING_SUCCESS);
 
-        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> eventQueue.size() >= PROGRESS_UPDATE_CALLS + 1);
-
-        assertEquals(PROGRESS_UPDATE_CALLS + 1, eventQueue.size());
-
-        for (int i = 0; i < PROGRESS_UPDATE_CALLS; i++) {
-            assertEquals(BridgeEvent.PROGRESS_UPDATE, eventQueue.poll());
-        }
-        assertEquals(BridgeEvent.DECODING_SUCCESS, eventQueue.poll());
+        // Progress is coalesced while nobody drains the channel
+        assertEquals(Arrays.asList(BridgeEvent.DECODING_START, BridgeEvent.PROGRESS_UPDATE, BridgeEvent.DECODING_SUCCESS), events);
     }
 
     @Test
@@ -262,23 +347,121 @@ public class ControlTest {
 
         doAnswer(invocationOnMock -> {
             final State state = encodeCallsRemaining.getAndDecrement() == 0 ? State.FAILURE : State.IN_PROGRESS;
-            model.setState(state);
+            model.update(builder -> builder.state(state));
 
             return null;
         }).when(bridge).decode();
 
         control.startDecoding();
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
+        awaitEvent(BridgeEvent.DECODING_FAILURE);
+
+        // Progress is coalesced while nobody drains the channel
+        assertEquals(Arrays.asList(BridgeEvent.DECODING_START, BridgeEvent.PROGRESS_UPDATE, BridgeEvent.DECODING_FAILURE), events);
+    }
 
-        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> eventQueue.size() >= PROGRESS_UPDATE_CALLS + 1);
+    @Test
+    public void workersShouldRunJobsConcurrently() {
+        control.close();
+        control = new Control(context, 2);
 
-        assertEquals(PROGRESS_UPDATE_CALLS + 1, eventQueue.size());
+        // Each job only completes once both are running
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        context.setBridgeFactory((bridgeContext, bridgeModel) -> {
+            final Bridge jobBridge = mock(Bridge.class);
+            when(jobBridge.prepareEncoding(anyString(), anyString())).thenReturn(FailureReason.SUCCESS);
+            doAnswer(invocationOnMock -> {
+                bothRunning.countDown();
+                bothRunning.await(ASYNC_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS);
+                bridgeModel.update(builder -> builder.state(bothRunning.getCount() == 0 ? State.COMPLETED : State.FAILURE));
 
-        for (int i = 0; i < PROGRESS_UPDATE_CALLS; i++) {
-            assertEquals(BridgeEvent.PROGRESS_UPDATE, eventQueue.poll());
-        }
-        assertEquals(BridgeEvent.DECODING_FAILURE, eventQueue.poll());
+                return null;
+            }).when(jobBridge).encode();
+
+            return jobBridge;
+        });
+
+        final Job first = control.submitEncoding("first.bin", "first.ecm");
+        final Job second = control.submitEncoding("second.bin", "second.ecm");
+
+        assertTrue(first.getId() != second.getId());
+        assertEquals("second.bin", second.getModel().getSnapshot().getInputFileName());
+
+        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS))
+                .until(() -> first.getModel().getSnapshot().getState() != State.IN_PROGRESS && second.getModel().getSnapshot().getState() != State.IN_PROGRESS);
+
+        assertEquals(State.COMPLETED, first.getModel().getSnapshot().getState());
+        assertEquals(State.COMPLETED, second.getModel().getSnapshot().getState());
+    }
+
+    @Test
+    public void cancelShouldStopJobBetweenStepsAndDeleteOutput() throws IOException {
+        final File outputFile = temporaryFolder.newFile();
+        model.update(builder -> builder.outputFileName(outputFile.getPath()));
+        when(bridge.prepareEncoding(anyString(), anyString())).thenReturn(FailureReason.SUCCESS);
+        final AtomicInteger steps = new AtomicInteger();
+        doAnswer(invocationOnMock -> {
+            steps.incrementAndGet();
+            return null;
+        }).when(bridge).encode();
+
+        final Observer observer = mock(Observer.class);
+        control.registerObserver(observer);
+
+        final Job job = control.startEncoding();
+        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> steps.get() > 0);
+
+        control.cancel(job);
+        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).untilAsserted(() -> {
+            control.pollEvents();
+            verify(observer, times(1)).onCancelled(job);
+        });
+
+        assertEquals(State.CANCELLED, model.getSnapshot().getState());
+        verify(bridge, times(1)).release();
+        assertFalse(outputFile.exists());
+    }
+
+    @Test
+    public void cancelShouldSkipQueuedJob() throws InterruptedException {
+        disableJobExecutor();
+
+        final Job job = control.startDecoding();
+        control.cancel(job);
+        runSubmittedJob();
+
+        verify(bridge, never()).prepareDecoding(anyString(), anyString());
+        assertEquals(State.CANCELLED, model.getSnapshot().getState());
+        assertFalse(job.isPrepared());
+    }
+
+    @Test
+    public void pauseShouldHoldJobUntilResumed() {
+        when(bridge.prepareEncoding(anyString(), anyString())).thenReturn(FailureReason.SUCCESS);
+        final AtomicInteger steps = new AtomicInteger();
+        final AtomicInteger stepsToComplete = new AtomicInteger(Integer.MAX_VALUE);
+        doAnswer(invocationOnMock -> {
+            if (steps.incrementAndGet() >= stepsToComplete.get()) {
+                model.update(builder -> builder.state(State.COMPLETED));
+            }
+            return null;
+        }).when(bridge).encode();
+
+        final Job job = control.startEncoding();
+        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> steps.get() > 0);
+        control.pause(job);
+
+        // A step already running when pausing still completes
+        await().pollDelay(Duration.ofMillis(50)).until(() -> true);
+        final int pausedSteps = steps.get();
+        await().pollDelay(Duration.ofMillis(100)).until(() -> true);
+        assertEquals(pausedSteps, steps.get());
+
+        stepsToComplete.set(pausedSteps + 5);
+        control.resume(job);
+        awaitEvent(BridgeEvent.ENCODING_SUCCESS);
+
+        assertEquals(pausedSteps + 5, steps.get());
     }
 
     @Test
@@ -286,13 +469,35 @@ public class ControlTest {
         final Observer observer = mock(Observer.class);
         control.registerObserver(observer);
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
-        eventQueue.add(BridgeEvent.PROGRESS_UPDATE);
+        final Job job = buildJob(JobType.ENCODING);
+        eventChannel.publishProgress(job);
 
         control.pollEvents();
 
-        assertTrue(eventQueue.isEmpty());
-        verify(observer, times(1)).onProgressUpdate();
+        assertTrue(eventChannel.isEmpty());
+        verify(observer, times(1)).onProgressUpdate(job);
+    }
+
+    @Test
+    public void progressShouldTrackThroughputAndPhases() {
+        model.update(builder -> builder.startTimeInMs(System.currentTimeMillis()));
+
+        control.setProgress(model, 50, 0, 2000, 500, 0);
+        await().pollDelay(Duration.ofMillis(20)).until(() -> true);
+        control.setProgress(model, 100, 0, 2000, 1000, 0);
+
+        ModelSnapshot snapshot = model.getSnapshot();
+        assertEquals(1000, snapshot.getBytesRead());
+        assertTrue(snapshot.getThroughputInBytesPerSecond() > 0);
+        assertTrue(snapshot.getAnalysisEndTimeInMs() >= snapshot.getStartTimeInMs());
+        assertEquals((long) (1000 * 1000 / snapshot.getThroughputInBytesPerSecond()), snapshot.getEtaInMs());
+
+        control.setEncodingComplete(model, 0, 0, 0, 0, 1000, 600);
+
+        snapshot = model.getSnapshot();
+        assertEquals(2000, snapshot.getBytesRead());
+        assertEquals(600, snapshot.getBytesWritten());
+        assertEquals(snapshot.getEndTimeInMs() - snapshot.getStartTimeInMs(), snapshot.getAnalysisTimeInMs() + snapshot.getProcessingTimeInMs());
     }
 
     @Test
@@ -300,15 +505,124 @@ public class ControlTest {
         final Observer observer = mock(Observer.class);
         control.registerObserver(observer);
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
+        final Job job = buildJob(JobType.ENCODING);
         for (int i = 0; i < 10; i++) {
-            eventQueue.add(BridgeEvent.PROGRESS_UPDATE);
+            eventChannel.publishProgress(job);
         }
 
         control.pollEvents();
 
-        assertTrue(eventQueue.isEmpty());
-        verify(observer, times(1)).onProgressUpdate();
+        assertTrue(eventChannel.isEmpty());
+        verify(observer, times(1)).onProgressUpdate(job);
+    }
+
+    @Test
+    public void shouldRouteProgressUpdatesPerJob() {
+        final Observer observer = mock(Observer.class);
+        control.registerObserver(observer);
+
+        final Job first = registerJob(new Job(1, JobType.ENCODING, new Model(), bridge));
+        final Job second = registerJob(new Job(2, JobType.DECODING, new Model(), bridge));
+        eventChannel.publishProgress(first);
+        eventChannel.publishProgress(second);
+        eventChannel.publishProgress(first);
+        eventChannel.publish(second, BridgeEvent.DECODING_SUCCESS);
+
+        control.pollEvents();
+
+        verify(observer, times(1)).onProgressUpdate(first);
+        verify(observer, times(1)).onProgressUpdate(second);
+        verify(observer, times(1)).onDecodingSuccess(second);
+
+        // Delivered progress can be published again
+        eventChannel.publishProgress(first);
+        control.pollEvents();
+
+        verify(observer, times(2)).onProgressUpdate(first);
+    }
+
+    @Test
+    public void drainFromHandlerShouldMakeRoomAndKeepOrder() throws InterruptedException {
+        final JobEventChannel smallChannel = new JobEventChannel(1024);
+        final int JOBS = 200;
+        final Job[] jobs = new Job[JOBS];
+        for (int i = 0; i < JOBS; i++) {
+            jobs[i] = new Job(i + 1, JobType.ENCODING, new Model(), bridge);
+            smallChannel.register(jobs[i]);
+        }
+
+        final List<Job> delivered = new CopyOnWriteArrayList<>();
+        final Thread publisher = new Thread(() -> {
+            for (int i = 1; i < JOBS; i++) {
+                smallChannel.publish(jobs[i], BridgeEvent.ENCODING_START);
+            }
+        });
+
+        smallChannel.publish(jobs[0], BridgeEvent.ENCODING_START);
+        smallChannel.drain((job, event) -> {
+            delivered.add(job);
+            if (job == jobs[0]) {
+                // Pumps events as a modal dialog would; far more than the buffer holds are published meanwhile
+                publisher.start();
+                await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> {
+                    assertEquals(0, smallChannel.drain((nestedJob, nestedEvent) -> delivered.add(nestedJob)));
+                    return !publisher.isAlive();
+                });
+            }
+        });
+        publisher.join();
+
+        assertEquals(Arrays.asList(jobs), delivered);
+        assertTrue(smallChannel.isEmpty());
+    }
+
+    @Test
+    public void completionShouldBeDispatchedImmediately() {
+        final Queue<Runnable> dispatched = new ConcurrentLinkedQueue<>();
+        control.deliverEventsTo(dispatched::add);
+
+        final Observer observer = mock(Observer.class);
+        control.registerObserver(observer);
+
+        final Job job = buildJob(JobType.ENCODING);
+        eventChannel.publish(job, BridgeEvent.ENCODING_SUCCESS);
+
+        assertEquals(1, dispatched.size());
+        dispatched.poll().run();
+
+        verify(observer, times(1)).onEncodingSuccess(job);
+    }
+
+    @Test
+    public void progressShouldBeDispatchedAtMostOncePerFrame() {
+        final Queue<Runnable> dispatched = new ConcurrentLinkedQueue<>();
+        final List<Long> dispatchTimesInNs = new CopyOnWriteArrayList<>();
+        control.deliverEventsTo(task -> {
+            dispatchTimesInNs.add(System.nanoTime());
+            dispatched.add(task);
+        });
+
+        final Observer observer = mock(Observer.class);
+        control.registerObserver(observer);
+
+        final Job first = registerJob(new Job(1, JobType.ENCODING, new Model(), bridge));
+        final Job second = registerJob(new Job(2, JobType.ENCODING, new Model(), bridge));
+        eventChannel.publishProgress(first);
+        eventChannel.publishProgress(second);
+
+        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> !dispatched.isEmpty());
+        assertEquals(1, dispatched.size());
+
+        final long drainTimeInNs = System.nanoTime();
+        dispatched.poll().run();
+
+        verify(observer, times(1)).onProgressUpdate(first);
+        verify(observer, times(1)).onProgressUpdate(second);
+
+        eventChannel.publishProgress(first);
+
+        await().atMost(Duration.ofSeconds(ASYNC_TIMEOUT_IN_SECONDS)).until(() -> !dispatched.isEmpty());
+        assertTrue(dispatchTimesInNs.get(1) - drainTimeInNs >= Control.FRAME_TIME_IN_NS);
     }
 
     @Test
@@ -316,13 +630,13 @@ public class ControlTest {
         final Observer observer = mock(Observer.class);
         control.registerObserver(observer);
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
-        eventQueue.add(BridgeEvent.ENCODING_FAILURE);
+        final Job job = buildJob(JobType.ENCODING);
+        eventChannel.publish(job, BridgeEvent.ENCODING_FAILURE);
 
         control.pollEvents();
 
-        assertTrue(eventQueue.isEmpty());
-        verify(observer, times(1)).onEncodingFailure();
+        assertTrue(eventChannel.isEmpty());
+        verify(observer, times(1)).onEncodingFailure(job);
         verify(model, times(1)).clearStatus();
     }
 
@@ -331,13 +645,13 @@ public class ControlTest {
         final Observer observer = mock(Observer.class);
         control.registerObserver(observer);
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
-        eventQueue.add(BridgeEvent.ENCODING_SUCCESS);
+        final Job job = buildJob(JobType.ENCODING);
+        eventChannel.publish(job, BridgeEvent.ENCODING_SUCCESS);
 
         control.pollEvents();
 
-        assertTrue(eventQueue.isEmpty());
-        verify(observer, times(1)).onEncodingSuccess();
+        assertTrue(eventChannel.isEmpty());
+        verify(observer, times(1)).onEncodingSuccess(job);
         verify(model, times(1)).clearStatus();
     }
 
@@ -346,13 +660,13 @@ public class ControlTest {
         final Observer observer = mock(Observer.class);
         control.registerObserver(observer);
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
-        eventQueue.add(BridgeEvent.DECODING_FAILURE);
+        final Job job = buildJob(JobType.DECODING);
+        eventChannel.publish(job, BridgeEvent.DECODING_FAILURE);
 
         control.pollEvents();
 
-        assertTrue(eventQueue.isEmpty());
-        verify(observer, times(1)).onDecodingFailure();
+        assertTrue(eventChannel.isEmpty());
+        verify(observer, times(1)).onDecodingFailure(job);
         verify(model, times(1)).clearStatus();
     }
 
@@ -361,35 +675,35 @@ public class ControlTest {
         final Observer observer = mock(Observer.class);
         control.registerObserver(observer);
 
-        final Queue<BridgeEvent> eventQueue = context.getEventQueue();
-        eventQueue.add(BridgeEvent.DECODING_SUCCESS);
+        final Job job = buildJob(JobType.DECODING);
+        eventChannel.publish(job, BridgeEvent.DECODING_SUCCESS);
 
         control.pollEvents();
 
-        assertTrue(eventQueue.isEmpty());
-        verify(observer, times(1)).onDecodingSuccess();
+        assertTrue(eventChannel.isEmpty());
+        verify(observer, times(1)).onDecodingSuccess(job);
         verify(model, times(1)).clearStatus();
     }
 
     @Test
-    public void shouldTerminateBridgeExecutorGracefully() throws NoSuchFieldException, InterruptedException, IllegalAccessException {
-        disableBridgeExecutor();
-        when(bridgeExecutor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
+    public void shouldTerminateJobExecutorGracefully() throws InterruptedException {
+        disableJobExecutor();
+        when(jobExecutor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
 
         control.close();
 
-        verify(bridgeExecutor, times(1)).awaitTermination(anyLong(), any(TimeUnit.class));
-        verify(bridgeExecutor, never()).shutdownNow();
+        verify(jobExecutor, times(1)).awaitTermination(anyLong(), any(TimeUnit.class));
+        verify(jobExecutor, never()).shutdownNow();
     }
 
     @Test
-    public void shouldTerminateBridgeIfShutdownTimeouts() throws NoSuchFieldException, InterruptedException, IllegalAccessException {
-        disableBridgeExecutor();
-        when(bridgeExecutor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(false);
+    public void shouldTerminateJobExecutorIfShutdownTimeouts() throws InterruptedException {
+        disableJobExecutor();
+        when(jobExecutor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(false);
 
         control.close();
 
-        verify(bridgeExecutor, times(1)).awaitTermination(anyLong(), any(TimeUnit.class));
-        verify(bridgeExecutor, times(1)).shutdownNow();
+        verify(jobExecutor, times(1)).awaitTermination(anyLong(), any(TimeUnit.class));
+        verify(jobExecutor, times(1)).shutdownNow();
     }
 }
@@ -0,0 +1,172 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.control;
+
+import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.common.Observer;
+import com.afermiano.ecmgui.control.bridge.JavaBridge;
+import com.afermiano.ecmgui.ecm.SyntheticImageGenerator;
+import com.afermiano.ecmgui.model.ModelSnapshot;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+// Synthetic images encoded and decoded through Control; the CRCs pin both the generator and the ECM output
+public class GoldenRoundTripTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Context context;
+    private Control control;
+    // Taken when the job finishes, as Control clears the counts right after notifying
+    private final Map<Job, ModelSnapshot> finishedJobs = new ConcurrentHashMap<>();
+
+    @Before
+    public void setup() {
+        context = new Context();
+        context.setBridgeFactory(JavaBridge::new);
+
+        control = new Control(context);
+        context.setControl(control);
+        control.registerObserver(new Observer() {
+            @Override
+            public void onEncodingSuccess(Job job) {
+                finish(job);
+            }
+
+            @Override
+            public void onDecodingSuccess(Job job) {
+                finish(job);
+            }
+
+            @Override
+            public void onEncodingFailure(Job job) {
+                finish(job);
+            }
+
+            @Override
+            public void onDecodingFailure(Job job) {
+                finish(job);
+            }
+        });
+    }
+
+    private void finish(Job job) {
+        finishedJobs.put(job, job.getModel().getSnapshot());
+    }
+
+    @After
+    public void tearDown() {
+        control.close();
+    }
+
+    private ModelSnapshot awaitCompletion(Job job) {
+        await().atMost(Duration.ofSeconds(ControlTest.ASYNC_TIMEOUT_IN_SECONDS)).until(() -> {
+            control.pollEvents();
+            return finishedJobs.containsKey(job);
+        });
+
+        final ModelSnapshot snapshot = finishedJobs.get(job);
+        assertEquals(snapshot.getFailureReason() + "", State.COMPLETED, snapshot.getState());
+
+        return snapshot;
+    }
+
+    private static long crc32(File file) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(file.toPath()));
+
+        return crc.getValue();
+    }
+
+    private void assertRoundTrip(SyntheticImageGenerator generator, long imageCrc, long ecmCrc) throws IOException {
+        final File image = new File(temporaryFolder.getRoot(), "image.bin");
+        final File ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm");
+        final File decoded = new File(temporaryFolder.getRoot(), "decoded.bin");
+
+        final SyntheticImageGenerator.Result expected = generator.write(image.toPath());
+        assertEquals(expected.getImageBytes(), image.length());
+        assertEquals(imageCrc, crc32(image));
+
+        final ModelSnapshot encoding = awaitCompletion(control.submitEncoding(image.getPath(), ecm.getPath()));
+        assertEquals(expected.getLiteralBytes(), encoding.getLiteralBytes());
+        assertEquals(expected.getMode1Sectors(), encoding.getMode1Sectors());
+        assertEquals(expected.getMode2Form1Sectors(), encoding.getMode2Form1Sectors());
+        assertEquals(expected.getMode2Form2Sectors(), encoding.getMode2Form2Sectors());
+        assertEquals(expected.getImageBytes(), encoding.getBytesBeforeProcessing());
+        assertEquals(ecm.length(), encoding.getBytesAfterProcessing());
+        assertEquals(ecmCrc, crc32(ecm));
+        assertEquals(2 * expected.getImageBytes(), encoding.getBytesRead());
+        assertEquals(ecm.length(), encoding.getBytesWritten());
+
+        final ModelSnapshot decoding = awaitCompletion(control.submitDecoding(ecm.getPath(), decoded.getPath()));
+        assertEquals(expected.getImageBytes(), decoding.getBytesAfterProcessing());
+        assertEquals(ecm.length(), decoding.getBytesRead());
+        assertArrayEquals(Files.readAllBytes(image.toPath()), Files.readAllBytes(decoded.toPath()));
+    }
+
+    @Test
+    public void mode1DataTrackShouldRoundTrip() throws IOException {
+        assertRoundTrip(SyntheticImageGenerator.builder()
+                .seed(1)
+                .sectorCount(300)
+                .build(), 2214849925L, 632442277L);
+    }
+
+    @Test
+    public void xaImageShouldRoundTrip() throws IOException {
+        assertRoundTrip(SyntheticImageGenerator.builder()
+                .seed(2)
+                .sectorCount(400)
+                .mode1Weight(0)
+                .mode2Form1Weight(3)
+                .mode2Form2Weight(1)
+                .maxRunLength(8)
+                .build(), 4213874263L, 3698910200L);
+    }
+
+    @Test
+    public void mixedImageShouldRoundTrip() throws IOException {
+        assertRoundTrip(SyntheticImageGenerator.builder()
+                .seed(3)
+                .sectorCount(600)
+                .mode1Weight(4)
+                .mode2Form1Weight(2)
+                .mode2Form2Weight(1)
+                .literalWeight(1)
+                .maxRunLength(16)
+                .trailingBytes(1000)
+                .build(), 2821877705L, 72714517L);
+    }
+}
@@ -0,0 +1,63 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.control.bridge;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveStepSizerTest {
+    private static final long TARGET_STEP_TIME_IN_NS = 100;
+
+    private final AdaptiveStepSizer stepSizer = new AdaptiveStepSizer(TARGET_STEP_TIME_IN_NS);
+
+    @Test
+    public void whenStepsAreFaster_thenGrowsUpToTheLimit() {
+        stepSizer.record(TARGET_STEP_TIME_IN_NS / 10);
+        assertEquals(AdaptiveStepSizer.INITIAL_STEP_IN_BYTES * 2, stepSizer.getStepInBytes());
+
+        for (int i = 0; i < 20; i++) {
+            stepSizer.record(0);
+        }
+        assertEquals(AdaptiveStepSizer.MAX_STEP_IN_BYTES, stepSizer.getStepInBytes());
+    }
+
+    @Test
+    public void whenStepsAreSlower_thenShrinksDownToTheLimit() {
+        stepSizer.record(TARGET_STEP_TIME_IN_NS * 10);
+        assertEquals(AdaptiveStepSizer.INITIAL_STEP_IN_BYTES / 2, stepSizer.getStepInBytes());
+
+        for (int i = 0; i < 20; i++) {
+            stepSizer.record(Long.MAX_VALUE);
+        }
+        assertEquals(AdaptiveStepSizer.MIN_STEP_IN_BYTES, stepSizer.getStepInBytes());
+    }
+
+    @Test
+    public void whenStepsHitTheTarget_thenKeepsTheSize() {
+        stepSizer.record(TARGET_STEP_TIME_IN_NS * 4);
+        final int stepInBytes = stepSizer.getStepInBytes();
+
+        stepSizer.record(TARGET_STEP_TIME_IN_NS);
+        assertEquals(stepInBytes, stepSizer.getStepInBytes());
+
+        stepSizer.reset();
+        assertEquals(AdaptiveStepSizer.INITIAL_STEP_IN_BYTES, stepSizer.getStepInBytes());
+    }
+}
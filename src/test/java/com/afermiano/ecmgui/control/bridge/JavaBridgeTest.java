@@ -0,0 +1,70 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.control.bridge;
+
+import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.control.Control;
+import com.afermiano.ecmgui.model.Model;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class JavaBridgeTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Model model = new Model();
+    private Control control;
+    private JavaBridge bridge;
+
+    @Before
+    public void setup() {
+        final Context context = new Context();
+        control = mock(Control.class);
+        context.setControl(control);
+
+        bridge = new JavaBridge(context, model);
+    }
+
+    @Test
+    public void prepareShouldReportFailuresInsteadOfThrowing() {
+        final String missing = new File(temporaryFolder.getRoot(), "missing").getPath();
+        final String output = new File(temporaryFolder.getRoot(), "output").getPath();
+
+        assertEquals(FailureReason.ERROR_OPENING_INPUT_FILE, bridge.prepareEncoding(missing, output));
+        assertEquals(FailureReason.ERROR_OPENING_INPUT_FILE, bridge.prepareDecoding(missing, output));
+        assertEquals(FailureReason.ERROR_OPENING_INPUT_FILE, bridge.prepareVerification(missing));
+    }
+
+    @Test
+    public void stepsWithoutPreparedEngineShouldFail() {
+        bridge.encode();
+        bridge.decode();
+
+        verify(control, times(2)).setFailure(model, FailureReason.ERROR_OPENING_INPUT_FILE);
+    }
+}
@@ -0,0 +1,64 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EccEdcTest {
+
+    @Test
+    public void combinedEdcShouldMatchContinuousEdc() {
+        final byte[] data = new byte[100_000];
+        new Random(7).nextBytes(data);
+
+        final int expected = EccEdc.computeEdc(0, data, 0, data.length);
+
+        for (int split : new int[]{0, 1, 2351, 50_000, data.length}) {
+            final int first = EccEdc.computeEdc(0, data, 0, split);
+            final int second = EccEdc.computeEdc(0, data, split, data.length - split);
+
+            assertEquals(expected, EccEdc.combineEdc(first, second, data.length - split));
+        }
+    }
+
+    @Test
+    public void generatedSectorsShouldBeRecognized() {
+        for (SectorType type : new SectorType[]{SectorType.MODE_1, SectorType.MODE_2_FORM_1, SectorType.MODE_2_FORM_2}) {
+            final byte[] sector = TestSectors.buildSector(type, 3);
+            final int offset = type == SectorType.MODE_1 ? 0 : 0x10;
+
+            assertEquals(type, SectorClassifier.classify(sector, offset, sector.length - offset));
+        }
+    }
+
+    @Test
+    public void eccShouldMatchGeneratedParity() {
+        final byte[] sector = TestSectors.buildSector(SectorType.MODE_1, 5);
+
+        assertTrue(EccEdc.checkEcc(sector, EccEdc.ADDRESS_OFFSET, 0x10, EccEdc.P_PARITY_OFFSET));
+        sector[0x20] ^= 0x40;
+        assertFalse(EccEdc.checkEcc(sector, EccEdc.ADDRESS_OFFSET, 0x10, EccEdc.P_PARITY_OFFSET));
+    }
+}
@@ -0,0 +1,259 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.ImageHashes;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class EcmDecoderTest {
+    private static final int STEP_IN_BYTES = 4096;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File image;
+    private File ecm;
+    private File decoded;
+
+    @Before
+    public void setup() throws IOException {
+        image = new File(temporaryFolder.getRoot(), "image.bin");
+        ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm");
+        decoded = new File(temporaryFolder.getRoot(), "decoded.bin");
+    }
+
+    private Progress encode(byte[] content) throws IOException {
+        Files.write(image.toPath(), content);
+
+        final Progress progress = new Progress();
+        try (EcmEncoder encoder = new EcmEncoder(image.getPath(), ecm.getPath(), STEP_IN_BYTES, progress)) {
+            assertEquals(FailureReason.SUCCESS, encoder.prepare());
+            while (progress.getState() == State.IN_PROGRESS) {
+                encoder.encode();
+            }
+        }
+        assertEquals(State.COMPLETED, progress.getState());
+
+        return progress;
+    }
+
+    private Progress decode() {
+        return decode(ForkJoinPool.commonPool());
+    }
+
+    private Progress decode(ForkJoinPool pool) {
+        return decode(decoded.getPath(), pool);
+    }
+
+    private Progress decode(String outputFileName, ForkJoinPool pool) {
+        final Progress progress = new Progress();
+        try (EcmDecoder decoder = new EcmDecoder(ecm.getPath(), outputFileName, STEP_IN_BYTES, progress, pool)) {
+            final FailureReason failureReason = decoder.prepare();
+            if (failureReason != FailureReason.SUCCESS) {
+                progress.fail(failureReason);
+                return progress;
+            }
+            while (progress.getState() == State.IN_PROGRESS) {
+                decoder.decode();
+            }
+        }
+
+        return progress;
+    }
+
+    @Test
+    public void shouldRestoreMixedImage() throws IOException {
+        final byte[] sectors = TestSectors.buildImage(
+                SectorType.MODE_1, SectorType.MODE_1, SectorType.LITERAL,
+                SectorType.MODE_2_FORM_1, SectorType.MODE_2_FORM_2, SectorType.MODE_2_FORM_1,
+                SectorType.MODE_1, SectorType.LITERAL);
+        final byte[] content = Arrays.copyOf(sectors, sectors.length + 3 * EcmFormat.SECTOR_SIZE + 100);
+        final Progress encodingProgress = encode(content);
+        assertEquals(3, encodingProgress.getMode1Sectors());
+        assertEquals(5, encodingProgress.getMode2Form1Sectors());
+        assertEquals(1, encodingProgress.getMode2Form2Sectors());
+        assertEquals(2 * EcmFormat.SECTOR_SIZE + 3 * 16 + 148, encodingProgress.getLiteralBytes());
+
+        final Progress progress = decode();
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertEquals(content.length, progress.getBytesAfterProcessing());
+        assertEquals(ecm.length(), progress.getBytesBeforeProcessing());
+        assertArrayEquals(content, Files.readAllBytes(decoded.toPath()));
+    }
+
+    @Test
+    public void shouldRestoreImageDecodedInParallelRanges() throws IOException {
+        final SectorType[] types = new SectorType[500];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SectorType.values()[(i / 11) % SectorType.values().length];
+        }
+        final byte[] content = TestSectors.buildImage(types);
+        encode(content);
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        final Progress progress;
+        try {
+            progress = decode(pool);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertArrayEquals(content, Files.readAllBytes(decoded.toPath()));
+    }
+
+    @Test
+    public void verificationShouldCheckWithoutWritingOutput() throws IOException {
+        final byte[] content = TestSectors.buildImage(SectorType.MODE_1, SectorType.MODE_2_FORM_2, SectorType.LITERAL);
+        encode(content);
+
+        final Progress progress = decode(null, ForkJoinPool.commonPool());
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertEquals(content.length, progress.getBytesAfterProcessing());
+        assertFalse(decoded.exists());
+
+        final byte[] ecmContent = Files.readAllBytes(ecm.toPath());
+        ecmContent[EcmFormat.MAGIC.length + 10] ^= 0x01;
+        Files.write(ecm.toPath(), ecmContent);
+
+        assertEquals(FailureReason.ERROR_IN_CHECKSUM, decode(null, ForkJoinPool.commonPool()).getFailureReason());
+    }
+
+    @Test
+    public void shouldHashImageAsItIsEncodedAndDecoded() throws IOException {
+        final SectorType[] types = new SectorType[700];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SectorType.values()[(i / 7) % SectorType.values().length];
+        }
+        final byte[] content = TestSectors.buildImage(types);
+        final ImageHasher hasher = new ImageHasher();
+        hasher.update(content, 0, content.length);
+        final ImageHashes expected = hasher.finish();
+
+        assertEquals(expected, encode(content).getImageHashes());
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, decode(pool).getImageHashes());
+            assertEquals(expected, decode(null, pool).getImageHashes());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldRestoreEmptyImage() throws IOException {
+        encode(new byte[0]);
+
+        final Progress progress = decode();
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertEquals(0, decoded.length());
+    }
+
+    @Test
+    public void shouldDetectChecksumMismatch() throws IOException {
+        encode(TestSectors.buildImage(SectorType.MODE_1, SectorType.LITERAL));
+        final byte[] content = Files.readAllBytes(ecm.toPath());
+        content[content.length - 1] ^= 0x01;
+        Files.write(ecm.toPath(), content);
+
+        assertEquals(FailureReason.ERROR_IN_CHECKSUM, decode().getFailureReason());
+    }
+
+    @Test
+    public void shouldRejectTruncatedFile() throws IOException {
+        encode(TestSectors.buildImage(SectorType.MODE_1, SectorType.LITERAL));
+        final byte[] content = Files.readAllBytes(ecm.toPath());
+        Files.write(ecm.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        assertEquals(FailureReason.INVALID_ECM_FILE, decode().getFailureReason());
+    }
+
+    @Test
+    public void shouldRejectFileWithoutMagic() throws IOException {
+        Files.write(ecm.toPath(), new byte[]{'E', 'C', 'X', 0, 0});
+
+        assertEquals(FailureReason.INVALID_ECM_FILE, decode().getFailureReason());
+    }
+
+    @Test
+    public void shouldResumeFromLastCheckpointUnlessTheOutputChanged() throws IOException {
+        final SectorType[] types = new SectorType[300];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SectorType.values()[(i / 13) % SectorType.values().length];
+        }
+        final byte[] content = TestSectors.buildImage(types);
+        final ImageHashes expected = encode(content).getImageHashes();
+
+        for (boolean tampered : new boolean[]{false, true}) {
+            // Stopped at the first checkpoint, as if the process had been killed; a single thread decodes in small steps
+            final Progress stopped = new Progress();
+            final ForkJoinPool pool = new ForkJoinPool(1);
+            try (EcmDecoder decoder = new EcmDecoder(ecm.getPath(), decoded.getPath(), STEP_IN_BYTES, stopped, pool)) {
+                decoder.setCheckpointIntervalInBytes(STEP_IN_BYTES);
+                assertEquals(FailureReason.SUCCESS, decoder.prepare());
+                while (stopped.getState() == State.IN_PROGRESS && !decoder.isResumable()) {
+                    decoder.decode();
+                }
+                assertEquals(State.IN_PROGRESS, stopped.getState());
+            } finally {
+                pool.shutdownNow();
+            }
+            if (tampered) {
+                try (RandomAccessFile file = new RandomAccessFile(decoded, "rw")) {
+                    file.seek(10);
+                    file.write(0x55);
+                }
+            }
+
+            final Progress progress = new Progress();
+            try (EcmDecoder decoder = new EcmDecoder(ecm.getPath(), decoded.getPath(), STEP_IN_BYTES, progress)) {
+                decoder.setCheckpointIntervalInBytes(STEP_IN_BYTES);
+                assertEquals(FailureReason.SUCCESS, decoder.prepare());
+                while (progress.getState() == State.IN_PROGRESS) {
+                    decoder.decode();
+                }
+            }
+
+            assertEquals(State.COMPLETED, progress.getState());
+            assertArrayEquals(content, Files.readAllBytes(decoded.toPath()));
+            assertEquals(expected, progress.getImageHashes());
+            assertFalse(CheckpointFile.sidecarOf(decoded.toPath()).toFile().exists());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EcmEncoderTest {
+    private static final int STEP_IN_BYTES = 4096;
+    private static final byte[] END_OF_RECORDS = {(byte) 0xFC, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x3F};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Progress encode(byte[] content) throws IOException {
+        return encode(content, ForkJoinPool.commonPool(), "output.ecm");
+    }
+
+    private Progress encode(byte[] content, ForkJoinPool pool, String outputName) throws IOException {
+        final File input = new File(temporaryFolder.getRoot(), "input.bin");
+        Files.write(input.toPath(), content);
+
+        final Progress progress = new Progress();
+        try (EcmEncoder encoder = new EcmEncoder(input.getPath(), new File(temporaryFolder.getRoot(), outputName).getPath(), STEP_IN_BYTES, progress, pool)) {
+            assertEquals(FailureReason.SUCCESS, encoder.prepare());
+
+            while (progress.getState() == State.IN_PROGRESS) {
+                encoder.encode();
+            }
+        }
+
+        return progress;
+    }
+
+    private byte[] readOutput() throws IOException {
+        return Files.readAllBytes(new File(temporaryFolder.getRoot(), "output.ecm").toPath());
+    }
+
+    @Test
+    public void shouldEncodeEmptyFile() throws IOException {
+        final Progress progress = encode(new byte[0]);
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertArrayEquals(new byte[]{'E', 'C', 'M', 0, (byte) 0xFC, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x3F, 0, 0, 0, 0}, readOutput());
+        assertEquals(13, progress.getBytesAfterProcessing());
+    }
+
+    @Test
+    public void shouldEncodeZerosAsMode2Form1Sectors() throws IOException {
+        final int literalBytes = 32;
+        final Progress progress = encode(new byte[2 * SectorType.MODE_2_FORM_1.getRawSize() + literalBytes]);
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertEquals(2, progress.getMode2Form1Sectors());
+        assertEquals(literalBytes, progress.getLiteralBytes());
+
+        final byte[] output = readOutput();
+        final int payloadEnd = 4 + 1 + 2 * SectorType.MODE_2_FORM_1.getEncodedSize();
+        assertEquals(0x06, output[4]);
+        assertEquals(0x7C, output[payloadEnd]);
+        assertEquals(payloadEnd + 1 + literalBytes + END_OF_RECORDS.length + EcmFormat.CHECKSUM_SIZE, output.length);
+        assertArrayEquals(END_OF_RECORDS, Arrays.copyOfRange(output, payloadEnd + 1 + literalBytes, payloadEnd + 1 + literalBytes + END_OF_RECORDS.length));
+    }
+
+    @Test
+    public void shouldEncodeMode1Sectors() throws IOException {
+        final int sectors = 5;
+        final byte[] content = TestSectors.buildImage(SectorType.MODE_1, SectorType.MODE_1, SectorType.MODE_1, SectorType.MODE_1, SectorType.MODE_1);
+
+        final Progress progress = encode(content);
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertEquals(sectors, progress.getMode1Sectors());
+        assertEquals(0, progress.getLiteralBytes());
+        assertEquals(content.length, progress.getBytesBeforeProcessing());
+
+        final byte[] output = readOutput();
+        assertEquals(((sectors - 1) << 2) | SectorType.MODE_1.getCode(), output[4]);
+        assertEquals(4 + 1 + sectors * SectorType.MODE_1.getEncodedSize() + END_OF_RECORDS.length + EcmFormat.CHECKSUM_SIZE, output.length);
+
+        final int checksum = EccEdc.computeEdc(0, content, 0, content.length);
+        final byte[] expectedChecksum = new byte[EcmFormat.CHECKSUM_SIZE];
+        EcmFormat.writeChecksum(expectedChecksum, 0, checksum);
+        assertArrayEquals(expectedChecksum, Arrays.copyOfRange(output, output.length - EcmFormat.CHECKSUM_SIZE, output.length));
+    }
+
+    @Test
+    public void parallelEncodingShouldMatchSingleThreadEncoding() throws IOException {
+        final SectorType[] types = new SectorType[300];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SectorType.values()[(i / 7) % SectorType.values().length];
+        }
+        final byte[] content = TestSectors.buildImage(types);
+
+        final ForkJoinPool singleThread = new ForkJoinPool(1);
+        final ForkJoinPool multipleThreads = new ForkJoinPool(4);
+        try {
+            encode(content, singleThread, "single.ecm");
+            encode(content, multipleThreads, "parallel.ecm");
+        } finally {
+            singleThread.shutdownNow();
+            multipleThreads.shutdownNow();
+        }
+
+        assertArrayEquals(Files.readAllBytes(new File(temporaryFolder.getRoot(), "single.ecm").toPath()),
+                Files.readAllBytes(new File(temporaryFolder.getRoot(), "parallel.ecm").toPath()));
+    }
+
+    @Test
+    public void shouldKeepCorruptedSectorsAsLiteralBytes() throws IOException {
+        final byte[] content = TestSectors.buildSector(SectorType.MODE_1, 1);
+        content[0x100] ^= 0x01;
+
+        final Progress progress = encode(content);
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertEquals(0, progress.getMode1Sectors());
+        assertEquals(content.length, progress.getLiteralBytes());
+    }
+
+    @Test
+    public void shouldFailIfInputIsMissing() {
+        final Progress progress = new Progress();
+        final EcmEncoder encoder = new EcmEncoder(new File(temporaryFolder.getRoot(), "missing.bin").getPath(), new File(temporaryFolder.getRoot(), "output.ecm").getPath(), STEP_IN_BYTES, progress);
+
+        assertEquals(FailureReason.ERROR_OPENING_INPUT_FILE, encoder.prepare());
+    }
+
+    // Steps cover at least ParallelEncoder.MIN_SEGMENT_SECTORS per thread, so a small pool leaves room for several checkpoints
+    private int steps;
+
+    private Progress encodeWithCheckpoints(File input, File output, boolean stopAtFirstCheckpoint) {
+        final Progress progress = new Progress();
+        steps = 0;
+        final ForkJoinPool pool = new ForkJoinPool(1);
+        try (EcmEncoder encoder = new EcmEncoder(input.getPath(), output.getPath(), STEP_IN_BYTES, progress, pool)) {
+            encoder.setCheckpointIntervalInBytes(STEP_IN_BYTES);
+            assertEquals(FailureReason.SUCCESS, encoder.prepare());
+            while (progress.getState() == State.IN_PROGRESS && !(stopAtFirstCheckpoint && encoder.isResumable())) {
+                encoder.encode();
+                steps++;
+            }
+            if (stopAtFirstCheckpoint) {
+                assertTrue(encoder.isResumable());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return progress;
+    }
+
+    @Test
+    public void shouldResumeFromLastCheckpoint() throws IOException {
+        final SectorType[] types = new SectorType[300];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SectorType.values()[(i / 13) % SectorType.values().length];
+        }
+        final byte[] content = TestSectors.buildImage(types);
+        final Progress expected = encode(content);
+        final File input = new File(temporaryFolder.getRoot(), "input.bin");
+        final File output = new File(temporaryFolder.getRoot(), "resumed.ecm");
+
+        encodeWithCheckpoints(input, output, false);
+        final int fullSteps = steps;
+        // Stopped early, as if the process had been killed
+        encodeWithCheckpoints(input, output, true);
+        final Progress progress = encodeWithCheckpoints(input, output, false);
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertArrayEquals(readOutput(), Files.readAllBytes(output.toPath()));
+        assertEquals(expected.getImageHashes(), progress.getImageHashes());
+        assertEquals(expected.getBytesAfterProcessing(), progress.getBytesAfterProcessing());
+        // Neither the analysis nor the encoded part were done again
+        assertTrue(steps < fullSteps);
+        assertFalse(CheckpointFile.sidecarOf(output.toPath()).toFile().exists());
+    }
+
+    @Test
+    public void shouldNotResumeForAnotherInput() throws IOException {
+        final SectorType[] types = new SectorType[300];
+        Arrays.fill(types, SectorType.MODE_1);
+        final File input = new File(temporaryFolder.getRoot(), "input.bin");
+        final File output = new File(temporaryFolder.getRoot(), "output.ecm");
+        Files.write(input.toPath(), TestSectors.buildImage(types));
+
+        encodeWithCheckpoints(input, output, true);
+        assertTrue(CheckpointFile.sidecarOf(output.toPath()).toFile().exists());
+
+        Arrays.fill(types, SectorType.MODE_2_FORM_1);
+        Files.write(input.toPath(), TestSectors.buildImage(types));
+        final Progress progress = encodeWithCheckpoints(input, output, false);
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertEquals(0, progress.getMode1Sectors());
+        assertEquals(types.length, progress.getMode2Form1Sectors());
+    }
+}
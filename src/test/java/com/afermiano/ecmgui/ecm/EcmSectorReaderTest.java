@@ -0,0 +1,156 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import com.afermiano.ecmgui.util.AtomicFiles;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EcmSectorReaderTest {
+    private static final int STEP_IN_BYTES = 4096;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private byte[] content;
+    private Path ecm;
+
+    @Before
+    public void setup() throws IOException {
+        final SectorType[] types = new SectorType[300];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SectorType.values()[(i / 5) % SectorType.values().length];
+        }
+        final byte[] sectors = TestSectors.buildImage(types);
+        content = Arrays.copyOf(sectors, sectors.length + 1000);
+
+        final File image = new File(temporaryFolder.getRoot(), "image.bin");
+        ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm").toPath();
+        Files.write(image.toPath(), content);
+
+        final Progress progress = new Progress();
+        try (EcmEncoder encoder = new EcmEncoder(image.getPath(), ecm.toString(), STEP_IN_BYTES, progress)) {
+            assertEquals(FailureReason.SUCCESS, encoder.prepare());
+            while (progress.getState() == State.IN_PROGRESS) {
+                encoder.encode();
+            }
+        }
+        assertEquals(State.COMPLETED, progress.getState());
+    }
+
+    @Test
+    public void shouldReadEverySectorWithoutDecodingTheImage() throws EcmException, IOException {
+        try (EcmSectorReader reader = EcmSectorReader.open(ecm)) {
+            assertEquals(content.length, reader.getImageLength());
+
+            final byte[] sector = new byte[EcmFormat.SECTOR_SIZE];
+            for (long i = reader.getSectorCount() - 1; i >= 0; i--) {
+                final int length = reader.readSector(i, sector, 0);
+                final int start = (int) (i * EcmFormat.SECTOR_SIZE);
+
+                assertArrayEquals(Arrays.copyOfRange(content, start, start + length), Arrays.copyOf(sector, length));
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadArbitraryRanges() throws EcmException, IOException {
+        final Random random = new Random(1);
+
+        try (EcmSectorReader reader = EcmSectorReader.open(ecm)) {
+            for (int i = 0; i < 200; i++) {
+                final int position = random.nextInt(content.length);
+                final byte[] buffer = new byte[random.nextInt(3 * EcmFormat.SECTOR_SIZE)];
+
+                final int length = reader.read(position, buffer, 0, buffer.length);
+
+                assertEquals(Math.min(buffer.length, content.length - position), length);
+                assertArrayEquals(Arrays.copyOfRange(content, position, position + length), Arrays.copyOf(buffer, length));
+            }
+
+            assertEquals(-1, reader.read(content.length, new byte[1], 0, 1));
+        }
+    }
+
+    @Test
+    public void shouldRebuildStaleSidecar() throws EcmException, IOException {
+        EcmSectorReader.open(ecm).close();
+        final Path sidecar = RecordIndexFile.sidecarOf(ecm);
+        assertTrue(Files.isRegularFile(sidecar));
+        final byte[] written = Files.readAllBytes(sidecar);
+
+        Files.setLastModifiedTime(ecm, FileTime.fromMillis(Files.getLastModifiedTime(ecm).toMillis() - 10_000));
+        assertNull(RecordIndexFile.load(ecm));
+
+        try (EcmSectorReader reader = EcmSectorReader.open(ecm)) {
+            assertEquals(content.length, reader.getImageLength());
+        }
+        assertNotEquals(Arrays.toString(written), Arrays.toString(Files.readAllBytes(sidecar)));
+        assertEquals(content.length, RecordIndexFile.load(ecm).getOutputLength());
+    }
+
+    @Test
+    public void shouldSaveTheSameSidecarConcurrently() throws Exception {
+        EcmSectorReader.open(ecm).close();
+        final RecordIndex index = RecordIndexFile.load(ecm);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> saves = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                saves.add(executor.submit(() -> {
+                    RecordIndexFile.save(index, ecm);
+                    return null;
+                }));
+            }
+            for (Future<?> save : saves) {
+                save.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(content.length, RecordIndexFile.load(ecm).getOutputLength());
+        try (Stream<Path> files = Files.list(temporaryFolder.getRoot().toPath())) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(AtomicFiles.TEMPORARY_EXTENSION)));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.ImageHashes;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EcmStreamDecoderTest {
+    private static final int STEP_IN_BYTES = 4096;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+
+    private byte[] encode(byte[] content) throws IOException {
+        final File image = new File(temporaryFolder.getRoot(), "image.bin");
+        final File ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm");
+        Files.write(image.toPath(), content);
+
+        final Progress progress = new Progress();
+        try (EcmEncoder encoder = new EcmEncoder(image.getPath(), ecm.getPath(), STEP_IN_BYTES, progress)) {
+            assertEquals(FailureReason.SUCCESS, encoder.prepare());
+            while (progress.getState() == State.IN_PROGRESS) {
+                encoder.encode();
+            }
+        }
+        assertEquals(State.COMPLETED, progress.getState());
+
+        return Files.readAllBytes(ecm.toPath());
+    }
+
+    // Channels over plain streams are not seekable and have no known length, like a pipe
+    private Progress decode(byte[] ecm) {
+        final Progress progress = new Progress();
+        try (EcmStreamDecoder decoder = new EcmStreamDecoder(Channels.newChannel(new ByteArrayInputStream(ecm)), Channels.newChannel(decoded), STEP_IN_BYTES, progress)) {
+            final FailureReason failureReason = decoder.prepare();
+            if (failureReason != FailureReason.SUCCESS) {
+                progress.fail(failureReason);
+                return progress;
+            }
+            while (progress.getState() == State.IN_PROGRESS) {
+                decoder.decode();
+            }
+        }
+
+        return progress;
+    }
+
+    @Test
+    public void shouldRestoreMixedImage() throws IOException {
+        final SectorType[] types = new SectorType[200];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SectorType.values()[(i / 7) % SectorType.values().length];
+        }
+        final byte[] sectors = TestSectors.buildImage(types);
+        final byte[] content = Arrays.copyOf(sectors, sectors.length + 100);
+        final byte[] ecm = encode(content);
+
+        final Progress progress = decode(ecm);
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertEquals(ecm.length, progress.getBytesBeforeProcessing());
+        assertEquals(content.length, progress.getBytesAfterProcessing());
+        assertEquals(content.length, progress.getBytesWritten());
+        assertArrayEquals(content, decoded.toByteArray());
+        assertEquals(hash(content), progress.getImageHashes());
+    }
+
+    private static ImageHashes hash(byte[] content) {
+        final ImageHasher hasher = new ImageHasher();
+        hasher.update(content, 0, content.length);
+
+        return hasher.finish();
+    }
+
+    @Test
+    public void shouldRestoreEmptyImage() throws IOException {
+        final Progress progress = decode(encode(new byte[0]));
+
+        assertEquals(State.COMPLETED, progress.getState());
+        assertEquals(0, decoded.size());
+    }
+
+    @Test
+    public void shouldDetectChecksumMismatch() throws IOException {
+        final byte[] ecm = encode(TestSectors.buildImage(SectorType.MODE_1, SectorType.LITERAL));
+        ecm[ecm.length - 1] ^= 0x01;
+
+        assertEquals(FailureReason.ERROR_IN_CHECKSUM, decode(ecm).getFailureReason());
+    }
+
+    @Test
+    public void shouldRejectTruncatedStream() throws IOException {
+        final byte[] ecm = encode(TestSectors.buildImage(SectorType.MODE_1, SectorType.LITERAL));
+
+        assertEquals(FailureReason.INVALID_ECM_FILE, decode(Arrays.copyOf(ecm, ecm.length / 2)).getFailureReason());
+    }
+
+    @Test
+    public void shouldRejectStreamWithoutMagic() {
+        assertEquals(FailureReason.INVALID_ECM_FILE, decode(new byte[]{'E', 'C', 'X', 0, 0}).getFailureReason());
+    }
+}
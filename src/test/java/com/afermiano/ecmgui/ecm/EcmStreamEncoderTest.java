@@ -0,0 +1,137 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.ImageHashes;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EcmStreamEncoderTest {
+    private static final int STEP_IN_BYTES = 4096;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private byte[] encodeInTwoPasses(byte[] content) throws IOException {
+        final File image = new File(temporaryFolder.getRoot(), "image.bin");
+        final File ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm");
+        Files.write(image.toPath(), content);
+
+        final Progress progress = new Progress();
+        try (EcmEncoder encoder = new EcmEncoder(image.getPath(), ecm.getPath(), STEP_IN_BYTES, progress)) {
+            assertEquals(FailureReason.SUCCESS, encoder.prepare());
+            while (progress.getState() == State.IN_PROGRESS) {
+                encoder.encode();
+            }
+        }
+        assertEquals(State.COMPLETED, progress.getState());
+
+        return Files.readAllBytes(ecm.toPath());
+    }
+
+    // Channels over plain streams are not seekable and have no known length, like a pipe
+    private Progress encode(byte[] content, ByteArrayOutputStream output) {
+        final Progress progress = new Progress();
+        try (EcmStreamEncoder encoder = new EcmStreamEncoder(Channels.newChannel(new ByteArrayInputStream(content)), Channels.newChannel(output), STEP_IN_BYTES, progress)) {
+            assertEquals(FailureReason.SUCCESS, encoder.prepare());
+            while (progress.getState() == State.IN_PROGRESS) {
+                encoder.encode();
+            }
+        }
+        assertEquals(State.COMPLETED, progress.getState());
+
+        return progress;
+    }
+
+    private byte[] decode(byte[] ecm) {
+        final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        final Progress progress = new Progress();
+        try (EcmStreamDecoder decoder = new EcmStreamDecoder(Channels.newChannel(new ByteArrayInputStream(ecm)), Channels.newChannel(decoded), STEP_IN_BYTES, progress)) {
+            assertEquals(FailureReason.SUCCESS, decoder.prepare());
+            while (progress.getState() == State.IN_PROGRESS) {
+                decoder.decode();
+            }
+        }
+        assertEquals(State.COMPLETED, progress.getState());
+
+        return decoded.toByteArray();
+    }
+
+    @Test
+    public void shouldMatchTwoPassEncoding() throws IOException {
+        final SectorType[] types = new SectorType[200];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SectorType.values()[(i / 7) % SectorType.values().length];
+        }
+        final byte[] sectors = TestSectors.buildImage(types);
+        final byte[] content = Arrays.copyOf(sectors, sectors.length + 100);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final Progress progress = encode(content, output);
+
+        assertArrayEquals(encodeInTwoPasses(content), output.toByteArray());
+        assertEquals(content.length, progress.getBytesBeforeProcessing());
+        assertEquals(output.size(), progress.getBytesAfterProcessing());
+        assertEquals(content.length, progress.getBytesRead());
+        assertEquals(hash(content), progress.getImageHashes());
+    }
+
+    private static ImageHashes hash(byte[] content) {
+        final ImageHasher hasher = new ImageHasher();
+        hasher.update(content, 0, content.length);
+
+        return hasher.finish();
+    }
+
+    @Test
+    public void shouldEncodeEmptyInput() {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        encode(new byte[0], output);
+
+        assertArrayEquals(new byte[]{'E', 'C', 'M', 0, (byte) 0xFC, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x3F, 0, 0, 0, 0}, output.toByteArray());
+    }
+
+    @Test
+    public void shouldSplitRunsLongerThanThePendingBuffer() {
+        final int sectors = 2 * EcmStreamEncoder.MAX_PENDING_PAYLOAD / SectorType.MODE_2_FORM_1.getEncodedSize();
+        final byte[] content = new byte[sectors * SectorType.MODE_2_FORM_1.getRawSize()];
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final Progress progress = encode(content, output);
+
+        assertEquals(sectors, progress.getMode2Form1Sectors());
+        assertTrue(output.size() < content.length);
+        assertArrayEquals(content, decode(output.toByteArray()));
+    }
+}
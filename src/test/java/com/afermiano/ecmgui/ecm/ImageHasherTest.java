@@ -0,0 +1,60 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import com.afermiano.ecmgui.model.ImageHashes;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class ImageHasherTest {
+
+    @Test
+    public void shouldMatchKnownDigests() {
+        final ImageHasher hasher = new ImageHasher();
+        final byte[] content = "abc".getBytes(StandardCharsets.US_ASCII);
+        hasher.update(content, 0, 1);
+        hasher.update(content, 1, 2);
+
+        assertEquals(new ImageHashes("352441c2", "900150983cd24fb0d6963f7d28e17f72", "a9993e364706816aba3e25717850c26c9cd0d89d"), hasher.finish());
+    }
+
+    @Test
+    public void concurrentUpdatesShouldMatchSequentialOnes() {
+        final byte[] content = new byte[3 * ImageHasher.MIN_CONCURRENT_LENGTH + 17];
+        new Random(42).nextBytes(content);
+
+        final ImageHasher sequential = new ImageHasher();
+        sequential.update(content, 0, content.length);
+
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            final ImageHasher concurrent = new ImageHasher(pool);
+            concurrent.update(content, 0, 100);
+            concurrent.update(content, 100, content.length - 100);
+
+            assertEquals(sequential.finish(), concurrent.finish());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.ecm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedWindowTest {
+    private static final int WINDOW_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldWriteBackEveryWindowAndReleaseTheFile() throws IOException {
+        final byte[] content = new byte[10 * WINDOW_SIZE + 123];
+        new Random(1).nextBytes(content);
+
+        final File file = temporaryFolder.newFile();
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(content.length);
+            final MappedWindow window = new MappedWindow(output.getChannel(), FileChannel.MapMode.READ_WRITE, content.length, WINDOW_SIZE);
+            for (int position = 0; position < content.length; position += 1000) {
+                window.put(position, content, position, Math.min(1000, content.length - position));
+            }
+            window.close();
+        }
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        // Nothing maps it anymore
+        assertTrue(file.delete());
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelAnalyzerTest {
+    private static final int THREADS = 4;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ForkJoinPool pool = new ForkJoinPool(THREADS);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private static byte[] buildShiftedImage() {
+        final SectorType[] pattern = {SectorType.MODE_1, SectorType.MODE_2_FORM_1, SectorType.MODE_2_FORM_2, SectorType.LITERAL};
+        final Random random = new Random(1);
+        final byte[] image = new byte[400 * EcmFormat.SECTOR_SIZE];
+
+        int position = 0;
+        int index = 0;
+        while (position + EcmFormat.SECTOR_SIZE + 100 <= image.length) {
+            // Odd sized garbage moves every following sector away from the chunk boundaries
+            final int garbage = random.nextInt(100);
+            for (int i = 0; i < garbage; i++) {
+                image[position++] = (byte) (random.nextInt(255) + 1);
+            }
+
+            final SectorType type = pattern[random.nextInt(pattern.length)];
+            System.arraycopy(TestSectors.buildSector(type, index++), 0, image, position, EcmFormat.SECTOR_SIZE);
+            position += EcmFormat.SECTOR_SIZE;
+        }
+
+        return image;
+    }
+
+    private static void assertSameRecords(RecordList expected, RecordList actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getType(i), actual.getType(i));
+            assertEquals(expected.getCount(i), actual.getCount(i));
+        }
+        for (SectorType type : SectorType.values()) {
+            assertEquals(expected.getTotal(type), actual.getTotal(type));
+        }
+    }
+
+    @Test
+    public void shouldMatchSequentialAnalysis() throws IOException {
+        final byte[] image = buildShiftedImage();
+        final File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), image);
+
+        final RecordList expected = new RecordList();
+        SectorAnalyzer.analyze(image, 0, 0, image.length, image.length, expected);
+
+        final RecordList actual = new RecordList();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ParallelAnalyzer analyzer = new ParallelAnalyzer(channel, image.length, pool);
+
+            long position = 0;
+            while (position < image.length) {
+                position = analyzer.analyze(position, 300 * 1024, actual);
+            }
+        }
+
+        assertSameRecords(expected, actual);
+    }
+}
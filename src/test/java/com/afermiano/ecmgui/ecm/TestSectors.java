@@ -0,0 +1,69 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.ecm;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class TestSectors {
+    public static final int MODE_2_FORM_1_SUBMODE = 0x08;
+    public static final int MODE_2_FORM_2_SUBMODE = 0x28;
+
+    public static byte[] buildSector(SectorType type, int seed) {
+        final byte[] sector = new byte[EcmFormat.SECTOR_SIZE];
+        final Random random = new Random(seed);
+
+        if (type == SectorType.LITERAL) {
+            random.nextBytes(sector);
+            return sector;
+        }
+
+        Arrays.fill(sector, 1, 11, (byte) 0xFF);
+        sector[0x0C] = 0x00;
+        sector[0x0D] = 0x02;
+        sector[0x0E] = (byte) seed;
+
+        final byte[] data = new byte[SectorType.MODE_2_FORM_2.getEncodedSize()];
+        random.nextBytes(data);
+
+        if (type == SectorType.MODE_1) {
+            sector[0x0F] = 0x01;
+            System.arraycopy(data, 0, sector, 0x10, 0x800);
+        } else {
+            sector[0x0F] = 0x02;
+            final byte submode = (byte) (type == SectorType.MODE_2_FORM_1 ? MODE_2_FORM_1_SUBMODE : MODE_2_FORM_2_SUBMODE);
+            sector[0x12] = sector[0x16] = submode;
+            System.arraycopy(data, 0, sector, 0x18, type == SectorType.MODE_2_FORM_1 ? 0x800 : 0x914);
+        }
+
+        EccEdc.generate(sector, 0, type);
+
+        return sector;
+    }
+
+    public static byte[] buildImage(SectorType... types) {
+        final byte[] image = new byte[types.length * EcmFormat.SECTOR_SIZE];
+
+        for (int i = 0; i < types.length; i++) {
+            System.arraycopy(buildSector(types[i], i), 0, image, i * EcmFormat.SECTOR_SIZE, EcmFormat.SECTOR_SIZE);
+        }
+
+        return image;
+    }
+}
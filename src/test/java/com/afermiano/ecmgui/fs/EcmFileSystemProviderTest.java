@@ -0,0 +1,141 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.fs;
+
+import com.afermiano.ecmgui.ecm.EcmEncoder;
+import com.afermiano.ecmgui.ecm.Progress;
+import com.afermiano.ecmgui.ecm.SyntheticImageGenerator;
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EcmFileSystemProviderTest {
+    private static final int STEP_IN_BYTES = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private byte[] content;
+    private Path path;
+
+    @Before
+    public void setup() throws IOException {
+        final File image = new File(temporaryFolder.getRoot(), "image.bin");
+        final File ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm");
+        SyntheticImageGenerator.builder().seed(1).sectorCount(500).mode2Form1Weight(1).mode2Form2Weight(1).literalWeight(1).maxRunLength(8).trailingBytes(77)
+                .build().write(image.toPath());
+        content = Files.readAllBytes(image.toPath());
+
+        final Progress progress = new Progress();
+        try (EcmEncoder encoder = new EcmEncoder(image.getPath(), ecm.getPath(), STEP_IN_BYTES, progress)) {
+            assertEquals(FailureReason.SUCCESS, encoder.prepare());
+            while (progress.getState() == State.IN_PROGRESS) {
+                encoder.encode();
+            }
+        }
+        assertEquals(State.COMPLETED, progress.getState());
+
+        // Resolved through the installed providers, as any other code would
+        path = Paths.get(URI.create(EcmFileSystemProvider.SCHEME + ":" + ecm.toURI()));
+    }
+
+    @Test
+    public void shouldExposeDecodedImage() throws IOException {
+        assertTrue(path.getFileSystem().provider() instanceof EcmFileSystemProvider);
+        assertEquals(content.length, Files.size(path));
+        assertArrayEquals(content, Files.readAllBytes(path));
+    }
+
+    @Test
+    public void channelShouldReadFromAnyPosition() throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            final int position = content.length / 3 + 11;
+            final ByteBuffer buffer = ByteBuffer.allocate(5000);
+
+            channel.position(position);
+            assertEquals(buffer.capacity(), channel.read(buffer));
+
+            assertArrayEquals(Arrays.copyOfRange(content, position, position + buffer.capacity()), buffer.array());
+            assertEquals(position + buffer.capacity(), channel.position());
+
+            channel.position(content.length);
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    public void shouldListAndWalkDirectories() throws IOException {
+        final File more = temporaryFolder.newFolder("more");
+        Files.copy(new File(temporaryFolder.getRoot(), "image.bin.ecm").toPath(), new File(more, "copy.bin.ecm").toPath());
+
+        final Path directory = path.getParent();
+        assertTrue(Files.isDirectory(directory));
+
+        // The image.bin left next to the .ecm file does not read as an image, so it is not listed
+        try (Stream<Path> entries = Files.list(directory)) {
+            assertEquals(new HashSet<>(Arrays.asList(path, directory.resolve("more"))), entries.collect(Collectors.toSet()));
+        }
+
+        try (Stream<Path> entries = Files.walk(directory)) {
+            final List<Path> images = entries.filter(Files::isRegularFile).collect(Collectors.toList());
+            assertEquals(2, images.size());
+            for (Path image : images) {
+                assertTrue(image.getFileSystem().provider() instanceof EcmFileSystemProvider);
+                assertEquals(content.length, Files.size(image));
+            }
+        }
+
+        assertTrue(Files.getFileStore(path).isReadOnly());
+    }
+
+    @Test(expected = NonWritableChannelException.class)
+    public void channelShouldBeReadOnly() throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            channel.write(ByteBuffer.allocate(1));
+        }
+    }
+
+    @Test(expected = ReadOnlyFileSystemException.class)
+    public void shouldRejectWritableChannels() throws IOException {
+        Files.newByteChannel(path, StandardOpenOption.WRITE);
+    }
+}
@@ -0,0 +1,53 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.fs;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SectorCacheTest {
+    @Test
+    public void shouldEvictLeastRecentlyUsedSector() {
+        final SectorCache cache = new SectorCache(2);
+        final byte[] first = cache.allocate(4);
+        cache.put(1, first);
+        cache.put(2, cache.allocate(4));
+
+        cache.get(1);
+        cache.put(3, cache.allocate(4));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+    }
+
+    @Test
+    public void shouldReuseBufferOfEvictedSector() {
+        final SectorCache cache = new SectorCache(1);
+        final byte[] first = cache.allocate(4);
+        cache.put(1, first);
+        cache.put(2, cache.allocate(4));
+
+        assertSame(first, cache.allocate(4));
+    }
+}
@@ -0,0 +1,95 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+package com.afermiano.ecmgui.hashdb;
+
+import com.afermiano.ecmgui.model.ImageHashes;
+import com.afermiano.ecmgui.model.ImageMatch;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HashDatabaseTest {
+    private static final String DAT = "<?xml version=\"1.0\"?>\n"
+            + "<!DOCTYPE datafile PUBLIC \"-//Logiqx//DTD ROM Management Datafile//EN\" \"http://www.logiqx.com/Dats/datafile.dtd\">\n"
+            + "<datafile>\n"
+            + "  <header><name>Sony - PlayStation</name></header>\n"
+            + "  <game name=\"Game A (Europe)\">\n"
+            + "    <description>Game A (Europe)</description>\n"
+            + "    <rom name=\"Game A (Europe) (Track 1).bin\" size=\"2352\" crc=\"352441c2\" sha1=\"a9993e364706816aba3e25717850c26c9cd0d89d\"/>\n"
+            + "    <rom name=\"Game A (Europe) (Track 2).bin\" size=\"2352\" crc=\"352441c2\" sha1=\"0000000000000000000000000000000000000001\"/>\n"
+            + "    <rom name=\"Game A (Europe).cue\" size=\"100\"/>\n"
+            + "  </game>\n"
+            + "  <machine name=\"Game B &amp; Friends (Japan)\">\n"
+            + "    <rom name=\"Game B.bin\" size=\"4704\" crc=\"DEADBEEF\"/>\n"
+            + "  </machine>\n"
+            + "</datafile>\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path database;
+
+    @Before
+    public void setup() throws IOException {
+        final File dat = temporaryFolder.newFile("playstation.dat");
+        Files.write(dat.toPath(), DAT.getBytes(StandardCharsets.UTF_8));
+        database = new File(temporaryFolder.getRoot(), "hashes.db").toPath();
+
+        final List<DatEntry> entries = new ArrayList<>();
+        DatParser.parse(dat.toPath(), entries::add);
+        DatParser.parse(dat.toPath(), entries::add);
+
+        assertEquals(3, HashDatabase.write(entries, database));
+    }
+
+    @Test
+    public void shouldPreferTheEntryWithTheSameSha1() throws IOException {
+        final ImageMatch match = HashDatabase.open(database).lookup(
+                new ImageHashes("352441c2", "900150983cd24fb0d6963f7d28e17f72", "a9993e364706816aba3e25717850c26c9cd0d89d"));
+
+        assertEquals(new ImageMatch("Game A (Europe)", "Game A (Europe) (Track 1).bin", true), match);
+    }
+
+    @Test
+    public void shouldFallBackToCrc32WhenTheDatHasNoSha1() throws IOException {
+        final ImageMatch match = HashDatabase.open(database).lookup(new ImageHashes("deadbeef", "", "a9993e364706816aba3e25717850c26c9cd0d89d"));
+
+        assertEquals(new ImageMatch("Game B & Friends (Japan)", "Game B.bin", false), match);
+    }
+
+    @Test
+    public void shouldNotMatchUnknownHashes() throws IOException {
+        final HashDatabase hashDatabase = HashDatabase.open(database);
+
+        assertNull(hashDatabase.lookup(new ImageHashes("00000000", "", "a9993e364706816aba3e25717850c26c9cd0d89d")));
+        // Same CRC32 as a known track, but another SHA-1
+        assertNull(hashDatabase.lookup(new ImageHashes("352441c2", "", "ffffffffffffffffffffffffffffffffffffffff")));
+    }
+}
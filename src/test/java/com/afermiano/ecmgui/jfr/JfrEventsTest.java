@@ -0,0 +1,110 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.jfr;
+
+import com.afermiano.ecmgui.Context;
+import com.afermiano.ecmgui.common.Observer;
+import com.afermiano.ecmgui.control.Control;
+import com.afermiano.ecmgui.control.ControlTest;
+import com.afermiano.ecmgui.control.Job;
+import com.afermiano.ecmgui.control.bridge.JavaBridge;
+import com.afermiano.ecmgui.ecm.SyntheticImageGenerator;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JfrEventsTest {
+    private static final String[] EVENT_NAMES = {
+            "com.afermiano.ecmgui.Prepare", "com.afermiano.ecmgui.Step", "com.afermiano.ecmgui.Drain", "com.afermiano.ecmgui.Broadcast"
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static List<RecordedEvent> eventsNamed(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void jobShouldEmitLifecycleEvents() throws IOException {
+        final File image = new File(temporaryFolder.getRoot(), "image.bin");
+        final File ecm = new File(temporaryFolder.getRoot(), "image.bin.ecm");
+        final SyntheticImageGenerator.Result result = SyntheticImageGenerator.builder().sectorCount(100).build().write(image.toPath());
+
+        final Context context = new Context();
+        context.setBridgeFactory(JavaBridge::new);
+        final AtomicBoolean done = new AtomicBoolean();
+        final Path dump = new File(temporaryFolder.getRoot(), "events.jfr").toPath();
+
+        try (Recording recording = new Recording(); Control control = new Control(context)) {
+            context.setControl(control);
+            control.registerObserver(new Observer() {
+                @Override
+                public void onEncodingSuccess(Job job) {
+                    done.set(true);
+                }
+            });
+            for (String name : EVENT_NAMES) {
+                recording.enable(name);
+            }
+            recording.start();
+
+            final Job job = control.submitEncoding(image.getPath(), ecm.getPath());
+            await().atMost(Duration.ofSeconds(ControlTest.ASYNC_TIMEOUT_IN_SECONDS)).until(() -> {
+                control.pollEvents();
+                return done.get();
+            });
+
+            recording.stop();
+            recording.dump(dump);
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+
+            final List<RecordedEvent> prepares = eventsNamed(events, EVENT_NAMES[0]);
+            assertEquals(1, prepares.size());
+            assertEquals(job.getId(), prepares.get(0).getInt("jobId"));
+            assertEquals("SUCCESS", prepares.get(0).getString("failureReason"));
+
+            final List<RecordedEvent> steps = eventsNamed(events, EVENT_NAMES[1]);
+            assertFalse(steps.isEmpty());
+            assertEquals("JavaBridge", steps.get(0).getString("bridge"));
+            assertEquals(2 * result.getImageBytes(), steps.stream().mapToLong(step -> step.getLong("bytesRead")).sum());
+            assertEquals("COMPLETED", steps.get(steps.size() - 1).getString("state"));
+
+            assertTrue(eventsNamed(events, EVENT_NAMES[2]).stream().mapToInt(drain -> drain.getInt("events")).sum() >= 2);
+            assertTrue(eventsNamed(events, EVENT_NAMES[3]).stream().anyMatch(broadcast -> broadcast.getString("notification").equals("EncodingSuccess")));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+// Copyright (C) 2022 Antonio Fermiano
+//
+// This file is part of ecmgui.
+//
+// ecmgui is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// ecmgui is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with ecmgui.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package com.afermiano.ecmgui.model;
+
+import com.afermiano.ecmgui.model.nativemapping.FailureReason;
+import com.afermiano.ecmgui.model.nativemapping.State;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ModelTest {
+    private static final int UPDATES = 200_000;
+
+    @Test
+    public void readersShouldNeverSeePartialUpdates() throws InterruptedException {
+        final Model model = new Model();
+
+        final Thread writer = new Thread(() -> {
+            for (int i = 1; i <= UPDATES; i++) {
+                final long value = i;
+                model.update(builder -> builder.bytesBeforeProcessing(value).bytesAfterProcessing(value));
+            }
+        });
+        writer.start();
+
+        ModelSnapshot snapshot;
+        do {
+            snapshot = model.getSnapshot();
+            assertEquals(snapshot.getBytesBeforeProcessing(), snapshot.getBytesAfterProcessing());
+        } while (snapshot.getBytesBeforeProcessing() < UPDATES);
+
+        writer.join();
+    }
+
+    @Test
+    public void clearStatusShouldKeepFileNamesAndOutcome() {
+        final Model model = new Model();
+        model.update(builder -> builder
+                .inputFileName("in")
+                .outputFileName("out")
+                .state(State.FAILURE)
+                .failureReason(FailureReason.OUT_OF_MEMORY)
+                .analyzePercentage(50)
+                .mode1Sectors(3));
+
+        model.clearStatus();
+
+        final ModelSnapshot snapshot = model.getSnapshot();
+        assertEquals("in", snapshot.getInputFileName());
+        assertEquals("out", snapshot.getOutputFileName());
+        assertEquals(State.FAILURE, snapshot.getState());
+        assertEquals(FailureReason.OUT_OF_MEMORY, snapshot.getFailureReason());
+        assertEquals(0, snapshot.getAnalyzePercentage());
+        assertEquals(0, snapshot.getMode1Sectors());
+    }
+}